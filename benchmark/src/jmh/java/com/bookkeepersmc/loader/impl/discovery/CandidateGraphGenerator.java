@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.discovery;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+
+import com.bookkeepersmc.loader.impl.metadata.DependencyOverrides;
+import com.bookkeepersmc.loader.impl.metadata.LoaderModMetadata;
+import com.bookkeepersmc.loader.impl.metadata.ModMetadataParser;
+import com.bookkeepersmc.loader.impl.metadata.ParseMetadataException;
+import com.bookkeepersmc.loader.impl.metadata.VersionOverrides;
+
+/**
+ * Generates synthetic but representative mod candidate graphs for the resolver benchmarks.
+ *
+ * <p>The graph consists of root mods depending on shared libraries, where every root mod additionally nests its own
+ * copies of some of those libraries (in varying versions), similar to mods shipping the API modules they use. Some
+ * libraries provide alias ids, some mods declare optional dependencies and breaks entries. With {@code conflicting}
+ * set, two root mods break each other, which forces the resolution to fail and exercises the fix and error paths.
+ */
+final class CandidateGraphGenerator {
+	private static final VersionOverrides VERSION_OVERRIDES = new VersionOverrides();
+	private static final DependencyOverrides DEP_OVERRIDES = new DependencyOverrides(Paths.get("nonexistent"));
+
+	private final Random random;
+	private final int modCount;
+	private final int nestedCopies;
+	private final int libCount;
+	private final boolean conflicting;
+
+	CandidateGraphGenerator(long seed, int modCount, int nestedCopies, boolean conflicting) {
+		this.random = new Random(seed);
+		this.modCount = modCount;
+		this.nestedCopies = nestedCopies;
+		this.libCount = Math.max(1, modCount / 8);
+		this.conflicting = conflicting;
+	}
+
+	List<ModCandidateImpl> generate() throws ParseMetadataException {
+		List<ModCandidateImpl> roots = new ArrayList<>(modCount + libCount);
+
+		// a root copy of every library, like a separately installed api mod
+
+		for (int lib = 0; lib < libCount; lib++) {
+			roots.add(createRoot(createLibMetadata(lib, 10 + random.nextInt(5)), Collections.emptyList()));
+		}
+
+		for (int i = 0; i < modCount; i++) {
+			List<ModCandidateImpl> nested = new ArrayList<>(nestedCopies);
+			StringBuilder depends = new StringBuilder();
+
+			for (int j = 0; j < nestedCopies; j++) {
+				int lib = random.nextInt(libCount);
+				int minor = random.nextInt(15);
+
+				nested.add(createNested(createLibMetadata(lib, minor)));
+				appendDep(depends, libId(lib), ">=1."+random.nextInt(minor + 1)+".0");
+			}
+
+			StringBuilder recommends = new StringBuilder();
+			StringBuilder breaks = new StringBuilder();
+
+			if (i % 5 == 0) appendDep(recommends, modId(random.nextInt(modCount)), "*");
+			if (i % 7 == 0) appendDep(breaks, modId(random.nextInt(modCount)), "<1.0.0");
+			if (conflicting && i == 1) appendDep(breaks, modId(0), "*");
+
+			String json = String.format("{\"schemaVersion\": 1, \"id\": \"%s\", \"version\": \"1.%d.0\", \"depends\": {%s}, \"recommends\": {%s}, \"breaks\": {%s}}",
+					modId(i), random.nextInt(20), depends, recommends, breaks);
+
+			roots.add(createRoot(parse(json), nested));
+		}
+
+		return link(roots);
+	}
+
+	private LoaderModMetadata createLibMetadata(int lib, int minor) throws ParseMetadataException {
+		// every 4th library provides an alias id, like the api modules' legacy ids
+		String provides = lib % 4 == 0 ? String.format("\"provides\": [\"%s-legacy\"], ", libId(lib)) : "";
+
+		return parse(String.format("{\"schemaVersion\": 1, \"id\": \"%s\", \"version\": \"1.%d.%d\", %s\"depends\": {%s}}",
+				libId(lib), minor, random.nextInt(3), provides, lib > 0 ? String.format("\"%s\": \"*\"", libId(0)) : ""));
+	}
+
+	private static void appendDep(StringBuilder sb, String id, String predicate) {
+		if (sb.indexOf('"' + id + '"') >= 0) return;
+		if (sb.length() > 0) sb.append(", ");
+
+		sb.append('"').append(id).append("\": \"").append(predicate).append('"');
+	}
+
+	private static String modId(int idx) {
+		return "mod"+idx;
+	}
+
+	private static String libId(int idx) {
+		return "lib"+idx;
+	}
+
+	static LoaderModMetadata parse(String json) throws ParseMetadataException {
+		return ModMetadataParser.parseMetadata(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "generated", Collections.emptyList(),
+				VERSION_OVERRIDES, DEP_OVERRIDES, false);
+	}
+
+	static ModCandidateImpl createRoot(LoaderModMetadata metadata, Collection<ModCandidateImpl> nested) {
+		Path path = Paths.get(metadata.getId()+".jar");
+
+		return ModCandidateImpl.createPlain(Collections.singletonList(path), metadata, false, nested);
+	}
+
+	static ModCandidateImpl createNested(LoaderModMetadata metadata) {
+		return createNested(metadata, Collections.emptyList());
+	}
+
+	static ModCandidateImpl createNested(LoaderModMetadata metadata, Collection<ModCandidateImpl> nested) {
+		return ModCandidateImpl.createNested("META-INF/jars/"+metadata.getId()+".jar", metadata.getVersion().hashCode(), metadata, false, nested);
+	}
+
+	/**
+	 * Link nested mods to their parents and gather all candidates, the same way {@link ModDiscoverer} does.
+	 */
+	static List<ModCandidateImpl> link(List<ModCandidateImpl> roots) {
+		Set<ModCandidateImpl> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<ModCandidateImpl> ret = new ArrayList<>(); // keeps the order deterministic across runs
+		Queue<ModCandidateImpl> queue = new ArrayDeque<>(roots);
+		ModCandidateImpl mod;
+
+		while ((mod = queue.poll()) != null) {
+			if (!seen.add(mod)) continue;
+
+			ret.add(mod);
+
+			for (ModCandidateImpl child : mod.getNestedMods()) {
+				if (child.addParent(mod)) {
+					queue.add(child);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	static Map<String, List<ModCandidateImpl>> sort(List<ModCandidateImpl> mods) {
+		Map<String, List<ModCandidateImpl>> ret = new LinkedHashMap<>();
+		ModPrioSorter.sort(mods, ret);
+
+		return ret;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.discovery;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bookkeepersmc.loader.impl.metadata.ParseMetadataException;
+
+/**
+ * Reads a mod list as logged by {@code NotebookLoaderImpl.dumpModList} back into mod candidates.
+ *
+ * <p>The expected input is the tree following the "Loading N mods:" log line, e.g.
+ * <pre>
+ * 	- mod-a 1.0.0
+ * 	- mod-b 2.1.0
+ * 	   |-- lib-x 0.5.0
+ * 	   \-- lib-y 0.7.1
+ * </pre>
+ * Lines not starting with a tab are ignored, so the surrounding log output doesn't have to be stripped. Ids may be
+ * anonymised as long as equal ids stay equal. The dump doesn't contain dependency information, so the replayed
+ * candidates only exercise the nesting, id grouping and version ordering aspects of the resolver.
+ */
+final class ModListSnapshot {
+	static List<ModCandidateImpl> read(Path file) throws IOException, ParseMetadataException {
+		List<ModCandidateImpl> roots = new ArrayList<>();
+		List<List<ModCandidateImpl>> nestedByLevel = new ArrayList<>(); // children of the last mod seen at each level
+		List<String[]> pending = new ArrayList<>(); // id+version of the last mod seen at each level
+
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			if (line.isEmpty() || line.charAt(0) != '\t') continue;
+
+			int level;
+			int start;
+
+			if (line.startsWith("\t- ")) {
+				level = 0;
+				start = 3;
+			} else {
+				int pos = Math.max(line.indexOf("|--"), line.indexOf("\\--"));
+				if (pos < 0) continue;
+
+				level = (pos + 1) / 5;
+				start = pos + 4;
+			}
+
+			String[] parts = line.substring(start).trim().split(" ", 2);
+			if (parts.length != 2) throw new IOException("invalid mod list line: "+line);
+
+			// finish all mods at the same or a deeper level, they can't receive further children
+
+			finish(level, pending, nestedByLevel, roots);
+
+			pending.add(parts);
+			nestedByLevel.add(new ArrayList<>());
+		}
+
+		finish(0, pending, nestedByLevel, roots);
+
+		return CandidateGraphGenerator.link(roots);
+	}
+
+	private static void finish(int level, List<String[]> pending, List<List<ModCandidateImpl>> nestedByLevel, List<ModCandidateImpl> roots) throws ParseMetadataException {
+		for (int i = pending.size() - 1; i >= level; i--) {
+			String[] mod = pending.remove(i);
+			List<ModCandidateImpl> nested = nestedByLevel.remove(i);
+			String json = String.format("{\"schemaVersion\": 1, \"id\": \"%s\", \"version\": \"%s\"}", mod[0], mod[1]);
+
+			if (i == 0) {
+				roots.add(CandidateGraphGenerator.createRoot(CandidateGraphGenerator.parse(json), nested));
+			} else {
+				nestedByLevel.get(i - 1).add(CandidateGraphGenerator.createNested(CandidateGraphGenerator.parse(json), nested));
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.discovery;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.bookkeepersmc.api.EnvType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the individual mod resolution stages: priority sorting, solving and failure analysis.
+ *
+ * <p>The input is either a synthetic candidate graph (see {@link CandidateGraphGenerator}) or, if {@code snapshot} is
+ * set, a replayed mod list dump (see {@link ModListSnapshot}).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResolverBenchmark {
+	@Param({"100", "500", "2000"})
+	public int modCount;
+
+	@Param({"4"})
+	public int nestedCopies;
+
+	@Param({""})
+	public String snapshot;
+
+	private List<ModCandidateImpl> candidates;
+	private List<ModCandidateImpl> sortedCandidates;
+	private Map<String, List<ModCandidateImpl>> modsById;
+
+	private List<ModCandidateImpl> conflictingSorted;
+	private Map<String, List<ModCandidateImpl>> conflictingModsById;
+	private ModSolver.Result failedResult;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		if (snapshot.isEmpty()) {
+			candidates = new CandidateGraphGenerator(modCount, modCount, nestedCopies, false).generate();
+		} else {
+			candidates = ModListSnapshot.read(Paths.get(snapshot));
+		}
+
+		sortedCandidates = new ArrayList<>(candidates);
+		modsById = CandidateGraphGenerator.sort(sortedCandidates);
+
+		// the failure path always uses a synthetic graph, a dump is from a successful resolution
+
+		conflictingSorted = new CandidateGraphGenerator(modCount, modCount, nestedCopies, true).generate();
+		conflictingModsById = CandidateGraphGenerator.sort(conflictingSorted);
+		failedResult = ModSolver.solve(conflictingSorted, conflictingModsById, new HashMap<>(), new ArrayList<>());
+
+		if (failedResult.success) throw new IllegalStateException("conflicting mod set resolved successfully");
+	}
+
+	@Benchmark
+	public Map<String, List<ModCandidateImpl>> sort() {
+		List<ModCandidateImpl> mods = new ArrayList<>(candidates);
+		Map<String, List<ModCandidateImpl>> ret = new LinkedHashMap<>();
+
+		ModPrioSorter.sort(mods, ret);
+
+		return ret;
+	}
+
+	@Benchmark
+	public List<ModCandidateImpl> solve() throws Exception {
+		List<ModCandidateImpl> ret = new ArrayList<>();
+		ModSolver.Result result = ModSolver.solve(sortedCandidates, modsById, new HashMap<>(), ret);
+
+		if (!result.success) throw new IllegalStateException("resolution failed");
+
+		return ret;
+	}
+
+	@Benchmark
+	public Object gatherErrors() { // ResolutionReport is package-private, not accessible from the generated benchmark code
+		return ResultAnalyzer.gatherErrors(failedResult, Collections.emptyMap(), conflictingModsById, Collections.emptyMap(), EnvType.SERVER);
+	}
+
+	@Benchmark
+	public String renderErrors() {
+		return ResultAnalyzer.gatherErrors(failedResult, Collections.emptyMap(), conflictingModsById, Collections.emptyMap(), EnvType.SERVER).toString();
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.mrj;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for entrypoint profiling, the Java 17 variant emits them.
+ */
+public final class EntrypointEvents {
+	private EntrypointEvents() { }
+
+	/**
+	 * Start an event for the current thread.
+	 *
+	 * @return handle to pass to {@link #commit}, may be null
+	 */
+	public static Object begin() {
+		EntrypointEvent event = new EntrypointEvent();
+		if (!event.isEnabled()) return null;
+
+		event.begin();
+
+		return event;
+	}
+
+	public static void commit(Object handle, String key, String modId, String phase, long cpuTime, long allocatedBytes) {
+		if (handle == null) return;
+
+		EntrypointEvent event = (EntrypointEvent) handle;
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.key = key;
+			event.modId = modId;
+			event.phase = phase;
+			event.cpuTime = cpuTime;
+			event.allocatedBytes = allocatedBytes;
+			event.commit();
+		}
+	}
+
+	@Name("notebook.Entrypoint")
+	@Label("Entrypoint")
+	@Category("Notebook Loader")
+	@Description("Creation or invocation of a mod entrypoint")
+	@StackTrace(false)
+	static final class EntrypointEvent extends Event {
+		@Label("Key")
+		String key;
+		@Label("Mod")
+		String modId;
+		@Label("Phase")
+		String phase;
+		@Label("CPU Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long cpuTime;
+		@Label("Allocated")
+		@DataAmount(DataAmount.BYTES)
+		long allocatedBytes;
+	}
+}
@@ -27,6 +27,7 @@ import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import com.bookkeepersmc.api.EnvType;
@@ -166,6 +167,25 @@ public interface NotebookLoader {
 	 */
 	Collection<ModContainer> getAllMods();
 
+	/**
+	 * Visits the files inside all mods whose location relative to the mod's root paths matches a glob pattern.
+	 *
+	 * <p>The pattern uses {@code /} as a separator. {@code *} and {@code ?} match within a directory name,
+	 * {@code **} matches across directories, for example {@code assets/**.png}. A pattern without wildcards only
+	 * matches the file with that exact location.
+	 *
+	 * <p>The loader scans mods in parallel on a {@link java.util.concurrent.ForkJoinPool} whose threads use the caller's
+	 * context class loader, so the action is invoked concurrently from multiple threads and in no particular order, and
+	 * has to be thread safe. An exception thrown by the action aborts the enumeration and is rethrown to the caller.
+	 *
+	 * @param pattern the glob pattern to match
+	 * @param action  invoked with each matching file and the mod containing it
+	 * @throws IllegalArgumentException if the pattern is malformed, e.g. absolute or containing {@code ..}
+	 */
+	default void forEachResource(String pattern, BiConsumer<? super ModContainer, ? super Path> action) {
+		ResourceWalker.forEachResource(getAllMods(), pattern, action);
+	}
+
 	/**
 	 * Checks if a mod with a given ID is loaded.
 	 *
@@ -22,7 +22,10 @@
  */
 package com.bookkeepersmc.loader.api;
 
+import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Object share for inter-mod communication, obtainable through {@link NotebookLoader#getObjectShare}.
@@ -36,6 +39,9 @@ import java.util.function.BiConsumer;
  *
  * <p>It is required to prefix the share key with the mod id like {@code mymod:someProperty}. Mods should not
  * modify entries by other mods. The share is thread safe.
+ *
+ * <p>Frequently accessed entries can use a {@link Key} instead of a string, which is validated once and types the
+ * value.
  */
 public interface ObjectShare {
 	/**
@@ -89,6 +95,22 @@ public interface ObjectShare {
 	 */
 	void whenAvailable(String key, BiConsumer<String, Object> consumer);
 
+	/**
+	 * Request being notified on an executor when a key/value becomes available.
+	 *
+	 * <p>This behaves like {@link #whenAvailable(String, BiConsumer)}, but the consumer is always invoked through
+	 * {@code executor} instead of on the thread adding the value.
+	 *
+	 * @param key key to react upon, format {@code modid:subkey}
+	 * @param executor executor to invoke the consumer on
+	 * @param consumer consumer receiving the key/value pair: key first, value second
+	 */
+	default void whenAvailable(String key, Executor executor, BiConsumer<String, Object> consumer) {
+		Objects.requireNonNull(executor, "null executor");
+
+		whenAvailable(key, (k, v) -> executor.execute(() -> consumer.accept(k, v)));
+	}
+
 	/**
 	 * Set the value for a specific key.
 	 *
@@ -116,4 +138,150 @@ public interface ObjectShare {
 	 * @return previous value associated with the key, null if none
 	 */
 	Object remove(String key);
+
+	/**
+	 * Get the value for a typed key.
+	 *
+	 * @param key key to query
+	 * @return value associated with the key or null if none or not of the key's type
+	 */
+	default <T> T get(Key<T> key) {
+		return key.cast(get(key.getName()));
+	}
+
+	/**
+	 * Request being notified when a value for a typed key becomes available, see
+	 * {@link #whenAvailable(String, BiConsumer)}.
+	 *
+	 * <p>Values not of the key's type are ignored.
+	 *
+	 * @param key key to react upon
+	 * @param consumer consumer receiving the value
+	 */
+	default <T> void whenAvailable(Key<T> key, Consumer<? super T> consumer) {
+		whenAvailable(key.getName(), (k, v) -> {
+			T value = key.cast(v);
+			if (value != null) consumer.accept(value);
+		});
+	}
+
+	/**
+	 * Request being notified on an executor when a value for a typed key becomes available, see
+	 * {@link #whenAvailable(String, Executor, BiConsumer)}.
+	 *
+	 * <p>Values not of the key's type are ignored.
+	 *
+	 * @param key key to react upon
+	 * @param executor executor to invoke the consumer on
+	 * @param consumer consumer receiving the value
+	 */
+	default <T> void whenAvailable(Key<T> key, Executor executor, Consumer<? super T> consumer) {
+		whenAvailable(key.getName(), executor, (k, v) -> {
+			T value = key.cast(v);
+			if (value != null) consumer.accept(value);
+		});
+	}
+
+	/**
+	 * Set the value for a typed key.
+	 *
+	 * @param key key to add a value for
+	 * @param value value to add, must not be null
+	 * @return previous value associated with the key, null if none
+	 */
+	default <T> Object put(Key<T> key, T value) {
+		return put(key.getName(), value);
+	}
+
+	/**
+	 * Set the value for a typed key if there isn't one yet, see {@link #putIfAbsent(String, Object)}.
+	 *
+	 * @param key key to add a value for
+	 * @param value value to add, must not be null
+	 * @return previous value associated with the key, null if none and thus the entry changed
+	 */
+	default <T> Object putIfAbsent(Key<T> key, T value) {
+		return putIfAbsent(key.getName(), value);
+	}
+
+	/**
+	 * Remove the value for a typed key.
+	 *
+	 * @param key key to remove the value for
+	 * @return previous value associated with the key, null if none
+	 */
+	default Object remove(Key<?> key) {
+		return remove(key.getName());
+	}
+
+	/**
+	 * Typed object share key, validated once on creation.
+	 *
+	 * <p>Keys are meant to be stored in constants, for example
+	 * {@code static final ObjectShare.Key<Runnable> RELOAD = ObjectShare.Key.of("mymod:reload", Runnable.class);}
+	 *
+	 * @param <T> value type
+	 */
+	final class Key<T> {
+		private final String name;
+		private final Class<T> type;
+
+		private Key(String name, Class<T> type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		/**
+		 * Create a key.
+		 *
+		 * @param name key name, format {@code modid:subkey}
+		 * @param type value type, primitive types aren't supported
+		 * @throws IllegalArgumentException if the name doesn't have the required format
+		 */
+		public static <T> Key<T> of(String name, Class<T> type) {
+			Objects.requireNonNull(name, "null key");
+			Objects.requireNonNull(type, "null type");
+
+			int pos = name.indexOf(':');
+			if (pos <= 0 || pos >= name.length() - 1) throw new IllegalArgumentException("invalid key, must be modid:subkey");
+
+			return new Key<>(name, type);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Class<T> getType() {
+			return type;
+		}
+
+		/**
+		 * Cast a value to the key's type.
+		 *
+		 * @return the value or null if it is null or not of the key's type
+		 */
+		public T cast(Object value) {
+			return type.isInstance(value) ? type.cast(value) : null;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) return false;
+
+			Key<?> o = (Key<?>) obj;
+
+			return name.equals(o.name) && type == o.type;
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode() * 31 + type.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Serial resource enumeration backing the default {@link NotebookLoader#forEachResource}, for implementations other
+ * than the loader's own.
+ */
+final class ResourceWalker {
+	private ResourceWalker() { }
+
+	static void forEachResource(Collection<ModContainer> mods, String glob, BiConsumer<? super ModContainer, ? super Path> action) {
+		Pattern pattern = compile(glob);
+
+		for (ModContainer mod : mods) {
+			for (Path root : mod.getRootPaths()) {
+				String separator = root.getFileSystem().getSeparator();
+
+				try (Stream<Path> stream = Files.walk(root)) {
+					stream.forEach(path -> {
+						if (Files.isDirectory(path)) return;
+
+						String name = root.relativize(path).toString();
+						if (!separator.equals("/")) name = name.replace(separator, "/");
+
+						if (pattern.matcher(name).matches()) action.accept(mod, path);
+					});
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+
+	private static Pattern compile(String glob) {
+		if (glob.isEmpty() || glob.indexOf('\\') >= 0) throw new IllegalArgumentException("invalid resource pattern: "+glob);
+
+		for (String segment : glob.split("/", -1)) {
+			if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+				throw new IllegalArgumentException("invalid resource pattern: "+glob);
+			}
+		}
+
+		StringBuilder sb = new StringBuilder(glob.length() + 16);
+		int literalStart = 0;
+
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c != '*' && c != '?') continue;
+
+			if (literalStart < i) sb.append(Pattern.quote(glob.substring(literalStart, i)));
+
+			if (c == '?') {
+				sb.append("[^/]");
+			} else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+				sb.append(".*");
+				i++;
+			} else {
+				sb.append("[^/]*");
+			}
+
+			literalStart = i + 1;
+		}
+
+		if (literalStart < glob.length()) sb.append(Pattern.quote(glob.substring(literalStart)));
+
+		return Pattern.compile(sb.toString());
+	}
+}
@@ -27,25 +27,39 @@ import java.util.Collections;
 import java.util.HashSet;
 
 import com.bookkeepersmc.loader.api.MappingResolver;
+import com.bookkeepersmc.loader.impl.util.mappings.MappingImage;
 
-import net.fabricmc.mappingio.tree.MappingTree;
+/**
+ * Mapping resolver backed by a {@link MappingImage}.
+ *
+ * <p>Every namespace gets a lazily built open addressing index from class names to class rows, hashed and compared as
+ * if '/' was '.' so dot format names can be looked up directly. Fields and methods are indexed by owner row, name and
+ * descriptor the same way. Results are cached in dot format, a small direct mapped cache keeps the latest member
+ * lookups. Repeated lookups don't allocate.
+ */
+final class MappingResolverImpl implements MappingResolver {
+	private static final int MEMBER_CACHE_SIZE = 64; // power of 2
 
-class MappingResolverImpl implements MappingResolver {
-	private final MappingTree mappings;
+	private final MappingImage mappings;
 	private final String targetNamespace;
 	private final int targetNamespaceId;
+	private final Collection<String> namespaceNames;
+	private final NamespaceIndex[] namespaceIndices;
+	private final String[] targetDotNames;
+	private final CachedMember[] memberCache = new CachedMember[MEMBER_CACHE_SIZE];
 
-	MappingResolverImpl(MappingTree mappings, String targetNamespace) {
+	MappingResolverImpl(MappingImage mappings, String targetNamespace) {
 		this.mappings = mappings;
 		this.targetNamespace = targetNamespace;
 		this.targetNamespaceId = mappings.getNamespaceId(targetNamespace);
+		this.namespaceNames = Collections.unmodifiableSet(new HashSet<>(mappings.getNamespaces()));
+		this.namespaceIndices = new NamespaceIndex[mappings.getNamespaces().size()];
+		this.targetDotNames = new String[mappings.getClassCount()];
 	}
 
 	@Override
 	public Collection<String> getNamespaces() {
-		HashSet<String> namespaces = new HashSet<>(mappings.getDstNamespaces());
-		namespaces.add(mappings.getSrcNamespace());
-		return Collections.unmodifiableSet(namespaces);
+		return namespaceNames;
 	}
 
 	@Override
@@ -59,7 +73,22 @@ class MappingResolverImpl implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + className);
 		}
 
-		return replaceSlashesWithDots(mappings.mapClassName(replaceDotsWithSlashes(className), mappings.getNamespaceId(namespace), targetNamespaceId));
+		int namespaceId = mappings.getNamespaceId(namespace);
+		if (namespaceId < 0 || targetNamespaceId < 0 || namespaceId == targetNamespaceId) return className;
+
+		int cls = getIndex(namespaceId).getClass(className);
+		if (cls < 0) return className;
+
+		String ret = targetDotNames[cls]; // racy but benign, strings are immutable
+
+		if (ret == null) {
+			String name = mappings.getClassName(cls, targetNamespaceId);
+			if (name == null) return className;
+
+			ret = targetDotNames[cls] = replaceSlashesWithDots(name);
+		}
+
+		return ret;
 	}
 
 	@Override
@@ -68,7 +97,13 @@ class MappingResolverImpl implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + className);
 		}
 
-		return replaceSlashesWithDots(mappings.mapClassName(replaceDotsWithSlashes(className), targetNamespaceId, mappings.getNamespaceId(namespace)));
+		int namespaceId = mappings.getNamespaceId(namespace);
+		if (namespaceId < 0 || targetNamespaceId < 0 || namespaceId == targetNamespaceId) return className;
+
+		int cls = getIndex(targetNamespaceId).getClass(className);
+		if (cls < 0) return className;
+
+		return getIndex(namespaceId).getDotName(cls, className);
 	}
 
 	@Override
@@ -77,8 +112,7 @@ class MappingResolverImpl implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + owner);
 		}
 
-		MappingTree.FieldMapping field = mappings.getField(replaceDotsWithSlashes(owner), name, descriptor, mappings.getNamespaceId(namespace));
-		return field == null ? name : field.getName(targetNamespaceId);
+		return mapMemberName(false, namespace, owner, name, descriptor);
 	}
 
 	@Override
@@ -87,15 +121,264 @@ class MappingResolverImpl implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + owner);
 		}
 
-		MappingTree.MethodMapping method = mappings.getMethod(replaceDotsWithSlashes(owner), name, descriptor, mappings.getNamespaceId(namespace));
-		return method == null ? name : method.getName(targetNamespaceId);
+		return mapMemberName(true, namespace, owner, name, descriptor);
 	}
 
-	private static String replaceSlashesWithDots(String cname) {
-		return cname.replace('/', '.');
+	private String mapMemberName(boolean isMethod, String namespace, String owner, String name, String descriptor) {
+		int namespaceId = mappings.getNamespaceId(namespace);
+		if (namespaceId < 0 || targetNamespaceId < 0 || namespaceId == targetNamespaceId) return name;
+
+		int hash = memberHash(owner.hashCode(), name, descriptor);
+		int cacheSlot = (hash ^ namespaceId) & (MEMBER_CACHE_SIZE - 1);
+		CachedMember cached = memberCache[cacheSlot];
+
+		if (cached != null && cached.matches(isMethod, namespaceId, owner, name, descriptor)) {
+			return cached.result;
+		}
+
+		NamespaceIndex index = getIndex(namespaceId);
+		int cls = index.getClass(owner);
+		if (cls < 0) return name;
+
+		MappingImage.Members members = isMethod ? mappings.getMethods() : mappings.getFields();
+		int member;
+
+		if (descriptor != null) {
+			member = index.getMemberIndex(isMethod).get(cls, name, descriptor, hash);
+		} else {
+			member = members.find(cls, name, null, namespaceId);
+		}
+
+		String ret = member >= 0 ? members.getName(member, targetNamespaceId) : null;
+		if (ret == null) ret = name;
+
+		memberCache[cacheSlot] = new CachedMember(isMethod, namespaceId, owner, name, descriptor, ret);
+
+		return ret;
+	}
+
+	private NamespaceIndex getIndex(int namespaceId) {
+		NamespaceIndex ret = namespaceIndices[namespaceId]; // all fields are final, safe to publish racily
+
+		if (ret == null) {
+			synchronized (namespaceIndices) {
+				ret = namespaceIndices[namespaceId];
+
+				if (ret == null) {
+					ret = namespaceIndices[namespaceId] = new NamespaceIndex(namespaceId);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Hash of a class name as if all '/' were '.', equal to {@link String#hashCode()} of the dot format name.
+	 */
+	private static int dotNameHash(String name) {
+		int ret = 0;
+
+		for (int i = 0, len = name.length(); i < len; i++) {
+			char c = name.charAt(i);
+			ret = 31 * ret + (c == '/' ? '.' : c);
+		}
+
+		return ret;
+	}
+
+	private static boolean dotNameEquals(String name, String dotName) {
+		int len = name.length();
+		if (dotName.length() != len) return false;
+
+		for (int i = 0; i < len; i++) {
+			char c = name.charAt(i);
+			if (c == '/') c = '.';
+			if (c != dotName.charAt(i)) return false;
+		}
+
+		return true;
+	}
+
+	private static int memberHash(int ownerHash, String name, String desc) {
+		int ret = (ownerHash * 31 + name.hashCode()) * 31 + (desc != null ? desc.hashCode() : 0);
+
+		return ret ^ ret >>> 16;
+	}
+
+	private static int tableSize(int count) {
+		return Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1; // >= 2 * count
+	}
+
+	private final class NamespaceIndex {
+		final int namespaceId;
+		/** open addressing table of class row + 1, 0 for empty slots. */
+		final int[] classTable;
+		final String[] dotNames;
+		MemberIndex fieldIndex;
+		MemberIndex methodIndex;
+
+		NamespaceIndex(int namespaceId) {
+			this.namespaceId = namespaceId;
+
+			int count = mappings.getClassCount();
+			classTable = new int[tableSize(count)];
+			dotNames = new String[count];
+			int mask = classTable.length - 1;
+
+			for (int cls = 0; cls < count; cls++) {
+				String name = mappings.getClassName(cls, namespaceId);
+				if (name == null) continue;
+
+				int hash = dotNameHash(name);
+				int slot = (hash ^ hash >>> 16) & mask;
+
+				while (classTable[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+
+				classTable[slot] = cls + 1;
+			}
+		}
+
+		int getClass(String dotName) {
+			int hash = dotName.hashCode();
+			int mask = classTable.length - 1;
+			int slot = (hash ^ hash >>> 16) & mask;
+			int cls;
+
+			while ((cls = classTable[slot]) != 0) {
+				if (dotNameEquals(mappings.getClassName(cls - 1, namespaceId), dotName)) {
+					return cls - 1;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+
+			return -1;
+		}
+
+		String getDotName(int cls, String fallback) {
+			String ret = dotNames[cls];
+
+			if (ret == null) {
+				String name = mappings.getClassName(cls, namespaceId);
+				if (name == null) return fallback;
+
+				ret = dotNames[cls] = replaceSlashesWithDots(name);
+			}
+
+			return ret;
+		}
+
+		MemberIndex getMemberIndex(boolean isMethod) {
+			MemberIndex ret = isMethod ? methodIndex : fieldIndex; // all fields are final, safe to publish racily
+
+			if (ret == null) {
+				synchronized (this) {
+					ret = isMethod ? methodIndex : fieldIndex;
+
+					if (ret == null) {
+						ret = new MemberIndex(isMethod ? mappings.getMethods() : mappings.getFields(), namespaceId);
+
+						if (isMethod) {
+							methodIndex = ret;
+						} else {
+							fieldIndex = ret;
+						}
+					}
+				}
+			}
+
+			return ret;
+		}
+	}
+
+	private final class MemberIndex {
+		final MappingImage.Members members;
+		final int namespaceId;
+		/** open addressing table of member index + 1, 0 for empty slots. */
+		final int[] table;
+		final int[] owners;
+
+		MemberIndex(MappingImage.Members members, int namespaceId) {
+			this.members = members;
+			this.namespaceId = namespaceId;
+			this.table = new int[tableSize(members.size())];
+			this.owners = new int[members.size()];
+			int mask = table.length - 1;
+
+			for (int cls = 0, count = mappings.getClassCount(); cls < count; cls++) {
+				String owner = mappings.getClassName(cls, namespaceId);
+				if (owner == null) continue;
+
+				int ownerHash = dotNameHash(owner);
+
+				for (int member = members.getStart(cls), end = members.getEnd(cls); member < end; member++) {
+					String name = members.getName(member, namespaceId);
+					String desc = members.getDesc(member, namespaceId);
+					if (name == null || desc == null) continue;
+
+					int slot = memberHash(ownerHash, name, desc) & mask;
+
+					while (table[slot] != 0) {
+						slot = (slot + 1) & mask;
+					}
+
+					table[slot] = member + 1;
+					owners[member] = cls;
+				}
+			}
+		}
+
+		int get(int cls, String name, String desc, int hash) {
+			int mask = table.length - 1;
+			int slot = hash & mask;
+			int member;
+
+			while ((member = table[slot]) != 0) {
+				member--;
+
+				if (owners[member] == cls
+						&& name.equals(members.getName(member, namespaceId))
+						&& desc.equals(members.getDesc(member, namespaceId))) {
+					return member;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+
+			return -1;
+		}
 	}
 
-	private static String replaceDotsWithSlashes(String cname) {
-		return cname.replace('.', '/');
+	private static final class CachedMember {
+		final boolean isMethod;
+		final int namespaceId;
+		final String owner;
+		final String name;
+		final String desc;
+		final String result;
+
+		CachedMember(boolean isMethod, int namespaceId, String owner, String name, String desc, String result) {
+			this.isMethod = isMethod;
+			this.namespaceId = namespaceId;
+			this.owner = owner;
+			this.name = name;
+			this.desc = desc;
+			this.result = result;
+		}
+
+		boolean matches(boolean isMethod, int namespaceId, String owner, String name, String desc) {
+			return this.isMethod == isMethod
+					&& this.namespaceId == namespaceId
+					&& this.owner.equals(owner)
+					&& this.name.equals(name)
+					&& (this.desc == null ? desc == null : this.desc.equals(desc));
+		}
+	}
+
+	private static String replaceSlashesWithDots(String cname) {
+		return cname.replace('/', '.');
 	}
 }
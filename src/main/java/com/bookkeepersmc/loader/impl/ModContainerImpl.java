@@ -33,6 +33,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 import com.bookkeepersmc.loader.api.ModContainer;
 import com.bookkeepersmc.loader.api.metadata.ModOrigin;
@@ -40,18 +41,26 @@ import com.bookkeepersmc.loader.impl.discovery.ModCandidateImpl;
 import com.bookkeepersmc.loader.impl.metadata.LoaderModMetadata;
 import com.bookkeepersmc.loader.impl.metadata.ModOriginImpl;
 import com.bookkeepersmc.loader.impl.util.FileSystemUtil;
+import com.bookkeepersmc.loader.impl.util.SystemProperties;
 import com.bookkeepersmc.loader.impl.util.log.Log;
 import com.bookkeepersmc.loader.impl.util.log.LogCategory;
 
 @SuppressWarnings("deprecation")
 public class ModContainerImpl extends net.fabricmc.loader.ModContainer {
+	private static final boolean USE_ENTRY_INDEX = System.getProperty(SystemProperties.DEBUG_DISABLE_MOD_ENTRY_INDEX) == null;
+
 	private final LoaderModMetadata info;
 	private final ModOrigin origin;
 	private final List<Path> codeSourcePaths;
 	private final String parentModId;
 	private final Collection<String> childModIds;
 
+	// resolved by ModRegistry once the loader is frozen
+	private Optional<ModContainer> containingMod;
+	private Collection<ModContainer> containedMods;
+
 	private volatile List<Path> roots;
+	private volatile ModEntryIndex[] entryIndices;
 
 	public ModContainerImpl(ModCandidateImpl candidate) {
 		this.info = candidate.getMetadata();
@@ -168,8 +177,89 @@ public class ModContainerImpl extends net.fabricmc.loader.ModContainer {
 
 			return fs.getRootDirectories().iterator().next();
 
-			// We never close here. It's fine. getJarFileSystem() will handle it gracefully, and so should mods
+			// The reference is held for the container's lifetime, other getJarFileSystem() users share the same file system
+		}
+	}
+
+	@Override
+	public Optional<Path> findPath(String file) {
+		List<Path> roots = getRootPaths();
+
+		if (USE_ENTRY_INDEX && ModEntryIndex.isIndexable(file)) {
+			ModEntryIndex[] indices = getEntryIndices(roots);
+
+			for (int i = 0; i < indices.length; i++) {
+				ModEntryIndex index = indices[i];
+				Path root = roots.get(i);
+
+				if (index == null) { // directory or indexing failed, resolve normally
+					Path path = resolve(root, file);
+					if (Files.exists(path)) return Optional.of(path);
+				} else if (index.contains(file)) {
+					return Optional.of(resolve(root, file));
+				}
+			}
+
+			return Optional.empty();
+		}
+
+		for (Path root : roots) {
+			Path path = resolve(root, file);
+			if (Files.exists(path)) return Optional.of(path);
+		}
+
+		return Optional.empty();
+	}
+
+	void forEachResource(ResourcePattern pattern, BiConsumer<? super ModContainer, ? super Path> action) {
+		List<Path> roots = getRootPaths();
+		ModEntryIndex[] indices = USE_ENTRY_INDEX ? getEntryIndices(roots) : null;
+
+		for (int i = 0; i < roots.size(); i++) {
+			Path root = roots.get(i);
+			ModEntryIndex index = indices != null ? indices[i] : null;
+
+			if (index != null) {
+				index.forEachFile(pattern.getPrefix(), name -> {
+					if (pattern.matches(name)) action.accept(this, resolve(root, name));
+				});
+			} else {
+				pattern.walk(this, root, action);
+			}
+		}
+	}
+
+	static Path resolve(Path root, String file) {
+		String separator = root.getFileSystem().getSeparator();
+
+		return root.resolve(separator.equals("/") ? file : file.replace("/", separator));
+	}
+
+	private ModEntryIndex[] getEntryIndices(List<Path> roots) {
+		ModEntryIndex[] ret = entryIndices;
+		if (ret != null) return ret;
+
+		synchronized (this) {
+			ret = entryIndices;
+			if (ret != null) return ret;
+
+			ret = new ModEntryIndex[roots.size()];
+
+			for (int i = 0; i < ret.length; i++) {
+				// directories (dev runs) may gain files later, e.g. from datagen, only jars are immutable
+				if (Files.isDirectory(codeSourcePaths.get(i))) continue;
+
+				try {
+					ret[i] = ModEntryIndex.create(codeSourcePaths.get(i), roots.get(i));
+				} catch (IOException | RuntimeException e) {
+					Log.debug(LogCategory.GENERAL, "Failed to index %s of mod %s, falling back to file system lookups", codeSourcePaths.get(i), this, e);
+				}
+			}
+
+			entryIndices = ret;
 		}
+
+		return ret;
 	}
 
 	@Override
@@ -188,13 +278,29 @@ public class ModContainerImpl extends net.fabricmc.loader.ModContainer {
 		}
 	}
 
+	String getParentModId() {
+		return parentModId;
+	}
+
+	Collection<String> getChildModIds() {
+		return childModIds;
+	}
+
+	void setRelations(Optional<ModContainer> containingMod, Collection<ModContainer> containedMods) {
+		this.containingMod = containingMod;
+		this.containedMods = containedMods;
+	}
+
 	@Override
 	public Optional<ModContainer> getContainingMod() {
+		if (containingMod != null) return containingMod;
+
 		return parentModId != null ? NotebookLoaderImpl.INSTANCE.getModContainer(parentModId) : Optional.empty();
 	}
 
 	@Override
 	public Collection<ModContainer> getContainedMods() {
+		if (containedMods != null) return containedMods;
 		if (childModIds.isEmpty()) return Collections.emptyList();
 
 		List<ModContainer> ret = new ArrayList<>(childModIds.size());
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Sorted snapshot of the entry names below a mod root, files and directories alike.
+ *
+ * <p>Names use {@code /} as separator without leading or trailing slashes, the root itself is not listed. Jars on the
+ * default file system are indexed from their central directory without involving zipfs, everything else is walked
+ * once.
+ */
+final class ModEntryIndex {
+	private final String[] entries;
+	private final BitSet directories;
+
+	private ModEntryIndex(String[] entries, BitSet directories) {
+		this.entries = entries;
+		this.directories = directories;
+	}
+
+	static ModEntryIndex create(Path codeSource, Path root) throws IOException {
+		Map<String, Boolean> names = new HashMap<>(); // name -> is directory
+
+		if (codeSource.getFileSystem() == FileSystems.getDefault() && !Files.isDirectory(codeSource)) {
+			try (ZipFile zf = new ZipFile(codeSource.toFile())) {
+				for (Enumeration<? extends ZipEntry> it = zf.entries(); it.hasMoreElements(); ) {
+					ZipEntry entry = it.nextElement();
+					addEntry(entry.getName(), entry.isDirectory(), names);
+				}
+			}
+		} else {
+			String separator = root.getFileSystem().getSeparator();
+
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+					add(dir, true);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					add(file, false);
+					return FileVisitResult.CONTINUE;
+				}
+
+				private void add(Path path, boolean isDirectory) {
+					String name = root.relativize(path).toString();
+					if (!separator.equals("/")) name = name.replace(separator, "/");
+					addEntry(name, isDirectory, names);
+				}
+			});
+		}
+
+		String[] entries = names.keySet().toArray(new String[0]);
+		Arrays.sort(entries);
+		BitSet directories = new BitSet(entries.length);
+
+		for (int i = 0; i < entries.length; i++) {
+			if (names.get(entries[i])) directories.set(i);
+		}
+
+		return new ModEntryIndex(entries, directories);
+	}
+
+	private static void addEntry(String name, boolean isDirectory, Map<String, Boolean> out) {
+		int start = 0;
+		int end = name.length();
+
+		while (start < end && name.charAt(start) == '/') start++;
+		while (end > start && name.charAt(end - 1) == '/') end--;
+		if (start == end) return;
+
+		name = name.substring(start, end);
+
+		out.put(name, isDirectory);
+
+		// add the implied parent directories, zip files don't have to list them explicitly
+		int pos;
+
+		while ((pos = name.lastIndexOf('/')) >= 0) {
+			name = name.substring(0, pos);
+			if (out.putIfAbsent(name, Boolean.TRUE) != null) break;
+		}
+	}
+
+	/**
+	 * Determine whether a name is in the form stored by the index, others have to be resolved against the file system.
+	 */
+	static boolean isIndexable(String name) {
+		int len = name.length();
+		if (len == 0) return false;
+
+		int segmentStart = 0;
+
+		for (int i = 0; i <= len; i++) {
+			char c = i < len ? name.charAt(i) : '/';
+
+			if (c == '/') {
+				int segmentLen = i - segmentStart;
+
+				if (segmentLen == 0
+						|| segmentLen == 1 && name.charAt(segmentStart) == '.'
+						|| segmentLen == 2 && name.charAt(segmentStart) == '.' && name.charAt(segmentStart + 1) == '.') {
+					return false;
+				}
+
+				segmentStart = i + 1;
+			} else if (c == '\\') {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	boolean contains(String name) {
+		return Arrays.binarySearch(entries, name) >= 0;
+	}
+
+	/**
+	 * Visit all files, not directories, whose name starts with the given prefix, in sorted order.
+	 */
+	void forEachFile(String prefix, Consumer<String> action) {
+		int idx = Arrays.binarySearch(entries, prefix);
+		if (idx < 0) idx = -idx - 1;
+
+		for (; idx < entries.length; idx++) {
+			String name = entries[idx];
+			if (!name.startsWith(prefix)) break;
+
+			if (!directories.get(idx)) action.accept(name);
+		}
+	}
+}
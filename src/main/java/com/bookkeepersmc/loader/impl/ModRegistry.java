@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.bookkeepersmc.loader.api.ModContainer;
+import com.bookkeepersmc.loader.impl.util.StringIndexTable;
+
+/**
+ * Immutable view of the loaded mods, compiled when the loader is frozen.
+ *
+ * <p>Mods are numbered densely in load order. Ids and provides aliases map to those numbers through a
+ * {@link StringIndexTable}, so lookups only hash and compare the id. All returned collections and optionals are
+ * created once here and shared by every query.
+ */
+final class ModRegistry {
+	private final List<ModContainer> mods;
+	private final Optional<ModContainer>[] optionals;
+	private final StringIndexTable indices;
+
+	@SuppressWarnings("unchecked")
+	private ModRegistry(List<ModContainerImpl> mods, Map<String, ModContainerImpl> modMap) {
+		ModContainerImpl[] array = mods.toArray(new ModContainerImpl[0]);
+		Map<ModContainerImpl, Integer> indexMap = new IdentityHashMap<>(array.length);
+		optionals = (Optional<ModContainer>[]) new Optional<?>[array.length];
+
+		for (int i = 0; i < array.length; i++) {
+			indexMap.put(array[i], i);
+			optionals[i] = Optional.of(array[i]);
+		}
+
+		this.mods = Collections.unmodifiableList(Arrays.<ModContainer>asList(array));
+
+		Map<String, Integer> idMap = new HashMap<>(modMap.size() * 2);
+
+		for (Map.Entry<String, ModContainerImpl> entry : modMap.entrySet()) {
+			Integer index = indexMap.get(entry.getValue());
+			if (index != null) idMap.put(entry.getKey(), index);
+		}
+
+		indices = StringIndexTable.of(idMap);
+	}
+
+	static ModRegistry create(List<ModContainerImpl> mods, Map<String, ModContainerImpl> modMap) {
+		ModRegistry ret = new ModRegistry(mods, modMap);
+
+		// resolve nesting relations once, their ids can't change anymore
+		for (ModContainerImpl mod : mods) {
+			Optional<ModContainer> parent = mod.getParentModId() != null ? ret.getModContainer(mod.getParentModId()) : Optional.empty();
+			Collection<String> childIds = mod.getChildModIds();
+			List<ModContainer> children;
+
+			if (childIds.isEmpty()) {
+				children = Collections.emptyList();
+			} else {
+				children = new ArrayList<>(childIds.size());
+
+				for (String id : childIds) {
+					ret.getModContainer(id).ifPresent(children::add);
+				}
+
+				children = Collections.unmodifiableList(children);
+			}
+
+			mod.setRelations(parent, children);
+		}
+
+		return ret;
+	}
+
+	Optional<ModContainer> getModContainer(String id) {
+		int index = indices.get(id);
+
+		return index >= 0 ? optionals[index] : Optional.empty();
+	}
+
+	boolean isModLoaded(String id) {
+		return indices.containsKey(id);
+	}
+
+	List<ModContainer> getAllMods() {
+		return mods;
+	}
+}
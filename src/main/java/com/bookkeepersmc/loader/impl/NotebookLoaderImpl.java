@@ -22,13 +22,13 @@
  */
 package com.bookkeepersmc.loader.impl;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -38,6 +38,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -55,14 +60,18 @@ import com.bookkeepersmc.loader.impl.discovery.ModDiscoverer;
 import com.bookkeepersmc.loader.impl.discovery.ModResolutionException;
 import com.bookkeepersmc.loader.impl.discovery.ModResolver;
 import com.bookkeepersmc.loader.impl.discovery.RuntimeModRemapper;
+import com.bookkeepersmc.loader.impl.entrypoint.EntrypointProfiler;
 import com.bookkeepersmc.loader.impl.entrypoint.EntrypointStorage;
+import com.bookkeepersmc.loader.impl.entrypoint.ParallelEntrypointInvoker;
 import com.bookkeepersmc.loader.impl.game.GameProvider;
+import com.bookkeepersmc.loader.impl.launch.NotebookLauncher;
 import com.bookkeepersmc.loader.impl.launch.NotebookLauncherBase;
 import com.bookkeepersmc.loader.impl.launch.knot.Knot;
 import com.bookkeepersmc.loader.impl.metadata.DependencyOverrides;
 import com.bookkeepersmc.loader.impl.metadata.EntrypointMetadata;
-import com.bookkeepersmc.loader.impl.metadata.LoaderModMetadata;
 import com.bookkeepersmc.loader.impl.metadata.VersionOverrides;
+import com.bookkeepersmc.loader.impl.transformer.AccessWidenerCache;
+import com.bookkeepersmc.loader.impl.transformer.ClassNameTable;
 import com.bookkeepersmc.loader.impl.util.DefaultLanguageAdapter;
 import com.bookkeepersmc.loader.impl.util.ExceptionUtil;
 import com.bookkeepersmc.loader.impl.util.LoaderUtil;
@@ -71,7 +80,6 @@ import com.bookkeepersmc.loader.impl.util.log.Log;
 import com.bookkeepersmc.loader.impl.util.log.LogCategory;
 
 import net.fabricmc.accesswidener.AccessWidener;
-import net.fabricmc.accesswidener.AccessWidenerReader;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.objectweb.asm.Opcodes;
 
@@ -88,14 +96,21 @@ public final class NotebookLoaderImpl extends net.fabricmc.loader.FabricLoader {
 	private static final String PROCESSED_MODS_DIR_NAME = "processedMods"; // relative to cache dir
 	public static final String REMAPPED_JARS_DIR_NAME = "remappedJars"; // relative to cache dir
 	private static final String TMP_DIR_NAME = "tmp"; // relative to cache dir
+	private static final String REMAP_CLASSPATH_DIR_NAME = "remapClasspath"; // relative to cache dir
+	private static final String ACCESS_WIDENER_CACHE_NAME = "accessWideners.bin"; // relative to cache dir
+	private static final String ENTRYPOINT_PROFILE_NAME = "entrypointProfile.json"; // relative to cache dir
+
+	private static final boolean PARALLEL_ENTRYPOINTS = System.getProperty(SystemProperties.PARALLEL_ENTRYPOINTS) != null;
 
 	protected final Map<String, ModContainerImpl> modMap = new HashMap<>();
 	private List<ModCandidateImpl> modCandidates;
 	protected List<ModContainerImpl> mods = new ArrayList<>();
+	private ModRegistry registry; // immutable lookup structure for the above, available once frozen
 
 	private final Map<String, LanguageAdapter> adapterMap = new HashMap<>();
 	private final EntrypointStorage entrypointStorage = new EntrypointStorage();
 	private final AccessWidener accessWidener = new AccessWidener();
+	private ClassNameTable accessWidenerTargets = ClassNameTable.EMPTY;
 
 	private final ObjectShare objectShare = new ObjectShareImpl();
 
@@ -119,6 +134,7 @@ public final class NotebookLoaderImpl extends net.fabricmc.loader.FabricLoader {
 		}
 
 		frozen = true;
+		registry = ModRegistry.create(mods, modMap);
 		finishModLoading();
 	}
 
@@ -141,6 +157,9 @@ public final class NotebookLoaderImpl extends net.fabricmc.loader.FabricLoader {
 	private void setGameDir(Path gameDir) {
 		this.gameDir = gameDir;
 		this.configDir = gameDir.resolve("config");
+
+		NotebookLauncher launcher = NotebookLauncherBase.getLauncher();
+		if (launcher != null) launcher.getMappingConfiguration().setCacheDir(gameDir.resolve(CACHE_DIR_NAME));
 	}
 
 	@Override
@@ -247,7 +266,7 @@ public final class NotebookLoaderImpl extends net.fabricmc.loader.FabricLoader {
 			if (System.getProperty(SystemProperties.REMAP_CLASSPATH_FILE) == null) {
 				Log.warn(LogCategory.MOD_REMAP, "Runtime mod remapping disabled due to no fabric.remapClasspathFile being specified. You may need to update loom.");
 			} else {
-				RuntimeModRemapper.remap(modCandidates, cacheDir.resolve(TMP_DIR_NAME), outputdir);
+				RuntimeModRemapper.remap(modCandidates, cacheDir.resolve(TMP_DIR_NAME), outputdir, cacheDir.resolve(REMAP_CLASSPATH_DIR_NAME));
 			}
 		}
 
@@ -372,6 +391,21 @@ public final class NotebookLoaderImpl extends net.fabricmc.loader.FabricLoader {
 
 		setupLanguageAdapters();
 		setupMods();
+		entrypointStorage.freeze();
+	}
+
+	/**
+	 * Start loading the main and environment specific entrypoint classes in the background, see
+	 * {@link EntrypointStorage#startWarmup}.
+	 *
+	 * <p>Must only be called once preLaunch is done, transformers or mixin configs it registers would miss classes
+	 * loaded earlier.
+	 */
+	public void startEntrypointWarmup(ClassLoader classLoader) {
+		if (System.getProperty(SystemProperties.DEBUG_DISABLE_ENTRYPOINT_WARMUP) == null) {
+			String envKey = getEnvironmentType() == EnvType.CLIENT ? "client" : "server";
+			entrypointStorage.startWarmup(classLoader, Arrays.asList("main", envKey));
+		}
 	}
 
 	public boolean hasEntrypoints(String key) {
@@ -396,34 +430,52 @@ public final class NotebookLoaderImpl extends net.fabricmc.loader.FabricLoader {
 		}
 
 		RuntimeException exception = null;
-		Collection<EntrypointContainer<T>> entrypoints = NotebookLoaderImpl.INSTANCE.getEntrypointContainers(key, type);
+		EntrypointProfiler profiler = entrypointStorage.getProfiler();
+		long startTime = System.nanoTime();
+		List<EntrypointContainer<T>> entrypoints = NotebookLoaderImpl.INSTANCE.getEntrypointContainers(key, type);
 
-		Log.debug(LogCategory.ENTRYPOINT, "Iterating over entrypoint '%s'", key);
+		if (PARALLEL_ENTRYPOINTS) {
+			Log.debug(LogCategory.ENTRYPOINT, "Invoking entrypoint '%s' in parallel mode", key);
 
-		for (EntrypointContainer<T> container : entrypoints) {
-			try {
-				invoker.accept(container.getEntrypoint());
-			} catch (Throwable t) {
-				exception = ExceptionUtil.gatherExceptions(t,
-						exception,
-						exc -> new RuntimeException(String.format("Could not execute entrypoint stage '%s' due to errors, provided by '%s' at '%s'!",
-								key, container.getProvider().getMetadata().getId(), container.getDefinition()),
-								exc));
+			Throwable[] failures = ParallelEntrypointInvoker.invoke(key, entrypoints, invoker, profiler);
+
+			for (int i = 0; i < failures.length; i++) {
+				if (failures[i] != null) exception = gatherEntrypointException(key, entrypoints.get(i), failures[i], exception);
+			}
+		} else {
+			Log.debug(LogCategory.ENTRYPOINT, "Iterating over entrypoint '%s'", key);
+
+			for (EntrypointContainer<T> container : entrypoints) {
+				try {
+					profiler.invoke(key, container, invoker);
+				} catch (Throwable t) {
+					exception = gatherEntrypointException(key, container, t, exception);
+				}
 			}
 		}
 
+		profiler.report(key, System.nanoTime() - startTime, gameDir != null ? gameDir.resolve(CACHE_DIR_NAME).resolve(ENTRYPOINT_PROFILE_NAME) : null);
+
 		if (exception != null) {
 			throw exception;
 		}
 	}
 
+	private static RuntimeException gatherEntrypointException(String key, EntrypointContainer<?> container, Throwable t, RuntimeException exception) {
+		return ExceptionUtil.gatherExceptions(t,
+				exception,
+				exc -> new RuntimeException(String.format("Could not execute entrypoint stage '%s' due to errors, provided by '%s' at '%s'!",
+						key, container.getProvider().getMetadata().getId(), container.getDefinition()),
+						exc));
+	}
+
 	@Override
 	public MappingResolver getMappingResolver() {
 		if (mappingResolver == null) {
 			final String targetNamespace = NotebookLauncherBase.getLauncher().getTargetNamespace();
 
 			mappingResolver = new LazyMappingResolver(() -> new MappingResolverImpl(
-				NotebookLauncherBase.getLauncher().getMappingConfiguration().getMappings(),
+				NotebookLauncherBase.getLauncher().getMappingConfiguration().getMappingImage(),
 				targetNamespace
 			), targetNamespace);
 		}
@@ -448,20 +500,54 @@ public final class NotebookLoaderImpl extends net.fabricmc.loader.FabricLoader {
 
 	@Override
 	public Optional<com.bookkeepersmc.loader.api.ModContainer> getModContainer(String id) {
+		ModRegistry registry = this.registry;
+		if (registry != null) return registry.getModContainer(id);
+
 		return Optional.ofNullable(modMap.get(id));
 	}
 
 	@Override
 	public Collection<ModContainer> getAllMods() {
+		ModRegistry registry = this.registry;
+		if (registry != null) return registry.getAllMods();
+
 		return Collections.unmodifiableList(mods);
 	}
 
+	@Override
+	public void forEachResource(String pattern, BiConsumer<? super ModContainer, ? super Path> action) {
+		ResourcePattern parsed = ResourcePattern.parse(pattern);
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setContextClassLoader(contextClassLoader); // the action may rely on it like on the calling thread
+
+			return thread;
+		}, null, false);
+
+		try {
+			// a parallel stream started from a pool thread runs on that pool
+			CompletableFuture.runAsync(() -> mods.parallelStream().forEach(mod -> mod.forEachResource(parsed, action)), pool).join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
 	public List<ModContainerImpl> getModsInternal() {
 		return mods;
 	}
 
 	@Override
 	public boolean isModLoaded(String id) {
+		ModRegistry registry = this.registry;
+		if (registry != null) return registry.isModLoaded(id);
+
 		return modMap.containsKey(id);
 	}
 
@@ -519,22 +605,10 @@ public final class NotebookLoaderImpl extends net.fabricmc.loader.FabricLoader {
 	}
 
 	public void loadAccessWideners() {
-		AccessWidenerReader accessWidenerReader = new AccessWidenerReader(accessWidener);
+		Path cacheFile = gameDir != null ? gameDir.resolve(CACHE_DIR_NAME).resolve(ACCESS_WIDENER_CACHE_NAME) : null;
 
-		for (com.bookkeepersmc.loader.api.ModContainer modContainer : getAllMods()) {
-			LoaderModMetadata modMetadata = (LoaderModMetadata) modContainer.getMetadata();
-			String accessWidener = modMetadata.getAccessWidener();
-			if (accessWidener == null) continue;
-
-			Path path = modContainer.findPath(accessWidener).orElse(null);
-			if (path == null) throw new RuntimeException(String.format("Missing accessWidener file %s from mod %s", accessWidener, modContainer.getMetadata().getId()));
-
-			try (BufferedReader reader = Files.newBufferedReader(path)) {
-				accessWidenerReader.read(reader, NotebookLauncherBase.getLauncher().getTargetNamespace());
-			} catch (Exception e) {
-				throw new RuntimeException("Failed to read accessWidener file from mod " + modMetadata.getId(), e);
-			}
-		}
+		AccessWidenerCache.load(mods, NotebookLauncherBase.getLauncher().getTargetNamespace(), cacheFile, accessWidener);
+		accessWidenerTargets = ClassNameTable.of(accessWidener.getTargets());
 	}
 
 	public void prepareModInit(Path newRunDir, Object gameInstance) {
@@ -596,6 +670,13 @@ public final class NotebookLoaderImpl extends net.fabricmc.loader.FabricLoader {
 		return accessWidener;
 	}
 
+	/**
+	 * Get the names of the classes affected by access wideners, in the same form as {@link AccessWidener#getTargets()}.
+	 */
+	public ClassNameTable getAccessWidenerTargets() {
+		return accessWidenerTargets;
+	}
+
 	/**
 	 * Sets the game instance. This is only used in 20w22a+ by the dedicated server and should not be called by anything else.
 	 */
@@ -22,41 +22,59 @@
  */
 package com.bookkeepersmc.loader.impl;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 
 import com.bookkeepersmc.loader.api.ObjectShare;
 
+/**
+ * Lock-free object share.
+ *
+ * <p>Pending consumers are queued per key. A consumer is claimed through its own flag by either the thread that
+ * registered it or the thread that added the value, so it runs exactly once without holding any lock. Either side
+ * re-checks the other's data structure after publishing its own, so no notification is lost.
+ */
 final class ObjectShareImpl implements ObjectShare {
-	private final Map<String, Object> values = new HashMap<>();
-	private final Map<String, List<BiConsumer<String, Object>>> pendingMap = new HashMap<>();
+	private final ConcurrentMap<String, Object> values = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Queue<Subscription>> pendingMap = new ConcurrentHashMap<>();
 
 	@Override
-	public synchronized Object get(String key) {
+	public Object get(String key) {
 		validateKey(key);
 
 		return values.get(key);
 	}
 
+	@Override
+	public <T> T get(Key<T> key) {
+		return key.cast(values.get(key.getName())); // validated by the key already
+	}
+
 	@Override
 	public Object put(String key, Object value) {
 		validateKey(key);
-		Objects.requireNonNull(value, "null value");
 
-		List<BiConsumer<String, Object>> pending;
+		return put0(key, value);
+	}
 
-		synchronized (this) {
-			Object prev = values.put(key, value);
-			if (prev != null) return prev; // no new entry -> can't have pending entries for it
+	@Override
+	public <T> Object put(Key<T> key, T value) {
+		return put0(key.getName(), value);
+	}
 
-			pending = pendingMap.remove(key);
-		}
+	private Object put0(String key, Object value) {
+		Objects.requireNonNull(value, "null value");
 
-		if (pending != null) invokePending(key, value, pending);
+		Object prev = values.put(key, value);
+		if (prev != null) return prev; // no new entry -> can't have pending entries for it
+
+		invokePending(key, value);
 
 		return null;
 	}
@@ -64,46 +82,88 @@ final class ObjectShareImpl implements ObjectShare {
 	@Override
 	public Object putIfAbsent(String key, Object value) {
 		validateKey(key);
-		Objects.requireNonNull(value, "null value");
 
-		List<BiConsumer<String, Object>> pending;
+		return putIfAbsent0(key, value);
+	}
 
-		synchronized (this) {
-			Object prev = values.putIfAbsent(key, value);
-			if (prev != null) return prev; // no new entry -> can't have pending entries for it
+	@Override
+	public <T> Object putIfAbsent(Key<T> key, T value) {
+		return putIfAbsent0(key.getName(), value);
+	}
 
-			pending = pendingMap.remove(key);
-		}
+	private Object putIfAbsent0(String key, Object value) {
+		Objects.requireNonNull(value, "null value");
+
+		Object prev = values.putIfAbsent(key, value);
+		if (prev != null) return prev; // no new entry -> can't have pending entries for it
 
-		if (pending != null) invokePending(key, value, pending);
+		invokePending(key, value);
 
 		return null;
 	}
 
 	@Override
-	public synchronized Object remove(String key) {
+	public Object remove(String key) {
 		validateKey(key);
 
 		return values.remove(key);
 	}
 
+	@Override
+	public Object remove(Key<?> key) {
+		return values.remove(key.getName());
+	}
+
 	@Override
 	public void whenAvailable(String key, BiConsumer<String, Object> consumer) {
 		validateKey(key);
+		Objects.requireNonNull(consumer, "null consumer");
 
-		Object value;
+		whenAvailable0(key, null, consumer);
+	}
+
+	@Override
+	public void whenAvailable(String key, Executor executor, BiConsumer<String, Object> consumer) {
+		validateKey(key);
+		Objects.requireNonNull(executor, "null executor");
+		Objects.requireNonNull(consumer, "null consumer");
 
-		synchronized (this) {
-			value = values.get(key);
+		whenAvailable0(key, executor, consumer);
+	}
 
-			if (value == null) { // value doesn't exist yet, queue invocation for when it gets added
-				pendingMap.computeIfAbsent(key, ignore -> new ArrayList<>()).add(consumer);
-				return;
-			}
+	private void whenAvailable0(String key, Executor executor, BiConsumer<String, Object> consumer) {
+		Object value = values.get(key);
+
+		if (value != null) { // value exists already, invoke directly
+			new Subscription(executor, consumer).invoke(key, value);
+			return;
+		}
+
+		// value doesn't exist yet, queue invocation for when it gets added
+		Subscription subscription = new Subscription(executor, consumer);
+		Queue<Subscription> queue = pendingMap.computeIfAbsent(key, ignore -> new ConcurrentLinkedQueue<>());
+		queue.add(subscription);
+
+		// the value may have been added before the subscription was visible to put
+		value = values.get(key);
+
+		if (value != null && subscription.claim()) {
+			queue.remove(subscription);
+			subscription.invoke(key, value);
 		}
+	}
+
+	private void invokePending(String key, Object value) {
+		Queue<Subscription> queue = pendingMap.get(key);
+		if (queue == null) return;
+
+		Subscription subscription;
 
-		// value exists already, invoke directly
-		consumer.accept(key, value);
+		while ((subscription = queue.poll()) != null) {
+			if (subscription.claim()) subscription.invoke(key, value);
+		}
+
+		// the drained queue stays mapped, retiring it could strand a concurrently added subscription
 	}
 
 	private static void validateKey(String key) {
@@ -113,9 +173,26 @@ final class ObjectShareImpl implements ObjectShare {
 		if (pos <= 0 || pos >= key.length() - 1) throw new IllegalArgumentException("invalid key, must be modid:subkey");
 	}
 
-	private static void invokePending(String key, Object value, List<BiConsumer<String, Object>> pending) {
-		for (BiConsumer<String, Object> consumer : pending) {
-			consumer.accept(key, value);
+	private static final class Subscription {
+		private final Executor executor;
+		private final BiConsumer<String, Object> consumer;
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		Subscription(Executor executor, BiConsumer<String, Object> consumer) {
+			this.executor = executor;
+			this.consumer = consumer;
+		}
+
+		boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+
+		void invoke(String key, Object value) {
+			if (executor == null) {
+				consumer.accept(key, value);
+			} else {
+				executor.execute(() -> consumer.accept(key, value));
+			}
 		}
 	}
 }
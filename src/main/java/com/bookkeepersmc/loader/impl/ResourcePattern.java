@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.bookkeepersmc.loader.api.ModContainer;
+
+/**
+ * Glob over {@code /} separated resource names, {@code *} and {@code ?} stay within a segment, {@code **} crosses
+ * segments.
+ */
+final class ResourcePattern {
+	private final String prefix;
+	private final Pattern regex; // null for patterns without wildcards
+
+	private ResourcePattern(String prefix, Pattern regex) {
+		this.prefix = prefix;
+		this.regex = regex;
+	}
+
+	static ResourcePattern parse(String glob) {
+		if (!ModEntryIndex.isIndexable(glob)) throw new IllegalArgumentException("invalid resource pattern: "+glob);
+
+		int firstWildcard = -1;
+
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+
+			if (c == '*' || c == '?') {
+				firstWildcard = i;
+				break;
+			}
+		}
+
+		if (firstWildcard < 0) return new ResourcePattern(glob, null);
+
+		StringBuilder sb = new StringBuilder(glob.length() + 16);
+		int literalStart = 0;
+
+		for (int i = firstWildcard; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c != '*' && c != '?') continue;
+
+			if (literalStart < i) sb.append(Pattern.quote(glob.substring(literalStart, i)));
+
+			if (c == '?') {
+				sb.append("[^/]");
+			} else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+				sb.append(".*");
+				i++;
+			} else {
+				sb.append("[^/]*");
+			}
+
+			literalStart = i + 1;
+		}
+
+		if (literalStart < glob.length()) sb.append(Pattern.quote(glob.substring(literalStart)));
+
+		return new ResourcePattern(glob.substring(0, firstWildcard), Pattern.compile(sb.toString()));
+	}
+
+	/**
+	 * Get the literal start of the pattern, every matching name starts with it.
+	 */
+	String getPrefix() {
+		return prefix;
+	}
+
+	boolean matches(String name) {
+		if (regex == null) return name.equals(prefix);
+
+		return regex.matcher(name).matches();
+	}
+
+	void walk(ModContainer mod, Path root, BiConsumer<? super ModContainer, ? super Path> action) {
+		int pos = prefix.lastIndexOf('/');
+		Path start = pos < 0 ? root : ModContainerImpl.resolve(root, prefix.substring(0, pos));
+		if (!Files.isDirectory(start)) return;
+
+		String separator = root.getFileSystem().getSeparator();
+
+		try (Stream<Path> stream = Files.walk(start)) {
+			stream.forEach(path -> {
+				if (Files.isDirectory(path)) return;
+
+				String name = root.relativize(path).toString();
+				if (!separator.equals("/")) name = name.replace(separator, "/");
+
+				if (matches(name)) action.accept(mod, path);
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -23,13 +23,16 @@
 package com.bookkeepersmc.loader.impl.discovery;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeSet;
 
 import com.bookkeepersmc.loader.api.Version;
 
@@ -80,21 +83,31 @@ final class ModPrioSorter {
 		if (providedMods.isEmpty()) return; // no overlapping id mods
 
 		// float overlapping ids up as needed
+		// the mods are kept in a linked list with order labels, processed mods are indexed by overlapping id so that only
+		// related mods need to be visited, which are then merged in descending position through a priority queue
 
-		boolean movedPastRoots = false;
-		int startIdx = 0;
-		Set<String> potentiallyOverlappingIds = new HashSet<>();
+		List<Node> nodes = new ArrayList<>(mods.size());
+		Node prev = null;
 
-		for (int i = 0, size = mods.size(); i < size; i++) {
-			ModCandidateImpl mod = mods.get(i);
-			String id = mod.getId();
+		for (ModCandidateImpl mod : mods) {
+			Node node = new Node(mod);
+			node.prev = prev;
+			if (prev != null) prev.next = node;
+			nodes.add(node);
+			prev = node;
+		}
 
-			//System.out.printf("%d: %s%n", i, mod);
+		Node head = nodes.get(0);
+		relabel(head, nodes.size());
 
-			if (!movedPastRoots && !mod.isRoot()) { // update start index to avoid mixing root and non-root mods (root always has higher prio)
-				movedPastRoots = true;
-				startIdx = i;
-			}
+		Map<String, TreeSet<Node>> processedByOverlappingId = new HashMap<>();
+		Map<String, Node> lastProcessedById = new HashMap<>();
+		PriorityQueue<Cursor> queue = new PriorityQueue<>();
+		List<String> potentiallyOverlappingIds = new ArrayList<>();
+
+		for (Node node : nodes) {
+			ModCandidateImpl mod = node.mod;
+			String id = mod.getId();
 
 			// gather ids for mod that might overlap other mods
 
@@ -102,51 +115,152 @@ final class ModPrioSorter {
 				potentiallyOverlappingIds.add(id);
 			}
 
-			if (!mod.getProvides().isEmpty()) {
-				for (String provId : mod.getProvides()) {
-					if (providedMods.contains(provId)) {
-						potentiallyOverlappingIds.add(provId);
-					}
+			for (String provId : mod.getProvides()) {
+				if (providedMods.contains(provId) && !potentiallyOverlappingIds.contains(provId)) {
+					potentiallyOverlappingIds.add(provId);
 				}
 			}
 
-			if (potentiallyOverlappingIds.isEmpty()) continue;
+			if (!potentiallyOverlappingIds.isEmpty()) {
+				// search for a suitable mod that overlaps mod but has a lower version, visiting only mods sharing an id with
+				// mod in descending position
 
-			// search for a suitable mod that overlaps mod but has a lower version
+				// can't move mod past another mod with the same id since that mod would have a higher version due to the
+				// previous sorting step and thus always has higher prio
+				Node sameIdNode = lastProcessedById.get(id);
+				long minLabel = sameIdNode != null ? sameIdNode.label : Long.MIN_VALUE;
 
-			int earliestIdx = -1;
+				for (String overlappingId : potentiallyOverlappingIds) {
+					TreeSet<Node> candidates = processedByOverlappingId.get(overlappingId);
+					if (candidates != null) queue.add(new Cursor(candidates.descendingIterator()));
+				}
+
+				Node earliest = null;
+				Node last = null;
+
+				while (!queue.isEmpty()) {
+					Cursor cursor = queue.poll();
+					Node cmpNode = cursor.node;
+					if (cursor.advance()) queue.add(cursor);
+
+					if (cmpNode == last) continue; // already visited through another id
+					last = cmpNode;
 
-			for (int j = i - 1; j >= startIdx; j--) {
-				ModCandidateImpl cmpMod = mods.get(j);
-				String cmpId = cmpMod.getId();
-				if (cmpId.equals(id)) break; // can't move mod past another mod with the same id since that mod since that mod would have a higher version due to the previous sorting step and thus always has higher prio
+					if (cmpNode.label <= minLabel) break;
+					if (cmpNode.mod.isRoot() != mod.isRoot()) break; // avoid mixing root and non-root mods (root always has higher prio)
 
-				// quick check if it might match
-				if (!potentiallyOverlappingIds.contains(cmpId)
-						&& (cmpMod.getProvides().isEmpty() || Collections.disjoint(potentiallyOverlappingIds, cmpMod.getProvides()))) {
-					continue;
+					int cmp = compareOverlappingIds(mod, cmpNode.mod, Integer.MAX_VALUE);
+
+					if (cmp < 0) { // mod needs to be after cmpMod, move mod forward
+						earliest = cmpNode;
+					} else if (cmp != Integer.MAX_VALUE) { // cmpMod has at least the same prio, don't search past it
+						break;
+					}
 				}
 
-				int cmp = compareOverlappingIds(mod, cmpMod, Integer.MAX_VALUE);
+				queue.clear();
 
-				if (cmp < 0) { // mod needs to be after cmpMod, move mod forward
-					//System.out.printf("found candidate for %d at %d (before %s)%n", i, j, cmpMod);
-					earliestIdx = j;
-				} else if (cmp != Integer.MAX_VALUE) { // cmpMod has at least the same prio, don't search past it
-					break;
+				if (earliest != null) {
+					if (head == earliest) head = node;
+					moveBefore(node, earliest, head, nodes.size());
+				}
+
+				for (String overlappingId : potentiallyOverlappingIds) {
+					processedByOverlappingId.computeIfAbsent(overlappingId, ignore -> new TreeSet<>(labelComparator)).add(node);
 				}
-			}
 
-			if (earliestIdx >= 0) {
-				//System.out.printf("move %d to %d (before %s)%n", i, earliestIdx, mods.get(earliestIdx));
-				mods.remove(i);
-				mods.add(earliestIdx, mod);
+				potentiallyOverlappingIds.clear();
 			}
 
-			potentiallyOverlappingIds.clear();
+			lastProcessedById.put(id, node);
+		}
+
+		// write back the final order
+
+		ListIterator<ModCandidateImpl> it = mods.listIterator();
+
+		for (Node node = head; node != null; node = node.next) {
+			it.next();
+			it.set(node.mod);
+		}
+	}
+
+	/**
+	 * Move node in front of target, assigning it a label between target and its predecessor.
+	 */
+	private static void moveBefore(Node node, Node target, Node head, int size) {
+		// unlink
+
+		if (node.prev != null) node.prev.next = node.next;
+		if (node.next != null) node.next.prev = node.prev;
+
+		// link in front of target
+
+		node.prev = target.prev;
+		node.next = target;
+		if (target.prev != null) target.prev.next = node;
+		target.prev = node;
+
+		long lower = node.prev != null ? node.prev.label : Long.MIN_VALUE;
+
+		if (target.label - lower < 2) { // no gap left, spread all labels out again (preserves the relative order)
+			relabel(head, size);
+		} else {
+			node.label = lower + (target.label - lower) / 2;
+		}
+	}
+
+	private static void relabel(Node head, int size) {
+		long step = Long.MAX_VALUE / (size + 1) * 2;
+		long label = Long.MIN_VALUE;
+
+		for (Node node = head; node != null; node = node.next) {
+			label += step;
+			node.label = label;
 		}
 	}
 
+	private static final class Node {
+		final ModCandidateImpl mod;
+		Node prev;
+		Node next;
+		long label; // strictly increasing along the linked list
+
+		Node(ModCandidateImpl mod) {
+			this.mod = mod;
+		}
+	}
+
+	private static final class Cursor implements Comparable<Cursor> {
+		private final Iterator<Node> it;
+		Node node;
+
+		Cursor(Iterator<Node> it) {
+			this.it = it;
+			this.node = it.next();
+		}
+
+		boolean advance() {
+			if (!it.hasNext()) return false;
+
+			node = it.next();
+
+			return true;
+		}
+
+		@Override
+		public int compareTo(Cursor o) {
+			return Long.compare(o.node.label, node.label); // highest label (latest position) first
+		}
+	}
+
+	private static final Comparator<Node> labelComparator = new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			return Long.compare(a.label, b.label);
+		}
+	};
+
 	private static final Comparator<ModCandidateImpl> comparator = new Comparator<ModCandidateImpl>() {
 		@Override
 		public int compare(ModCandidateImpl a, ModCandidateImpl b) {
@@ -24,15 +24,37 @@ package com.bookkeepersmc.loader.impl.discovery;
 
 @SuppressWarnings("serial")
 public class ModResolutionException extends Exception {
+	private final ResolutionReport report;
+
 	public ModResolutionException(String s) {
 		super(s);
+
+		this.report = null;
 	}
 
 	public ModResolutionException(String format, Object... args) {
 		super(String.format(format, args));
+
+		this.report = null;
 	}
 
 	public ModResolutionException(String s, Throwable t) {
 		super(s, t);
+
+		this.report = null;
+	}
+
+	/**
+	 * Create an exception with a resolution report, which gets rendered into the message only once requested.
+	 */
+	ModResolutionException(String s, ResolutionReport report) {
+		super(s);
+
+		this.report = report;
+	}
+
+	@Override
+	public String getMessage() {
+		return report != null ? super.getMessage() + report : super.getMessage();
 	}
 }
@@ -22,6 +22,11 @@
  */
 package com.bookkeepersmc.loader.impl.discovery;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,6 +44,7 @@ import com.bookkeepersmc.loader.api.metadata.ModDependency;
 import com.bookkeepersmc.loader.api.metadata.ModDependency.Kind;
 import com.bookkeepersmc.loader.impl.discovery.ModSolver.InactiveReason;
 import com.bookkeepersmc.loader.impl.metadata.ModDependencyImpl;
+import com.bookkeepersmc.loader.impl.util.SystemProperties;
 import com.bookkeepersmc.loader.impl.util.log.Log;
 import com.bookkeepersmc.loader.impl.util.log.LogCategory;
 
@@ -150,8 +156,10 @@ public class ModResolver {
 				}
 			}
 
-			throw new ModResolutionException("Some of your mods are incompatible with the game or each other!%s",
-					ResultAnalyzer.gatherErrors(result, selectedMods, modsById, envDisabledMods, envType));
+			ResolutionReport report = ResultAnalyzer.gatherErrors(result, selectedMods, modsById, envDisabledMods, envType);
+			writeReport(report);
+
+			throw new ModResolutionException("Some of your mods are incompatible with the game or each other!", report);
 		}
 
 		uniqueSelectedMods.sort(Comparator.comparing(ModCandidateImpl::getId));
@@ -192,16 +200,28 @@ public class ModResolver {
 			}
 		}
 
-		String warnings = ResultAnalyzer.gatherWarnings(uniqueSelectedMods, selectedMods,
+		ResolutionReport warnings = ResultAnalyzer.gatherWarnings(uniqueSelectedMods, selectedMods,
 				envDisabledMods, envType);
 
 		if (warnings != null) {
-			Log.warn(LogCategory.RESOLUTION, "Warnings were found!%s", warnings);
+			writeReport(warnings);
+			Log.warn(LogCategory.RESOLUTION, "Warnings were found!%s", warnings); // rendered only if logged
 		}
 
 		return uniqueSelectedMods;
 	}
 
+	private static void writeReport(ResolutionReport report) {
+		String file = System.getProperty(SystemProperties.DEBUG_RESOLUTION_REPORT);
+		if (file == null) return;
+
+		try (Writer writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+			report.writeJson(writer);
+		} catch (IOException e) {
+			Log.warn(LogCategory.RESOLUTION, "Error writing resolution report to %s", file, e);
+		}
+	}
+
 	static void preselectMod(ModCandidateImpl mod, List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
                              Map<String, ModCandidateImpl> selectedMods, List<ModCandidateImpl> uniqueSelectedMods) throws ModResolutionException {
 		selectMod(mod, selectedMods, uniqueSelectedMods);
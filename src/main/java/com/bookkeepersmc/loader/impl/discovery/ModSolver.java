@@ -35,6 +35,8 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Function;
 
 import com.bookkeepersmc.loader.api.SemanticVersion;
@@ -251,6 +253,7 @@ final class ModSolver {
 		// determine mod versions to try to add
 
 		Map<String, List<AddModVar>> installableMods = new HashMap<>();
+		int maxAlternatives = Integer.getInteger(SystemProperties.DEBUG_RESOLUTION_MAX_FIX_ALTERNATIVES, 16);
 
 		for (Map.Entry<String, Set<Collection<VersionPredicate>>> entry : depsById.entrySet()) {
 			String id = entry.getKey();
@@ -302,6 +305,12 @@ final class ModSolver {
 			}
 
 			out.sort(Comparator.<AddModVar, Version>comparing(AddModVar::getVersion).reversed());
+
+			// bound the search space for mods with many disjoint requirements, keeping the newest versions
+
+			if (maxAlternatives > 0 && out.size() > maxAlternatives) {
+				out.subList(maxAlternatives, out.size()).clear();
+			}
 		}
 
 		// check the determined solution
@@ -699,6 +708,10 @@ final class ModSolver {
 		boolean enableOptional = !depDisableSim && installableMods == null && !removalSim; // whether to enable optional mods (regular solve only, not for failure handling)
 		List<DomainObject> suitableMods = new ArrayList<>();
 
+		// determine the matching mods for every dependency upfront (parallel), the loop below only feeds the solver
+
+		Map<ModDependency, DomainObject.Mod[]> depMatches = computeDepMatches(allModsSorted, modsById, installableMods, enableOptional);
+
 		for (ModCandidateImpl mod : allModsSorted) {
 			// add constraints for dependencies
 
@@ -724,23 +737,7 @@ final class ModSolver {
 					}
 				}
 
-				List<? extends DomainObject.Mod> availableMods = modsById.get(dep.getModId());
-
-				if (availableMods != null) {
-					for (DomainObject.Mod m : availableMods) {
-						if (dep.matches(m.getVersion())) suitableMods.add(m);
-					}
-				}
-
-				if (installableMods != null) {
-					availableMods = installableMods.get(dep.getModId());
-
-					if (availableMods != null) {
-						for (DomainObject.Mod m : availableMods) {
-							if (dep.matches(m.getVersion())) suitableMods.add(m);
-						}
-					}
-				}
+				Collections.addAll(suitableMods, depMatches.get(dep));
 
 				switch (dep.getKind()) {
 				case DEPENDS: // strong dep
@@ -933,6 +930,95 @@ final class ModSolver {
 		}
 	}
 
+	/**
+	 * Determine the mods matching each distinct dependency of the supplied mods.
+	 *
+	 * <p>The matches are in modsById followed by installableMods order, as expected by the solver setup. Matching is
+	 * side-effect free, so it gets split up across the common fork-join pool for larger mod sets.
+	 */
+	private static Map<ModDependency, DomainObject.Mod[]> computeDepMatches(List<ModCandidateImpl> mods, Map<String, List<ModCandidateImpl>> modsById,
+			Map<String, List<AddModVar>> installableMods, boolean enableOptional) {
+		Map<ModDependency, DomainObject.Mod[]> ret = new HashMap<>(); // equality semantics, matching doesn't depend on the declaring mod
+
+		for (ModCandidateImpl mod : mods) {
+			for (ModDependency dep : mod.getDependencies()) {
+				if (!enableOptional && dep.getKind().isSoft()) continue;
+
+				ret.put(dep, null);
+			}
+		}
+
+		ModDependency[] deps = ret.keySet().toArray(new ModDependency[0]);
+		DomainObject.Mod[][] matches = new DomainObject.Mod[deps.length][];
+		DepMatchTask task = new DepMatchTask(deps, matches, 0, deps.length, modsById, installableMods);
+
+		if (deps.length > DepMatchTask.BATCH_SIZE) {
+			ForkJoinPool.commonPool().invoke(task);
+		} else {
+			task.compute();
+		}
+
+		for (int i = 0; i < deps.length; i++) {
+			ret.put(deps[i], matches[i]);
+		}
+
+		return ret;
+	}
+
+	@SuppressWarnings("serial")
+	private static final class DepMatchTask extends RecursiveAction {
+		static final int BATCH_SIZE = 64;
+
+		private final ModDependency[] deps;
+		private final DomainObject.Mod[][] out;
+		private final int start;
+		private final int end;
+		private final Map<String, List<ModCandidateImpl>> modsById;
+		private final Map<String, List<AddModVar>> installableMods;
+
+		DepMatchTask(ModDependency[] deps, DomainObject.Mod[][] out, int start, int end,
+				Map<String, List<ModCandidateImpl>> modsById, Map<String, List<AddModVar>> installableMods) {
+			this.deps = deps;
+			this.out = out;
+			this.start = start;
+			this.end = end;
+			this.modsById = modsById;
+			this.installableMods = installableMods;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > BATCH_SIZE) {
+				int mid = (start + end) >>> 1;
+
+				invokeAll(new DepMatchTask(deps, out, start, mid, modsById, installableMods),
+						new DepMatchTask(deps, out, mid, end, modsById, installableMods));
+
+				return;
+			}
+
+			List<DomainObject.Mod> matches = new ArrayList<>();
+
+			for (int i = start; i < end; i++) {
+				ModDependency dep = deps[i];
+
+				addMatches(dep, modsById.get(dep.getModId()), matches);
+				if (installableMods != null) addMatches(dep, installableMods.get(dep.getModId()), matches);
+
+				out[i] = matches.toArray(new DomainObject.Mod[0]);
+				matches.clear();
+			}
+		}
+
+		private static void addMatches(ModDependency dep, List<? extends DomainObject.Mod> availableMods, List<DomainObject.Mod> out) {
+			if (availableMods == null) return;
+
+			for (DomainObject.Mod m : availableMods) {
+				if (dep.matches(m.getVersion())) out.add(m);
+			}
+		}
+	}
+
 	private static final BigInteger TWO = BigInteger.valueOf(2);
 
 	private static DependencyHelper<DomainObject, Explanation> createDepHelper(IPBSolver solver) {
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.discovery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.bookkeepersmc.loader.impl.util.HashUtil;
+import com.bookkeepersmc.loader.impl.util.ParallelZipWriter;
+import com.bookkeepersmc.loader.impl.util.log.Log;
+import com.bookkeepersmc.loader.impl.util.log.LogCategory;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Persistent class hierarchy snapshots of the remap class path.
+ *
+ * <p>Tiny remapper only needs the class headers and member signatures of class path entries. Every jar on the remap
+ * class path gets a snapshot jar with the same classes, stripped of code and debug info. The snapshot is keyed on the
+ * jar's path, size and modification time and replaces the jar for subsequent remapper runs, creating a new snapshot
+ * deletes the older ones for the same jar file name. Directories are passed through since they tend to change between
+ * launches.
+ */
+final class RemapClasspathSnapshot {
+	private static final int FORMAT_VERSION = 1;
+
+	static List<Path> getSnapshots(List<Path> classpath, Path cacheDir) {
+		List<Path> ret = new ArrayList<>(classpath.size());
+		List<String> createdNames = new ArrayList<>();
+
+		for (Path path : classpath) {
+			Path snapshot = null;
+
+			if (Files.isRegularFile(path)) {
+				try {
+					snapshot = getSnapshot(path, cacheDir, createdNames);
+				} catch (IOException e) {
+					Log.warn(LogCategory.MOD_REMAP, "Error creating class path snapshot for %s, using it directly", path, e);
+				}
+			}
+
+			ret.add(snapshot != null ? snapshot : path);
+		}
+
+		if (!createdNames.isEmpty()) {
+			deleteOutdatedSnapshots(createdNames, cacheDir, new HashSet<>(ret));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @param createdNames receives the snapshot name without key if a new snapshot was created
+	 */
+	private static Path getSnapshot(Path path, Path cacheDir, List<String> createdNames) throws IOException {
+		MessageDigest digest = HashUtil.newDigest();
+		HashUtil.update(digest, Integer.toString(FORMAT_VERSION));
+		HashUtil.update(digest, path.toAbsolutePath().toString());
+		HashUtil.update(digest, Long.toString(Files.size(path)));
+		HashUtil.update(digest, Long.toString(Files.getLastModifiedTime(path).toMillis()));
+
+		String fileName = path.getFileName().toString();
+		if (fileName.endsWith(".jar")) fileName = fileName.substring(0, fileName.length() - 4);
+
+		Path ret = cacheDir.resolve(String.format("%s-%s.jar", fileName, HashUtil.toHex(digest.digest()).substring(0, 16)));
+		if (Files.exists(ret)) return ret;
+
+		long time = System.nanoTime();
+		Files.createDirectories(cacheDir);
+		Path tmpFile = Files.createTempFile(cacheDir, fileName, ".tmp");
+		int classCount;
+
+		try {
+			try (ZipFile zf = new ZipFile(path.toFile());
+					ParallelZipWriter writer = new ParallelZipWriter(tmpFile)) {
+				ForkJoinPool pool = new ForkJoinPool();
+				List<Future<?>> futures = new ArrayList<>();
+
+				try {
+					for (Enumeration<? extends ZipEntry> e = zf.entries(); e.hasMoreElements(); ) {
+						ZipEntry entry = e.nextElement();
+						if (!entry.getName().endsWith(".class")) continue;
+
+						futures.add(pool.submit(() -> {
+							ByteBuffer data;
+
+							try (InputStream is = zf.getInputStream(entry)) {
+								data = ModDiscoverer.readMod(is);
+							}
+
+							writer.add(entry.getName(), strip(data));
+
+							return null;
+						}));
+					}
+
+					for (Future<?> future : futures) {
+						future.get();
+					}
+				} catch (ExecutionException e) {
+					throw new IOException("error reading "+path, e.getCause());
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				} finally {
+					pool.shutdown();
+				}
+
+				classCount = writer.getClassCount();
+			}
+
+			Files.move(tmpFile, ret, StandardCopyOption.REPLACE_EXISTING);
+			createdNames.add(fileName);
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+
+		Log.debug(LogCategory.MOD_REMAP, "Created class path snapshot %s with %d classes in %.1f ms", ret, classCount, (System.nanoTime() - time) * 1e-6);
+
+		return ret;
+	}
+
+	/**
+	 * Delete the snapshots of earlier launches for the same jar file names, the jars changed since.
+	 *
+	 * @param keep snapshots used by the current launch, which may share a file name
+	 */
+	private static void deleteOutdatedSnapshots(List<String> names, Path cacheDir, Set<Path> keep) {
+		List<Pattern> patterns = new ArrayList<>(names.size());
+
+		for (String name : names) {
+			patterns.add(Pattern.compile(Pattern.quote(name)+"-[0-9a-f]{16}\\.jar"));
+		}
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+			for (Path path : stream) {
+				if (keep.contains(path)) continue;
+
+				String fileName = path.getFileName().toString();
+				boolean matches = false;
+
+				for (Pattern pattern : patterns) {
+					if (pattern.matcher(fileName).matches()) {
+						matches = true;
+						break;
+					}
+				}
+
+				if (!matches) continue;
+
+				try {
+					Files.delete(path);
+					Log.debug(LogCategory.MOD_REMAP, "Deleted outdated class path snapshot %s", path);
+				} catch (IOException e) {
+					// may still be in use by another launch
+					Log.debug(LogCategory.MOD_REMAP, "Error deleting outdated class path snapshot %s", path, e);
+				}
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.MOD_REMAP, "Error listing class path snapshots in %s", cacheDir, e);
+		}
+	}
+
+	/**
+	 * Reduce a class file to its header and member signatures.
+	 */
+	private static byte[] strip(ByteBuffer data) {
+		ClassReader reader = new ClassReader(data.array(), data.arrayOffset() + data.position(), data.remaining());
+		ClassWriter writer = new ClassWriter(0);
+		reader.accept(writer, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+		return writer.toByteArray();
+	}
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.discovery;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.bookkeepersmc.api.EnvType;
+import com.bookkeepersmc.loader.api.metadata.ModDependency;
+import com.bookkeepersmc.loader.api.metadata.version.VersionInterval;
+import com.bookkeepersmc.loader.impl.discovery.ModSolver.AddModVar;
+import com.bookkeepersmc.loader.impl.lib.gson.JsonWriter;
+import com.bookkeepersmc.loader.impl.util.Localization;
+import com.bookkeepersmc.loader.impl.util.StringUtil;
+
+/**
+ * Structured outcome of a failed resolution or the warnings of a successful one, as gathered by {@link ResultAnalyzer}.
+ *
+ * <p>The report only references the involved candidates and dependencies. The localized text is rendered on demand
+ * through {@link #toString} (cached, used for logging and exception messages), {@link #writeJson} writes the plain data
+ * for external tools.
+ */
+final class ResolutionReport {
+	final List<Entry> solution; // null if there is no suggested fix
+	final List<Entry> details;
+	final int omittedDetails; // details beyond the configured cap
+	private final ModSolver.Fix fix; // may be null
+	private String text;
+
+	ResolutionReport(List<Entry> solution, List<Entry> details, int omittedDetails, ModSolver.Fix fix) {
+		this.solution = solution;
+		this.details = details;
+		this.omittedDetails = omittedDetails;
+		this.fix = fix;
+	}
+
+	@Override
+	public String toString() {
+		String ret = text;
+
+		if (ret == null) {
+			StringWriter sw = new StringWriter();
+
+			try (PrintWriter pw = new PrintWriter(sw)) {
+				render(pw);
+			}
+
+			text = ret = sw.toString();
+		}
+
+		return ret;
+	}
+
+	private void render(PrintWriter pw) {
+		String prefix = "";
+
+		if (solution != null) {
+			pw.printf("\n%s", Localization.format("resolution.solutionHeader"));
+
+			for (Entry entry : solution) {
+				entry.render(prefix, pw);
+			}
+
+			pw.printf("\n%s", Localization.format("resolution.depListHeader"));
+			prefix = "\t";
+		}
+
+		for (Entry entry : details) {
+			entry.render(prefix, pw);
+		}
+
+		if (omittedDetails > 0) {
+			pw.printf("\n%s - %s", prefix, Localization.format("resolution.detailsOmitted", omittedDetails));
+		}
+
+		if (fix != null) ResultAnalyzer.appendInactiveMods(fix, pw);
+	}
+
+	void writeJson(Writer writer) throws IOException {
+		JsonWriter json = new JsonWriter(writer);
+		json.setIndent("\t");
+		json.beginObject();
+
+		if (solution != null) {
+			json.name("solution").beginArray();
+
+			for (Entry entry : solution) {
+				entry.writeJson(json);
+			}
+
+			json.endArray();
+		}
+
+		json.name("details").beginArray();
+
+		for (Entry entry : details) {
+			entry.writeJson(json);
+		}
+
+		json.endArray();
+		json.name("omittedDetails").value(omittedDetails);
+		json.endObject();
+		json.flush();
+	}
+
+	abstract static class Entry {
+		final String type;
+
+		Entry(String type) {
+			this.type = type;
+		}
+
+		abstract void render(String prefix, PrintWriter pw);
+
+		final void writeJson(JsonWriter json) throws IOException {
+			json.beginObject();
+			json.name("type").value(type);
+			writeJsonData(json);
+			json.endObject();
+		}
+
+		abstract void writeJsonData(JsonWriter json) throws IOException;
+	}
+
+	static final class AddMod extends Entry {
+		final AddModVar mod;
+		final Set<ModCandidateImpl> envDisabledAlternatives; // may be null
+		final EnvType envType;
+
+		AddMod(AddModVar mod, Set<ModCandidateImpl> envDisabledAlternatives, EnvType envType) {
+			super(envDisabledAlternatives == null ? "addMod" : "replaceModEnvDisabled");
+
+			this.mod = mod;
+			this.envDisabledAlternatives = envDisabledAlternatives;
+			this.envType = envType;
+		}
+
+		@Override
+		void render(String prefix, PrintWriter pw) {
+			if (envDisabledAlternatives == null) {
+				pw.printf("\n\t - %s", Localization.format("resolution.solution.addMod",
+						mod.getId(),
+						ResultAnalyzer.formatVersionRequirements(mod.getVersionIntervals())));
+			} else {
+				String envKey = String.format("environment.%s", envType.name().toLowerCase(Locale.ENGLISH));
+
+				pw.printf("\n\t - %s", Localization.format("resolution.solution.replaceModEnvDisabled",
+						ResultAnalyzer.formatOldMods(envDisabledAlternatives),
+						mod.getId(),
+						ResultAnalyzer.formatVersionRequirements(mod.getVersionIntervals()),
+						Localization.format(envKey)));
+			}
+		}
+
+		@Override
+		void writeJsonData(JsonWriter json) throws IOException {
+			json.name("mod");
+			writeAddMod(mod, json);
+
+			if (envDisabledAlternatives != null) {
+				json.name("environment").value(envType.name().toLowerCase(Locale.ENGLISH));
+				json.name("oldMods");
+				writeMods(envDisabledAlternatives, json);
+			}
+		}
+	}
+
+	static final class RemoveMod extends Entry {
+		final ModCandidateImpl mod;
+
+		RemoveMod(ModCandidateImpl mod) {
+			super("removeMod");
+
+			this.mod = mod;
+		}
+
+		@Override
+		void render(String prefix, PrintWriter pw) {
+			pw.printf("\n\t - %s", Localization.format("resolution.solution.removeMod",
+					ResultAnalyzer.getName(mod),
+					ResultAnalyzer.getVersion(mod),
+					mod.getLocalPath()));
+		}
+
+		@Override
+		void writeJsonData(JsonWriter json) throws IOException {
+			json.name("mod");
+			writeMod(mod, json);
+		}
+	}
+
+	/**
+	 * Replacement of mods with another mod (different mod id).
+	 */
+	static final class ReplaceMod extends Entry {
+		final List<ModCandidateImpl> oldMods;
+		final AddModVar newMod;
+		final ModCandidateImpl newModAlternative; // existing candidate for the new mod id to take the name from, may be null
+
+		ReplaceMod(List<ModCandidateImpl> oldMods, AddModVar newMod, ModCandidateImpl newModAlternative) {
+			super("replaceMod");
+
+			this.oldMods = oldMods;
+			this.newMod = newMod;
+			this.newModAlternative = newModAlternative;
+		}
+
+		@Override
+		void render(String prefix, PrintWriter pw) {
+			pw.printf("\n\t - %s", Localization.format("resolution.solution.replaceMod",
+					ResultAnalyzer.formatOldMods(oldMods),
+					newModAlternative != null ? ResultAnalyzer.getName(newModAlternative) : newMod.getId(),
+					ResultAnalyzer.formatVersionRequirements(newMod.getVersionIntervals())));
+		}
+
+		@Override
+		void writeJsonData(JsonWriter json) throws IOException {
+			json.name("oldMods");
+			writeMods(oldMods, json);
+			json.name("mod");
+			writeAddMod(newMod, json);
+		}
+	}
+
+	/**
+	 * Replacement of a mod with another version of it.
+	 */
+	static final class ReplaceModVersion extends Entry {
+		final ModCandidateImpl oldMod;
+		final AddModVar newMod;
+		/**
+		 * Whether the required version range overlaps the installed version. In that case the old mod's deps that are
+		 * incompatible with the future mod set are listed in {@link #reqSupportedMods}.
+		 */
+		final boolean hasOverlap;
+		final List<DomainObject.Mod> reqSupportedMods; // ModCandidateImpl for fixed versions, AddModVar for ranges
+
+		ReplaceModVersion(ModCandidateImpl oldMod, AddModVar newMod, boolean hasOverlap, List<DomainObject.Mod> reqSupportedMods) {
+			super("replaceModVersion");
+
+			this.oldMod = oldMod;
+			this.newMod = newMod;
+			this.hasOverlap = hasOverlap;
+			this.reqSupportedMods = reqSupportedMods;
+		}
+
+		@Override
+		void render(String prefix, PrintWriter pw) {
+			String key = hasOverlap ? "resolution.solution.replaceModVersionDifferent" : "resolution.solution.replaceModVersion";
+
+			pw.printf("\n\t - %s", Localization.format(key,
+					ResultAnalyzer.formatOldMods(Collections.singletonList(oldMod)),
+					ResultAnalyzer.formatVersionRequirements(newMod.getVersionIntervals())));
+
+			if (!hasOverlap) return;
+
+			for (DomainObject.Mod mod : reqSupportedMods) {
+				if (mod instanceof ModCandidateImpl) {
+					pw.printf("\n\t\t - %s", Localization.format("resolution.solution.replaceModVersionDifferent.reqSupportedModVersion",
+							mod.getId(),
+							ResultAnalyzer.getVersion((ModCandidateImpl) mod)));
+				} else {
+					pw.printf("\n\t\t - %s", Localization.format("resolution.solution.replaceModVersionDifferent.reqSupportedModVersions",
+							mod.getId(),
+							ResultAnalyzer.formatVersionRequirements(((AddModVar) mod).getVersionIntervals())));
+				}
+			}
+
+			if (reqSupportedMods.isEmpty()) {
+				pw.printf("\n\t\t - %s", Localization.format("resolution.solution.replaceModVersionDifferent.unknown"));
+			}
+		}
+
+		@Override
+		void writeJsonData(JsonWriter json) throws IOException {
+			json.name("oldMod");
+			writeMod(oldMod, json);
+			json.name("mod");
+			writeAddMod(newMod, json);
+
+			if (hasOverlap) {
+				json.name("reqSupportedMods").beginArray();
+
+				for (DomainObject.Mod mod : reqSupportedMods) {
+					if (mod instanceof ModCandidateImpl) {
+						writeMod((ModCandidateImpl) mod, json);
+					} else {
+						writeAddMod((AddModVar) mod, json);
+					}
+				}
+
+				json.endArray();
+			}
+		}
+	}
+
+	/**
+	 * Unsatisfied dependency entry (depends, recommends, breaks, conflicts).
+	 */
+	static final class DependencyIssue extends Entry {
+		final ModCandidateImpl mod;
+		final ModDependency dep;
+		final List<ModCandidateImpl> matches;
+		final String reason; // invalid, mismatch, envDisabled or missing
+		final boolean suggestFix;
+
+		DependencyIssue(ModCandidateImpl mod, ModDependency dep, List<ModCandidateImpl> matches, String reason, boolean suggestFix) {
+			super("dependency");
+
+			this.mod = mod;
+			this.dep = dep;
+			this.matches = matches;
+			this.reason = reason;
+			this.suggestFix = suggestFix;
+		}
+
+		@Override
+		void render(String prefix, PrintWriter pw) {
+			Object[] args = new Object[] {
+					ResultAnalyzer.getName(mod),
+					ResultAnalyzer.getVersion(mod),
+					(matches.isEmpty() ? dep.getModId() : ResultAnalyzer.getName(matches.get(0))),
+					ResultAnalyzer.formatVersionRequirements(dep.getVersionIntervals()),
+					ResultAnalyzer.getVersions(matches),
+					matches.size()
+			};
+
+			String key = String.format("resolution.%s.%s", dep.getKind().getKey(), reason);
+			pw.printf("\n%s - %s", prefix, StringUtil.capitalize(Localization.format(key, args)));
+
+			if (suggestFix) {
+				key = String.format("resolution.%s.suggestion", dep.getKind().getKey());
+				pw.printf("\n%s\t - %s", prefix, StringUtil.capitalize(Localization.format(key, args)));
+			}
+
+			if (ResultAnalyzer.SHOW_PATH_INFO) {
+				for (ModCandidateImpl m : matches) {
+					ResultAnalyzer.appendJijInfo(m, prefix, true, pw);
+				}
+			}
+		}
+
+		@Override
+		void writeJsonData(JsonWriter json) throws IOException {
+			json.name("kind").value(dep.getKind().getKey());
+			json.name("reason").value(reason);
+			json.name("mod");
+			writeMod(mod, json);
+			json.name("dependency").beginObject();
+			json.name("id").value(dep.getModId());
+			json.name("versions");
+			writeIntervals(dep.getVersionIntervals(), json);
+			json.endObject();
+			json.name("matches");
+			writeMods(matches, json);
+		}
+	}
+
+	private static void writeMods(Collection<ModCandidateImpl> mods, JsonWriter json) throws IOException {
+		json.beginArray();
+
+		for (ModCandidateImpl mod : mods) {
+			writeMod(mod, json);
+		}
+
+		json.endArray();
+	}
+
+	private static void writeMod(ModCandidateImpl mod, JsonWriter json) throws IOException {
+		json.beginObject();
+		json.name("id").value(mod.getId());
+		json.name("version").value(mod.getVersion().getFriendlyString());
+		json.name("name").value(mod.getMetadata().getName());
+		json.name("root").value(mod.isRoot());
+		if (mod.hasPath() && !mod.isBuiltin()) json.name("path").value(mod.getLocalPath());
+		json.endObject();
+	}
+
+	private static void writeAddMod(AddModVar mod, JsonWriter json) throws IOException {
+		json.beginObject();
+		json.name("id").value(mod.getId());
+		json.name("versions");
+		writeIntervals(mod.getVersionIntervals(), json);
+		json.endObject();
+	}
+
+	private static void writeIntervals(Collection<VersionInterval> intervals, JsonWriter json) throws IOException {
+		json.beginArray();
+
+		for (VersionInterval interval : intervals) {
+			if (interval != null) json.value(interval.toString());
+		}
+
+		json.endArray();
+	}
+}
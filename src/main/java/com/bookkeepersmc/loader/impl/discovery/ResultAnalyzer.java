@@ -23,14 +23,12 @@
 package com.bookkeepersmc.loader.impl.discovery;
 
 import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
@@ -46,149 +44,84 @@ import com.bookkeepersmc.loader.impl.discovery.ModSolver.InactiveReason;
 import com.bookkeepersmc.loader.impl.metadata.AbstractModMetadata;
 import com.bookkeepersmc.loader.impl.util.Localization;
 import com.bookkeepersmc.loader.impl.util.StringUtil;
+import com.bookkeepersmc.loader.impl.util.SystemProperties;
 import com.bookkeepersmc.loader.impl.util.version.VersionIntervalImpl;
 
 final class ResultAnalyzer {
-	private static final boolean SHOW_PATH_INFO = false;
+	static final boolean SHOW_PATH_INFO = false;
 	private static final boolean SHOW_INACTIVE = false;
+	private static final int MAX_DETAILS = Integer.getInteger(SystemProperties.DEBUG_RESOLUTION_MAX_DETAILS, 100);
 
-	@SuppressWarnings("unused")
-	static String gatherErrors(ModSolver.Result result, Map<String, ModCandidateImpl> selectedMods, Map<String, List<ModCandidateImpl>> modsById,
+	static ResolutionReport gatherErrors(ModSolver.Result result, Map<String, ModCandidateImpl> selectedMods, Map<String, List<ModCandidateImpl>> modsById,
                                Map<String, Set<ModCandidateImpl>> envDisabledMods, EnvType envType) {
-		StringWriter sw = new StringWriter();
+		List<ResolutionReport.Entry> solution = null;
+		boolean suggestFix = true;
 
-		try (PrintWriter pw = new PrintWriter(sw)) {
-			String prefix = "";
-			boolean suggestFix = true;
+		if (result.fix != null) {
+			solution = gatherFix(result.fix, selectedMods, modsById, envDisabledMods, envType);
+			suggestFix = false;
+		}
 
-			if (result.fix != null) {
-				pw.printf("\n%s", Localization.format("resolution.solutionHeader"));
+		List<ResolutionReport.Entry> details = new ArrayList<>(Math.min(result.reason.size(), getMaxDetails()));
+		int omitted = 0;
 
-				formatFix(result.fix, result, selectedMods, modsById, envDisabledMods, envType, pw);
+		for (Explanation explanation : result.reason) {
+			assert explanation.error.isDependencyError;
 
-				pw.printf("\n%s", Localization.format("resolution.depListHeader"));
-				prefix = "\t";
-				suggestFix = false;
+			if (details.size() >= getMaxDetails()) {
+				omitted++;
+				continue;
 			}
 
-			List<ModCandidateImpl> matches = new ArrayList<>();
-
-			for (Explanation explanation : result.reason) {
-				assert explanation.error.isDependencyError;
-
-				ModDependency dep = explanation.dep;
-				ModCandidateImpl selected = selectedMods.get(dep.getModId());
-
-				if (selected != null) {
-					matches.add(selected);
-				} else {
-					List<ModCandidateImpl> candidates = modsById.get(dep.getModId());
-					if (candidates != null) matches.addAll(candidates);
-				}
+			ModDependency dep = explanation.dep;
+			ModCandidateImpl selected = selectedMods.get(dep.getModId());
+			List<ModCandidateImpl> matches;
 
-				addErrorToList(explanation.mod, explanation.dep, matches, envDisabledMods.containsKey(dep.getModId()), suggestFix, prefix, pw);
-				matches.clear();
+			if (selected != null) {
+				matches = Collections.singletonList(selected);
+			} else {
+				List<ModCandidateImpl> candidates = modsById.get(dep.getModId());
+				matches = candidates != null ? new ArrayList<>(candidates) : Collections.emptyList();
 			}
 
-			if (SHOW_INACTIVE && result.fix != null && !result.fix.inactiveMods.isEmpty()) {
-				pw.printf("\n%s", Localization.format("resolution.inactiveMods"));
-
-				List<Map.Entry<ModCandidateImpl, InactiveReason>> entries = new ArrayList<>(result.fix.inactiveMods.entrySet());
-
-				// sort by root, id, version
-				entries.sort(new Comparator<Map.Entry<ModCandidateImpl, ?>>() {
-					@Override
-					public int compare(Entry<ModCandidateImpl, ?> o1, Entry<ModCandidateImpl, ?> o2) {
-						ModCandidateImpl a = o1.getKey();
-						ModCandidateImpl b = o2.getKey();
-
-						if (a.isRoot() != b.isRoot()) {
-							return a.isRoot() ? -1 : 1;
-						}
-
-						return ModCandidateImpl.ID_VERSION_COMPARATOR.compare(a, b);
-					}
-				});
-
-				for (Map.Entry<ModCandidateImpl, InactiveReason> entry : entries) {
-					ModCandidateImpl mod = entry.getKey();
-					InactiveReason reason = entry.getValue();
-					String reasonKey = String.format("resolution.inactive.%s", reason.id);
-
-					pw.printf("\n\t - %s", Localization.format("resolution.inactive",
-							getName(mod),
-							getVersion(mod),
-							Localization.format(reasonKey)));
-					//appendJijInfo(mod, "\t", false, pw); TODO: show this without spamming too much
-				}
-			}
+			details.add(createDependencyIssue(explanation.mod, dep, matches, envDisabledMods.containsKey(dep.getModId()), suggestFix));
 		}
 
-		return sw.toString();
+		return new ResolutionReport(solution, details, omitted, SHOW_INACTIVE ? result.fix : null);
 	}
 
-	private static void formatFix(ModSolver.Fix fix,
-                                  ModSolver.Result result, Map<String, ModCandidateImpl> selectedMods, Map<String, List<ModCandidateImpl>> modsById,
-                                  Map<String, Set<ModCandidateImpl>> envDisabledMods, EnvType envType,
-                                  PrintWriter pw) {
-		for (AddModVar mod : fix.modsToAdd) {
-			Set<ModCandidateImpl> envDisabledAlternatives = envDisabledMods.get(mod.getId());
+	private static List<ResolutionReport.Entry> gatherFix(ModSolver.Fix fix, Map<String, ModCandidateImpl> selectedMods, Map<String, List<ModCandidateImpl>> modsById,
+                                  Map<String, Set<ModCandidateImpl>> envDisabledMods, EnvType envType) {
+		List<ResolutionReport.Entry> ret = new ArrayList<>();
 
-			if (envDisabledAlternatives == null) {
-				pw.printf("\n\t - %s", Localization.format("resolution.solution.addMod",
-						mod.getId(),
-						formatVersionRequirements(mod.getVersionIntervals())));
-			} else {
-				String envKey = String.format("environment.%s", envType.name().toLowerCase(Locale.ENGLISH));
-
-				pw.printf("\n\t - %s", Localization.format("resolution.solution.replaceModEnvDisabled",
-						formatOldMods(envDisabledAlternatives),
-						mod.getId(),
-						formatVersionRequirements(mod.getVersionIntervals()),
-						Localization.format(envKey)));
-			}
+		for (AddModVar mod : fix.modsToAdd) {
+			ret.add(new ResolutionReport.AddMod(mod, envDisabledMods.get(mod.getId()), envType));
 		}
 
 		for (ModCandidateImpl mod : fix.modsToRemove) {
-			pw.printf("\n\t - %s", Localization.format("resolution.solution.removeMod", getName(mod), getVersion(mod), mod.getLocalPath()));
+			ret.add(new ResolutionReport.RemoveMod(mod));
 		}
 
 		for (Entry<AddModVar, List<ModCandidateImpl>> entry : fix.modReplacements.entrySet()) {
 			AddModVar newMod = entry.getKey();
 			List<ModCandidateImpl> oldMods = entry.getValue();
-			String oldModsFormatted = formatOldMods(oldMods);
 
 			if (oldMods.size() != 1 || !oldMods.get(0).getId().equals(newMod.getId())) { // replace mods with another mod (different mod id)
-				String newModName = newMod.getId();
 				ModCandidateImpl alt = selectedMods.get(newMod.getId());
 
-				if (alt != null) {
-					newModName = getName(alt);
-				} else {
+				if (alt == null) {
 					List<ModCandidateImpl> alts = modsById.get(newMod.getId());
-					if (alts != null && !alts.isEmpty()) newModName = getName(alts.get(0));
+					if (alts != null && !alts.isEmpty()) alt = alts.get(0);
 				}
 
-				pw.printf("\n\t - %s", Localization.format("resolution.solution.replaceMod",
-						oldModsFormatted,
-						newModName,
-						formatVersionRequirements(newMod.getVersionIntervals())));
+				ret.add(new ResolutionReport.ReplaceMod(oldMods, newMod, alt));
 			} else { // replace mod version only
 				ModCandidateImpl oldMod = oldMods.get(0);
 				boolean hasOverlap = !VersionInterval.and(newMod.getVersionIntervals(),
 						Collections.singletonList(new VersionIntervalImpl(oldMod.getVersion(), true, oldMod.getVersion(), true))).isEmpty();
+				List<DomainObject.Mod> reqSupportedMods = new ArrayList<>();
 
-				if (!hasOverlap) { // required version range doesn't overlap installed version, recommend range as-is
-					pw.printf("\n\t - %s", Localization.format("resolution.solution.replaceModVersion",
-							oldModsFormatted,
-							formatVersionRequirements(newMod.getVersionIntervals())));
-				} else { // required version range overlaps installed version, recommend range without
-					pw.printf("\n\t - %s", Localization.format("resolution.solution.replaceModVersionDifferent",
-							oldModsFormatted,
-							formatVersionRequirements(newMod.getVersionIntervals())));
-
-					boolean foundAny = false;
-
+				if (hasOverlap) { // required version range overlaps installed version, recommend range without
 					// check old deps against future mod set to highlight inconsistencies
 					for (ModDependency dep : oldMod.getDependencies()) {
 						if (dep.getKind().isSoft()) continue;
@@ -197,10 +130,7 @@ final class ResultAnalyzer {
 
 						if (mod != null) {
 							if (dep.matches(mod.getVersion()) != dep.getKind().isPositive()) {
-								pw.printf("\n\t\t - %s", Localization.format("resolution.solution.replaceModVersionDifferent.reqSupportedModVersion",
-										mod.getId(),
-										getVersion(mod)));
-								foundAny = true;
+								reqSupportedMods.add(mod);
 							}
 
 							continue;
@@ -208,77 +138,105 @@ final class ResultAnalyzer {
 
 						for (AddModVar addMod : fix.modReplacements.keySet()) {
 							if (addMod.getId().equals(dep.getModId())) {
-								pw.printf("\n\t\t - %s", Localization.format("resolution.solution.replaceModVersionDifferent.reqSupportedModVersions",
-										addMod.getId(),
-										formatVersionRequirements(addMod.getVersionIntervals())));
-								foundAny = true;
+								reqSupportedMods.add(addMod);
 								break;
 							}
 						}
 					}
-
-					if (!foundAny) {
-						pw.printf("\n\t\t - %s", Localization.format("resolution.solution.replaceModVersionDifferent.unknown"));
-					}
 				}
+
+				ret.add(new ResolutionReport.ReplaceModVersion(oldMod, newMod, hasOverlap, reqSupportedMods));
 			}
 		}
+
+		return ret;
 	}
 
-	static String gatherWarnings(List<ModCandidateImpl> uniqueSelectedMods, Map<String, ModCandidateImpl> selectedMods,
-                                 Map<String, Set<ModCandidateImpl>> envDisabledMods, EnvType envType) {
-		StringWriter sw = new StringWriter();
+	static void appendInactiveMods(ModSolver.Fix fix, PrintWriter pw) {
+		if (fix.inactiveMods.isEmpty()) return;
 
-		try (PrintWriter pw = new PrintWriter(sw)) {
-			for (ModCandidateImpl mod : uniqueSelectedMods) {
-				for (ModDependency dep : mod.getDependencies()) {
-					ModCandidateImpl depMod;
+		pw.printf("\n%s", Localization.format("resolution.inactiveMods"));
 
-					switch (dep.getKind()) {
-					case RECOMMENDS:
-						depMod = selectedMods.get(dep.getModId());
+		List<Map.Entry<ModCandidateImpl, InactiveReason>> entries = new ArrayList<>(fix.inactiveMods.entrySet());
 
-						if (depMod == null || !dep.matches(depMod.getVersion())) {
-							addErrorToList(mod, dep, toList(depMod), envDisabledMods.containsKey(dep.getModId()), true, "", pw);
-						}
+		// sort by root, id, version
+		entries.sort(new Comparator<Map.Entry<ModCandidateImpl, ?>>() {
+			@Override
+			public int compare(Entry<ModCandidateImpl, ?> o1, Entry<ModCandidateImpl, ?> o2) {
+				ModCandidateImpl a = o1.getKey();
+				ModCandidateImpl b = o2.getKey();
 
-						break;
-					case CONFLICTS:
-						depMod = selectedMods.get(dep.getModId());
+				if (a.isRoot() != b.isRoot()) {
+					return a.isRoot() ? -1 : 1;
+				}
 
-						if (depMod != null && dep.matches(depMod.getVersion())) {
-							addErrorToList(mod, dep, toList(depMod), false, true, "", pw);
-						}
+				return ModCandidateImpl.ID_VERSION_COMPARATOR.compare(a, b);
+			}
+		});
+
+		for (Map.Entry<ModCandidateImpl, InactiveReason> entry : entries) {
+			ModCandidateImpl mod = entry.getKey();
+			InactiveReason reason = entry.getValue();
+			String reasonKey = String.format("resolution.inactive.%s", reason.id);
+
+			pw.printf("\n\t - %s", Localization.format("resolution.inactive",
+					getName(mod),
+					getVersion(mod),
+					Localization.format(reasonKey)));
+			//appendJijInfo(mod, "\t", false, pw); TODO: show this without spamming too much
+		}
+	}
 
-						break;
-					default:
-						// ignore
-					}
+	static ResolutionReport gatherWarnings(List<ModCandidateImpl> uniqueSelectedMods, Map<String, ModCandidateImpl> selectedMods,
+                                 Map<String, Set<ModCandidateImpl>> envDisabledMods, EnvType envType) {
+		List<ResolutionReport.Entry> details = new ArrayList<>();
+		int omitted = 0;
+
+		for (ModCandidateImpl mod : uniqueSelectedMods) {
+			for (ModDependency dep : mod.getDependencies()) {
+				ModCandidateImpl depMod;
+				boolean presentForOtherEnv;
+
+				switch (dep.getKind()) {
+				case RECOMMENDS:
+					depMod = selectedMods.get(dep.getModId());
+					if (depMod != null && dep.matches(depMod.getVersion())) continue;
+					presentForOtherEnv = envDisabledMods.containsKey(dep.getModId());
+					break;
+				case CONFLICTS:
+					depMod = selectedMods.get(dep.getModId());
+					if (depMod == null || !dep.matches(depMod.getVersion())) continue;
+					presentForOtherEnv = false;
+					break;
+				default:
+					continue;
+				}
+
+				if (details.size() >= getMaxDetails()) {
+					omitted++;
+				} else {
+					details.add(createDependencyIssue(mod, dep, toList(depMod), presentForOtherEnv, true));
 				}
 			}
 		}
 
-		if (sw.getBuffer().length() == 0) {
+		if (details.isEmpty()) {
 			return null;
 		} else {
-			return sw.toString();
+			return new ResolutionReport(null, details, omitted, null);
 		}
 	}
 
+	private static int getMaxDetails() {
+		return MAX_DETAILS > 0 ? MAX_DETAILS : Integer.MAX_VALUE;
+	}
+
 	private static List<ModCandidateImpl> toList(ModCandidateImpl mod) {
 		return mod != null ? Collections.singletonList(mod) : Collections.emptyList();
 	}
 
-	private static void addErrorToList(ModCandidateImpl mod, ModDependency dep, List<ModCandidateImpl> matches, boolean presentForOtherEnv, boolean suggestFix, String prefix, PrintWriter pw) {
-		Object[] args = new Object[] {
-				getName(mod),
-				getVersion(mod),
-				(matches.isEmpty() ? dep.getModId() : getName(matches.get(0))),
-				formatVersionRequirements(dep.getVersionIntervals()),
-				getVersions(matches),
-				matches.size()
-		};
-
+	private static ResolutionReport.DependencyIssue createDependencyIssue(ModCandidateImpl mod, ModDependency dep, List<ModCandidateImpl> matches,
+                                                                          boolean presentForOtherEnv, boolean suggestFix) {
 		String reason;
 
 		if (!matches.isEmpty()) {
@@ -304,22 +262,10 @@ final class ResultAnalyzer {
 			reason = "missing";
 		}
 
-		String key = String.format("resolution.%s.%s", dep.getKind().getKey(), reason);
-		pw.printf("\n%s - %s", prefix, StringUtil.capitalize(Localization.format(key, args)));
-
-		if (suggestFix) {
-			key = String.format("resolution.%s.suggestion", dep.getKind().getKey());
-			pw.printf("\n%s\t - %s", prefix, StringUtil.capitalize(Localization.format(key, args)));
-		}
-
-		if (SHOW_PATH_INFO) {
-			for (ModCandidateImpl m : matches) {
-				appendJijInfo(m, prefix, true, pw);
-			}
-		}
+		return new ResolutionReport.DependencyIssue(mod, dep, matches, reason, suggestFix);
 	}
 
-	private static void appendJijInfo(ModCandidateImpl mod, String prefix, boolean mentionMod, PrintWriter pw) {
+	static void appendJijInfo(ModCandidateImpl mod, String prefix, boolean mentionMod, PrintWriter pw) {
 		String loc;
 		String path;
 
@@ -391,7 +337,7 @@ final class ResultAnalyzer {
 	}
 
 	@SuppressWarnings("unused")
-	private static String formatOldMods(Collection<ModCandidateImpl> mods) {
+	static String formatOldMods(Collection<ModCandidateImpl> mods) {
 		List<ModCandidateImpl> modsSorted = new ArrayList<>(mods);
 		modsSorted.sort(ModCandidateImpl.ID_VERSION_COMPARATOR);
 		List<String> ret = new ArrayList<>(modsSorted.size());
@@ -407,7 +353,7 @@ final class ResultAnalyzer {
 		return formatEnumeration(ret, true);
 	}
 
-	private static String getName(ModCandidateImpl candidate) {
+	static String getName(ModCandidateImpl candidate) {
 		String typePrefix;
 
 		switch (candidate.getMetadata().getType()) {
@@ -422,15 +368,15 @@ final class ResultAnalyzer {
 		return String.format("%s'%s' (%s)", typePrefix, candidate.getMetadata().getName(), candidate.getId());
 	}
 
-	private static String getVersion(ModCandidateImpl candidate) {
+	static String getVersion(ModCandidateImpl candidate) {
 		return candidate.getVersion().getFriendlyString();
 	}
 
-	private static String getVersions(Collection<ModCandidateImpl> candidates) {
+	static String getVersions(Collection<ModCandidateImpl> candidates) {
 		return candidates.stream().map(ResultAnalyzer::getVersion).collect(Collectors.joining("/"));
 	}
 
-	private static String formatVersionRequirements(Collection<VersionInterval> intervals) {
+	static String formatVersionRequirements(Collection<VersionInterval> intervals) {
 		List<String> ret = new ArrayList<>();
 
 		for (VersionInterval interval : intervals) {
@@ -26,10 +26,13 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,26 +42,29 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import com.bookkeepersmc.loader.api.metadata.ModDependency;
 import com.bookkeepersmc.loader.impl.FormattedException;
+import com.bookkeepersmc.loader.impl.NotebookLoaderImpl;
 import com.bookkeepersmc.loader.impl.launch.NotebookLauncher;
 import com.bookkeepersmc.loader.impl.launch.NotebookLauncherBase;
-import com.bookkeepersmc.loader.impl.util.FileSystemUtil;
+import com.bookkeepersmc.loader.impl.util.HashUtil;
 import com.bookkeepersmc.loader.impl.util.ManifestUtil;
 import com.bookkeepersmc.loader.impl.util.SystemProperties;
 import com.bookkeepersmc.loader.impl.util.log.Log;
 import com.bookkeepersmc.loader.impl.util.log.LogCategory;
+import com.bookkeepersmc.loader.impl.util.mappings.RemappedJarOutput;
 import com.bookkeepersmc.loader.impl.util.mappings.TinyRemapperMappingsHelper;
 
 import net.fabricmc.accesswidener.AccessWidenerReader;
 import net.fabricmc.accesswidener.AccessWidenerRemapper;
 import net.fabricmc.accesswidener.AccessWidenerWriter;
 import net.fabricmc.tinyremapper.InputTag;
-import net.fabricmc.tinyremapper.NonClassCopyMode;
-import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
 import net.fabricmc.tinyremapper.extension.mixin.MixinExtension;
 import org.objectweb.asm.commons.Remapper;
@@ -66,8 +72,9 @@ import org.objectweb.asm.commons.Remapper;
 public final class RuntimeModRemapper {
 	private static final String REMAP_TYPE_MANIFEST_KEY = "Fabric-Loom-Mixin-Remap-Type";
 	private static final String REMAP_TYPE_STATIC = "static";
+	private static final int CACHE_FORMAT_VERSION = 1;
 
-	public static void remap(Collection<ModCandidateImpl> modCandidates, Path tmpDir, Path outputDir) {
+	public static void remap(Collection<ModCandidateImpl> modCandidates, Path tmpDir, Path outputDir, Path classpathCacheDir) {
 		List<ModCandidateImpl> modsToRemap = new ArrayList<>();
 		Set<InputTag> remapMixins = new HashSet<>();
 
@@ -80,29 +87,26 @@ public final class RuntimeModRemapper {
 		if (modsToRemap.isEmpty()) return;
 
 		NotebookLauncher launcher = NotebookLauncherBase.getLauncher();
-
-		TinyRemapper remapper = TinyRemapper.newRemapper()
-				.withMappings(TinyRemapperMappingsHelper.create(launcher.getMappingConfiguration().getMappings(), "intermediary", launcher.getTargetNamespace()))
-				.renameInvalidLocals(false)
-				.extension(new MixinExtension(remapMixins::contains))
-				.build();
+		List<Path> remapClasspath;
+		String baseKey;
 
 		try {
-			remapper.readClassPathAsync(getRemapClasspath().toArray(new Path[0]));
+			remapClasspath = getRemapClasspath();
+			baseKey = getBaseCacheKey(launcher, remapClasspath);
 		} catch (IOException e) {
 			throw new RuntimeException("Failed to populate remap classpath", e);
 		}
 
+		TinyRemapper remapper = null;
+		ForkJoinPool pool = new ForkJoinPool();
 		Map<ModCandidateImpl, RemapInfo> infoMap = new HashMap<>();
+		List<ModCandidateImpl> pendingMods = new ArrayList<>();
 
 		try {
 			for (ModCandidateImpl mod : modsToRemap) {
 				RemapInfo info = new RemapInfo();
 				infoMap.put(mod, info);
 
-				InputTag tag = remapper.createInputTag();
-				info.tag = tag;
-
 				if (mod.hasPath()) {
 					List<Path> paths = mod.getPaths();
 					if (paths.size() != 1) throw new UnsupportedOperationException("multiple path for "+mod);
@@ -113,88 +117,173 @@ public final class RuntimeModRemapper {
 					info.inputIsTemp = true;
 				}
 
-				if (requiresMixinRemap(info.inputPath)) {
-					remapMixins.add(tag);
-				}
+				info.remapMixins = requiresMixinRemap(info.inputPath);
+				info.inputHash = HashUtil.hash(info.inputPath);
+			}
 
-				info.outputPath = outputDir.resolve(mod.getDefaultFileName());
-				Files.deleteIfExists(info.outputPath);
+			Map<String, ModCandidateImpl> modsById = new HashMap<>();
 
-				remapper.readInputsAsync(tag, info.inputPath);
+			for (ModCandidateImpl mod : modsToRemap) {
+				modsById.put(mod.getId(), mod);
+
+				for (String provided : mod.getProvides()) {
+					modsById.putIfAbsent(provided, mod);
+				}
 			}
 
-			//Done in a 2nd loop as we need to make sure all the inputs are present before remapping
+			// determine the cache keys, reusing outputs from previous launches where possible
+
 			for (ModCandidateImpl mod : modsToRemap) {
 				RemapInfo info = infoMap.get(mod);
-				OutputConsumerPath outputConsumer = new OutputConsumerPath.Builder(info.outputPath).build();
 
-				FileSystemUtil.FileSystemDelegate delegate = FileSystemUtil.getJarFileSystem(info.inputPath, false);
+				MessageDigest digest = HashUtil.newDigest();
+				HashUtil.update(digest, baseKey);
+				HashUtil.update(digest, Boolean.toString(info.remapMixins));
+				HashUtil.update(digest, info.inputHash);
+
+				// the output also depends on the remapped mods it may inherit from or call into
+				List<String> depHashes = new ArrayList<>();
 
-				if (delegate.get() == null) {
-					throw new RuntimeException("Could not open JAR file " + info.inputPath.getFileName() + " for NIO reading!");
+				for (ModCandidateImpl dep : getRemappedDependencies(mod, modsById)) {
+					depHashes.add(infoMap.get(dep).inputHash);
 				}
 
-				Path inputJar = delegate.get().getRootDirectories().iterator().next();
-				outputConsumer.addNonClassFiles(inputJar, NonClassCopyMode.FIX_META_INF, remapper);
+				Collections.sort(depHashes);
 
-				info.outputConsumerPath = outputConsumer;
+				for (String hash : depHashes) {
+					HashUtil.update(digest, hash);
+				}
+
+				String fileName = mod.getDefaultFileName();
+				info.outputName = fileName.substring(0, fileName.length() - 4);
+				fileName = String.format("%s-%s.jar", info.outputName, HashUtil.toHex(digest.digest()).substring(0, 16));
+				info.outputPath = outputDir.resolve(fileName);
 
-				remapper.apply(outputConsumer, info.tag);
+				if (Files.exists(info.outputPath)) {
+					Log.debug(LogCategory.MOD_REMAP, "Reusing remapped jar %s for mod %s", info.outputPath, mod.getId());
+					mod.setPaths(Collections.singletonList(info.outputPath));
+				} else {
+					info.tmpOutputPath = outputDir.resolve(fileName + ".tmp");
+					Files.deleteIfExists(info.tmpOutputPath);
+					pendingMods.add(mod);
+				}
 			}
 
-			//Done in a 3rd loop as this can happen when the remapper is doing its thing.
+			if (pendingMods.isEmpty()) return;
+
+			Log.debug(LogCategory.MOD_REMAP, "Remapping %d of %d mods", pendingMods.size(), modsToRemap.size());
+			Files.createDirectories(outputDir);
+
+			remapper = TinyRemapper.newRemapper()
+					.withMappings(TinyRemapperMappingsHelper.create(launcher.getMappingConfiguration().getMappingImage(), "intermediary", launcher.getTargetNamespace()))
+					.renameInvalidLocals(false)
+					.extension(new MixinExtension(remapMixins::contains))
+					.build();
+
+			remapper.readClassPathAsync(RemapClasspathSnapshot.getSnapshots(remapClasspath, classpathCacheDir).toArray(new Path[0]));
+
+			// reused mods aren't remapped again, but the pending ones need their intermediary class hierarchy
+			List<Path> reusedInputs = new ArrayList<>();
+
 			for (ModCandidateImpl mod : modsToRemap) {
+				if (!pendingMods.contains(mod)) reusedInputs.add(infoMap.get(mod).inputPath);
+			}
+
+			if (!reusedInputs.isEmpty()) {
+				remapper.readClassPathAsync(reusedInputs.toArray(new Path[0]));
+			}
+
+			for (ModCandidateImpl mod : pendingMods) {
 				RemapInfo info = infoMap.get(mod);
 
+				InputTag tag = remapper.createInputTag();
+				info.tag = tag;
+
+				if (info.remapMixins) {
+					remapMixins.add(tag);
+				}
+
+				remapper.readInputsAsync(tag, info.inputPath);
+			}
+
+			//Done in a 2nd loop as we need to make sure all the inputs are present before remapping
+			for (ModCandidateImpl mod : pendingMods) {
+				RemapInfo info = infoMap.get(mod);
 				String accessWidener = mod.getMetadata().getAccessWidener();
 
 				if (accessWidener != null) {
-					info.accessWidenerPath = accessWidener;
+					info.accessWidenerPath = accessWidener.startsWith("/") ? accessWidener.substring(1) : accessWidener;
+				}
+
+				info.output = new RemappedJarOutput(info.inputPath, info.tmpOutputPath, remapper);
+				info.output.copyNonClassFiles(pool, info.accessWidenerPath != null ? Collections.singleton(info.accessWidenerPath) : Collections.emptySet());
+
+				remapper.apply(info.output::acceptClass, info.tag);
+			}
+
+			//Done in a 3rd loop as this can happen when the remapper is doing its thing.
+			for (ModCandidateImpl mod : pendingMods) {
+				RemapInfo info = infoMap.get(mod);
 
-					try (FileSystemUtil.FileSystemDelegate jarFs = FileSystemUtil.getJarFileSystem(info.inputPath, false)) {
-						FileSystem fs = jarFs.get();
-						info.accessWidener = remapAccessWidener(Files.readAllBytes(fs.getPath(accessWidener)), remapper.getRemapper());
+				if (info.accessWidenerPath != null) {
+					try {
+						info.output.add(info.accessWidenerPath, remapAccessWidener(info.output.read(info.accessWidenerPath), remapper.getRemapper()));
 					} catch (Throwable t) {
 						throw new RuntimeException("Error remapping access widener for mod '"+mod.getId()+"'!", t);
 					}
 				}
+
+				info.output.finish();
 			}
 
 			remapper.finish();
 
-			for (ModCandidateImpl mod : modsToRemap) {
+			for (ModCandidateImpl mod : pendingMods) {
 				RemapInfo info = infoMap.get(mod);
 
-				info.outputConsumerPath.close();
+				info.output.close();
 
-				if (info.accessWidenerPath != null) {
-					try (FileSystemUtil.FileSystemDelegate jarFs = FileSystemUtil.getJarFileSystem(info.outputPath, false)) {
-						FileSystem fs = jarFs.get();
+				// the output only appears once complete, so an interrupted launch can't leave a broken cache entry
+				Files.move(info.tmpOutputPath, info.outputPath, StandardCopyOption.REPLACE_EXISTING);
+				mod.setPaths(Collections.singletonList(info.outputPath));
+			}
 
-						Files.delete(fs.getPath(info.accessWidenerPath));
-						Files.write(fs.getPath(info.accessWidenerPath), info.accessWidener);
-					}
-				}
+			Set<Path> outputs = new HashSet<>();
 
-				mod.setPaths(Collections.singletonList(info.outputPath));
+			for (RemapInfo info : infoMap.values()) {
+				outputs.add(info.outputPath);
+			}
+
+			for (ModCandidateImpl mod : pendingMods) {
+				deleteOutdatedOutputs(infoMap.get(mod).outputName, outputDir, outputs);
 			}
 		} catch (Throwable t) {
-			remapper.finish();
+			if (remapper != null) remapper.finish();
 
 			for (RemapInfo info : infoMap.values()) {
-				if (info.outputPath == null) {
+				if (info.tmpOutputPath == null) {
 					continue;
 				}
 
+				if (info.output != null) {
+					try {
+						info.output.close();
+					} catch (IOException e) {
+						t.addSuppressed(e);
+					}
+				}
+
 				try {
-					Files.deleteIfExists(info.outputPath);
+					Files.deleteIfExists(info.tmpOutputPath);
 				} catch (IOException e) {
-					Log.warn(LogCategory.MOD_REMAP, "Error deleting failed output jar %s", info.outputPath, e);
+					Log.warn(LogCategory.MOD_REMAP, "Error deleting failed output jar %s", info.tmpOutputPath, e);
 				}
 			}
 
 			throw new FormattedException("Failed to remap mods!", t);
 		} finally {
+			pool.shutdown();
+
 			for (RemapInfo info : infoMap.values()) {
 				try {
 					if (info.inputIsTemp) Files.deleteIfExists(info.inputPath);
@@ -205,6 +294,83 @@ public final class RuntimeModRemapper {
 		}
 	}
 
+	/**
+	 * Collect the transitive dependencies and nested mods of a mod that are remapped as well, excluding the mod itself.
+	 */
+	private static Set<ModCandidateImpl> getRemappedDependencies(ModCandidateImpl mod, Map<String, ModCandidateImpl> modsById) {
+		Set<ModCandidateImpl> ret = new HashSet<>();
+		ArrayDeque<ModCandidateImpl> queue = new ArrayDeque<>();
+		queue.add(mod);
+
+		ModCandidateImpl cur;
+
+		while ((cur = queue.poll()) != null) {
+			for (ModDependency dep : cur.getDependencies()) {
+				if (!dep.getKind().isPositive()) continue;
+
+				ModCandidateImpl target = modsById.get(dep.getModId());
+				if (target != null && target != mod && ret.add(target)) queue.add(target);
+			}
+
+			for (ModCandidateImpl nested : cur.getNestedMods()) {
+				if (nested != mod && modsById.get(nested.getId()) == nested && ret.add(nested)) queue.add(nested);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Delete the outputs of earlier launches for the same mod file name, they were produced with a different cache key.
+	 *
+	 * @param keep outputs used by the current launch, which may share the file name
+	 */
+	private static void deleteOutdatedOutputs(String outputName, Path outputDir, Set<Path> keep) {
+		Pattern pattern = Pattern.compile(Pattern.quote(outputName)+"-[0-9a-f]{16}\\.jar");
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(outputDir)) {
+			for (Path path : stream) {
+				if (keep.contains(path) || !pattern.matcher(path.getFileName().toString()).matches()) continue;
+
+				try {
+					Files.delete(path);
+					Log.debug(LogCategory.MOD_REMAP, "Deleted outdated remapped jar %s", path);
+				} catch (IOException e) {
+					// may still be in use by another launch
+					Log.debug(LogCategory.MOD_REMAP, "Error deleting outdated remapped jar %s", path, e);
+				}
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.MOD_REMAP, "Error listing remapped jars in %s", outputDir, e);
+		}
+	}
+
+	/**
+	 * Compute the cache key part shared by all mods: format, loader version, mappings, target namespace and the remap
+	 * class path.
+	 *
+	 * <p>The class path is fingerprinted by path, size and modification time, hashing the full content would be about
+	 * as expensive as reading it for remapping.
+	 */
+	private static String getBaseCacheKey(NotebookLauncher launcher, List<Path> remapClasspath) throws IOException {
+		MessageDigest digest = HashUtil.newDigest();
+		HashUtil.update(digest, Integer.toString(CACHE_FORMAT_VERSION));
+		HashUtil.update(digest, NotebookLoaderImpl.VERSION);
+		HashUtil.update(digest, String.valueOf(launcher.getMappingConfiguration().getMappingsKey()));
+		HashUtil.update(digest, launcher.getTargetNamespace());
+
+		for (Path path : remapClasspath) {
+			HashUtil.update(digest, path.toString());
+
+			if (Files.exists(path)) {
+				HashUtil.update(digest, Long.toString(Files.size(path)));
+				HashUtil.update(digest, Long.toString(Files.getLastModifiedTime(path).toMillis()));
+			}
+		}
+
+		return HashUtil.toHex(digest.digest());
+	}
+
 	private static byte[] remapAccessWidener(byte[] input, Remapper remapper) {
 		AccessWidenerWriter writer = new AccessWidenerWriter();
 		AccessWidenerRemapper remappingDecorator = new AccessWidenerRemapper(writer, remapper, "intermediary", "named");
@@ -237,10 +403,13 @@ public final class RuntimeModRemapper {
 	private static class RemapInfo {
 		InputTag tag;
 		Path inputPath;
+		String inputHash;
+		String outputName;
 		Path outputPath;
+		Path tmpOutputPath;
 		boolean inputIsTemp;
-		OutputConsumerPath outputConsumerPath;
+		boolean remapMixins;
+		RemappedJarOutput output;
 		String accessWidenerPath;
-		byte[] accessWidener;
 	}
 }
@@ -30,7 +30,7 @@ public final class EntrypointContainerImpl<T> implements EntrypointContainer<T>
 	private final String key;
 	private final Class<T> type;
 	private final EntrypointStorage.Entry entry;
-	private T instance;
+	private volatile T instance;
 
 	/**
 	 * Create EntrypointContainer with lazy init.
@@ -51,9 +51,16 @@ public final class EntrypointContainerImpl<T> implements EntrypointContainer<T>
 		this.instance = instance;
 	}
 
-	@SuppressWarnings("deprecation")
 	@Override
-	public synchronized T getEntrypoint() {
+	public T getEntrypoint() {
+		T ret = instance; // lock-free once created
+		if (ret != null) return ret;
+
+		return createEntrypoint();
+	}
+
+	@SuppressWarnings("deprecation")
+	private synchronized T createEntrypoint() {
 		if (instance == null) {
 			try {
 				instance = entry.getOrCreate(type);
@@ -75,4 +82,11 @@ public final class EntrypointContainerImpl<T> implements EntrypointContainer<T>
 	public String getDefinition() {
 		return entry.getDefinition();
 	}
+
+	/**
+	 * Whether the entrypoint opted into being invoked concurrently with other thread safe entrypoints.
+	 */
+	public boolean isThreadSafe() {
+		return entry.isThreadSafe();
+	}
 }
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.entrypoint;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.bookkeepersmc.loader.api.entrypoint.EntrypointContainer;
+import com.bookkeepersmc.loader.impl.NotebookLoaderImpl;
+import com.bookkeepersmc.loader.impl.lib.gson.JsonWriter;
+import com.bookkeepersmc.loader.impl.mrj.EntrypointEvents;
+import com.bookkeepersmc.loader.impl.util.SystemProperties;
+import com.bookkeepersmc.loader.impl.util.log.Log;
+import com.bookkeepersmc.loader.impl.util.log.LogCategory;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Records wall time, thread CPU time and thread allocated bytes for creating and invoking entrypoints.
+ *
+ * <p>Measurements are aggregated per entrypoint key and mod, reported as a table in the log and as JSON, and emitted as
+ * JFR events where supported. CPU time and allocation are reported as -1 if the JVM doesn't provide them.
+ *
+ * <p>Profiling is only active with {@link SystemProperties#DEBUG_PROFILE_ENTRYPOINTS}, otherwise nothing is measured
+ * or recorded.
+ */
+public final class EntrypointProfiler {
+	public enum Phase {
+		CREATE, INVOKE
+	}
+
+	public static final boolean ENABLED = System.getProperty(SystemProperties.DEBUG_PROFILE_ENTRYPOINTS) != null;
+
+	private static final int LOG_ROWS = 10;
+	private static final ThreadMXBean THREAD_BEAN;
+	private static final boolean CPU_TIME_SUPPORTED;
+	private static final boolean ALLOCATION_SUPPORTED;
+
+	static {
+		ThreadMXBean bean = null;
+		boolean cpuTime = false;
+		boolean allocation = false;
+
+		if (ENABLED) {
+			try {
+				bean = ManagementFactory.getThreadMXBean();
+				cpuTime = bean.isCurrentThreadCpuTimeSupported() && bean.isThreadCpuTimeEnabled();
+				allocation = bean instanceof com.sun.management.ThreadMXBean
+						&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+						&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled();
+			} catch (Throwable t) { // java.management may be absent from custom runtimes
+				Log.debug(LogCategory.ENTRYPOINT, "Thread CPU time and allocation measurement unavailable", t);
+			}
+		}
+
+		THREAD_BEAN = bean;
+		CPU_TIME_SUPPORTED = cpuTime;
+		ALLOCATION_SUPPORTED = allocation;
+	}
+
+	private final Map<String, Map<String, Stats>> stats = new LinkedHashMap<>(); // key -> mod id -> stats, guarded by this
+	private final Map<String, Long> stageTimes = new HashMap<>(); // guarded by this
+
+	/**
+	 * Start measuring on the current thread, the measurement must be ended on the same thread.
+	 *
+	 * @return the measurement or null if profiling is disabled
+	 */
+	public static Measurement begin() {
+		return ENABLED ? new Measurement() : null;
+	}
+
+	public void end(@Nullable Measurement measurement, String key, String modId, Phase phase) {
+		if (measurement == null) return;
+
+		long wallTime = System.nanoTime() - measurement.wallStart;
+		long cpuTime = CPU_TIME_SUPPORTED ? getCpuTime() - measurement.cpuStart : -1;
+		long allocatedBytes = ALLOCATION_SUPPORTED ? getAllocatedBytes() - measurement.allocationStart : -1;
+
+		EntrypointEvents.commit(measurement.event, key, modId, phase.name(), cpuTime, allocatedBytes);
+
+		synchronized (this) {
+			stats.computeIfAbsent(key, ignore -> new HashMap<>())
+			.computeIfAbsent(modId, Stats::new)
+			.add(phase, wallTime, cpuTime, allocatedBytes);
+		}
+	}
+
+	/**
+	 * Invoke an entrypoint, measuring the invocation separately from the creation of its instance.
+	 */
+	public <T> void invoke(String key, EntrypointContainer<T> container, Consumer<? super T> invoker) {
+		T entrypoint = container.getEntrypoint();
+
+		if (!ENABLED) {
+			invoker.accept(entrypoint);
+			return;
+		}
+
+		Measurement measurement = begin();
+
+		try {
+			invoker.accept(entrypoint);
+		} finally {
+			end(measurement, key, container.getProvider().getMetadata().getId(), Phase.INVOKE);
+		}
+	}
+
+	/**
+	 * Log the table for an entrypoint stage and write the JSON report for all stages so far.
+	 *
+	 * @param stageTime elapsed time for the whole stage in nanoseconds, differs from the sum of the entries when
+	 *                  invoked in parallel
+	 * @param jsonFile file to write the JSON report to, null to skip
+	 */
+	public synchronized void report(String key, long stageTime, @Nullable Path jsonFile) {
+		if (!ENABLED) return;
+
+		stageTimes.put(key, stageTime);
+
+		List<Stats> entries = getSortedStats(key);
+		if (entries.isEmpty()) return;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ENGLISH, "Entrypoint stage '%s' took %d ms, slowest mods:%n", key, stageTime / 1000000));
+		sb.append(String.format(Locale.ENGLISH, "  %-32s %10s %10s %10s %12s", "mod", "create ms", "invoke ms", "cpu ms", "alloc KiB"));
+
+		for (int i = 0, max = Math.min(entries.size(), LOG_ROWS); i < max; i++) {
+			Stats s = entries.get(i);
+			sb.append(String.format(Locale.ENGLISH, "%n  %-32s %10.1f %10.1f %10s %12s",
+					s.modId,
+					s.wallTime[Phase.CREATE.ordinal()] / 1e6,
+					s.wallTime[Phase.INVOKE.ordinal()] / 1e6,
+					CPU_TIME_SUPPORTED ? String.format(Locale.ENGLISH, "%.1f", s.getTotalCpuTime() / 1e6) : "n/a",
+					ALLOCATION_SUPPORTED ? Long.toString(s.getTotalAllocatedBytes() / 1024) : "n/a"));
+		}
+
+		Log.info(LogCategory.ENTRYPOINT, "%s", sb);
+		if (jsonFile == null) return;
+
+		try {
+			Files.createDirectories(jsonFile.toAbsolutePath().getParent());
+
+			try (Writer writer = Files.newBufferedWriter(jsonFile, StandardCharsets.UTF_8)) {
+				writeJson(writer);
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.ENTRYPOINT, "Error writing entrypoint profile %s", jsonFile, e);
+		}
+	}
+
+	private void writeJson(Writer out) throws IOException {
+		JsonWriter writer = new JsonWriter(out);
+		writer.setIndent("\t");
+		writer.beginObject();
+		writer.name("loaderVersion").value(NotebookLoaderImpl.VERSION);
+		writer.name("cpuTimeSupported").value(CPU_TIME_SUPPORTED);
+		writer.name("allocationSupported").value(ALLOCATION_SUPPORTED);
+		writer.name("stages").beginObject();
+
+		for (String key : stats.keySet()) {
+			Long stageTime = stageTimes.get(key);
+
+			writer.name(key).beginObject();
+			writer.name("wallTimeNs").value(stageTime != null ? stageTime : -1);
+			writer.name("mods").beginArray();
+
+			for (Stats s : getSortedStats(key)) {
+				writer.beginObject();
+				writer.name("id").value(s.modId);
+
+				for (Phase phase : Phase.values()) {
+					int idx = phase.ordinal();
+
+					writer.name(phase.name().toLowerCase(Locale.ENGLISH)).beginObject();
+					writer.name("count").value(s.count[idx]);
+					writer.name("wallTimeNs").value(s.wallTime[idx]);
+					writer.name("cpuTimeNs").value(CPU_TIME_SUPPORTED ? s.cpuTime[idx] : -1);
+					writer.name("allocatedBytes").value(ALLOCATION_SUPPORTED ? s.allocatedBytes[idx] : -1);
+					writer.endObject();
+				}
+
+				writer.endObject();
+			}
+
+			writer.endArray();
+			writer.endObject();
+		}
+
+		writer.endObject();
+		writer.endObject();
+		writer.flush();
+	}
+
+	private List<Stats> getSortedStats(String key) {
+		Map<String, Stats> modStats = stats.get(key);
+		if (modStats == null) return new ArrayList<>();
+
+		List<Stats> ret = new ArrayList<>(modStats.values());
+		ret.sort((a, b) -> Long.compare(b.getTotalWallTime(), a.getTotalWallTime()));
+
+		return ret;
+	}
+
+	private static long getCpuTime() {
+		return THREAD_BEAN.getCurrentThreadCpuTime();
+	}
+
+	private static long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) THREAD_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	public static final class Measurement {
+		final Object event = EntrypointEvents.begin();
+		final long cpuStart = CPU_TIME_SUPPORTED ? getCpuTime() : 0;
+		final long allocationStart = ALLOCATION_SUPPORTED ? getAllocatedBytes() : 0;
+		final long wallStart = System.nanoTime();
+
+		private Measurement() { }
+	}
+
+	private static final class Stats {
+		final String modId;
+		final int[] count = new int[Phase.values().length];
+		final long[] wallTime = new long[count.length];
+		final long[] cpuTime = new long[count.length];
+		final long[] allocatedBytes = new long[count.length];
+
+		Stats(String modId) {
+			this.modId = modId;
+		}
+
+		void add(Phase phase, long wallTime, long cpuTime, long allocatedBytes) {
+			int idx = phase.ordinal();
+			this.count[idx]++;
+			this.wallTime[idx] += wallTime;
+			this.cpuTime[idx] += cpuTime;
+			this.allocatedBytes[idx] += allocatedBytes;
+		}
+
+		long getTotalWallTime() {
+			return sum(wallTime);
+		}
+
+		long getTotalCpuTime() {
+			return sum(cpuTime);
+		}
+
+		long getTotalAllocatedBytes() {
+			return sum(allocatedBytes);
+		}
+
+		private static long sum(long[] values) {
+			long ret = 0;
+
+			for (long value : values) {
+				ret += value;
+			}
+
+			return ret;
+		}
+	}
+}
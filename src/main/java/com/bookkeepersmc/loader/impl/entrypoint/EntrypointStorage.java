@@ -23,11 +23,16 @@
 package com.bookkeepersmc.loader.impl.entrypoint;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.bookkeepersmc.loader.api.EntrypointException;
 import com.bookkeepersmc.loader.api.LanguageAdapter;
@@ -36,6 +41,7 @@ import com.bookkeepersmc.loader.api.entrypoint.EntrypointContainer;
 import com.bookkeepersmc.loader.impl.ModContainerImpl;
 import com.bookkeepersmc.loader.impl.launch.NotebookLauncherBase;
 import com.bookkeepersmc.loader.impl.metadata.EntrypointMetadata;
+import com.bookkeepersmc.loader.impl.util.DefaultLanguageAdapter;
 import com.bookkeepersmc.loader.impl.util.log.Log;
 import com.bookkeepersmc.loader.impl.util.log.LogCategory;
 
@@ -43,6 +49,7 @@ public final class EntrypointStorage {
 	interface Entry {
 		<T> T getOrCreate(Class<T> type) throws Exception;
 		boolean isOptional();
+		boolean isThreadSafe();
 
 		ModContainerImpl getModContainer();
 
@@ -58,12 +65,14 @@ public final class EntrypointStorage {
 		private final ModContainerImpl mod;
 		private final String languageAdapter;
 		private final String value;
-		private Object object;
+		private final EntrypointProfiler profiler;
+		private volatile Object object;
 
-		private OldEntry(ModContainerImpl mod, String languageAdapter, String value) {
+		private OldEntry(ModContainerImpl mod, String languageAdapter, String value, EntrypointProfiler profiler) {
 			this.mod = mod;
 			this.languageAdapter = languageAdapter;
 			this.value = value;
+			this.profiler = profiler;
 		}
 
 		@Override
@@ -73,10 +82,11 @@ public final class EntrypointStorage {
 
 		@SuppressWarnings({ "unchecked" })
 		@Override
-		public synchronized <T> T getOrCreate(Class<T> type) throws Exception {
+		public <T> T getOrCreate(Class<T> type) throws Exception {
+			Object object = this.object; // lock-free once created
+
 			if (object == null) {
-				net.fabricmc.loader.language.LanguageAdapter adapter = (net.fabricmc.loader.language.LanguageAdapter) Class.forName(languageAdapter, true, NotebookLauncherBase.getLauncher().getTargetClassLoader()).getConstructor().newInstance();
-				object = adapter.createInstance(value, options);
+				object = create();
 			}
 
 			if (object == null || !type.isAssignableFrom(object.getClass())) {
@@ -86,11 +96,32 @@ public final class EntrypointStorage {
 			}
 		}
 
+		private synchronized Object create() throws Exception {
+			if (object == null) {
+				EntrypointProfiler.Measurement measurement = EntrypointProfiler.begin();
+
+				try {
+					net.fabricmc.loader.language.LanguageAdapter adapter = (net.fabricmc.loader.language.LanguageAdapter) Class.forName(languageAdapter, true, NotebookLauncherBase.getLauncher().getTargetClassLoader()).getConstructor().newInstance();
+					object = adapter.createInstance(value, options);
+				} finally {
+					// shared by the main, client and server keys, main is invoked first and creates it
+					profiler.end(measurement, "main", mod.getInfo().getId(), EntrypointProfiler.Phase.CREATE);
+				}
+			}
+
+			return object;
+		}
+
 		@Override
 		public boolean isOptional() {
 			return true;
 		}
 
+		@Override
+		public boolean isThreadSafe() {
+			return false;
+		}
+
 		@Override
 		public ModContainerImpl getModContainer() {
 			return mod;
@@ -104,14 +135,21 @@ public final class EntrypointStorage {
 
 	private static final class NewEntry implements Entry {
 		private final ModContainerImpl mod;
+		private final String key;
 		private final LanguageAdapter adapter;
 		private final String value;
-		private final Map<Class<?>, Object> instanceMap;
+		private final boolean threadSafe;
+		private final EntrypointProfiler profiler;
+		private final Map<Class<?>, Object> instanceMap; // guarded by this
+		private volatile Instance firstInstance; // lock-free fast path for the common single type case
 
-		NewEntry(ModContainerImpl mod, LanguageAdapter adapter, String value) {
+		NewEntry(ModContainerImpl mod, String key, LanguageAdapter adapter, String value, boolean threadSafe, EntrypointProfiler profiler) {
 			this.mod = mod;
+			this.key = key;
 			this.adapter = adapter;
 			this.value = value;
+			this.threadSafe = threadSafe;
+			this.profiler = profiler;
 			this.instanceMap = new IdentityHashMap<>(1);
 		}
 
@@ -122,15 +160,35 @@ public final class EntrypointStorage {
 
 		@SuppressWarnings("unchecked")
 		@Override
-		public synchronized <T> T getOrCreate(Class<T> type) throws Exception {
+		public <T> T getOrCreate(Class<T> type) throws Exception {
+			Instance instance = firstInstance;
+			if (instance != null && instance.type == type) return (T) instance.object;
+
+			return getOrCreateLocked(type);
+		}
+
+		@SuppressWarnings("unchecked")
+		private synchronized <T> T getOrCreateLocked(Class<T> type) throws Exception {
 			// this impl allows reentrancy (unlike computeIfAbsent)
 			T ret = (T) instanceMap.get(type);
 
 			if (ret == null) {
-				ret = adapter.create(mod, value, type);
+				EntrypointProfiler.Measurement measurement = EntrypointProfiler.begin();
+
+				try {
+					ret = adapter.create(mod, value, type);
+				} finally {
+					profiler.end(measurement, key, mod.getMetadata().getId(), EntrypointProfiler.Phase.CREATE);
+				}
+
 				assert ret != null;
 				T prev = (T) instanceMap.putIfAbsent(type, ret);
-				if (prev != null) ret = prev;
+
+				if (prev != null) {
+					ret = prev;
+				} else if (firstInstance == null) {
+					firstInstance = new Instance(type, ret);
+				}
 			}
 
 			return ret;
@@ -141,6 +199,11 @@ public final class EntrypointStorage {
 			return false;
 		}
 
+		@Override
+		public boolean isThreadSafe() {
+			return threadSafe;
+		}
+
 		@Override
 		public ModContainerImpl getModContainer() {
 			return mod;
@@ -152,15 +215,42 @@ public final class EntrypointStorage {
 		}
 	}
 
-	private final Map<String, List<Entry>> entryMap = new HashMap<>();
+	private static final class Instance {
+		final Class<?> type;
+		final Object object;
+
+		Instance(Class<?> type, Object object) {
+			this.type = type;
+			this.object = object;
+		}
+	}
+
+	private volatile Map<String, List<Entry>> entryMap = new HashMap<>();
+	private final EntrypointProfiler profiler = new EntrypointProfiler();
 
 	private List<Entry> getOrCreateEntries(String key) {
 		return entryMap.computeIfAbsent(key, (z) -> new ArrayList<>());
 	}
 
+	/**
+	 * Replace the entries with an immutable copy once all mods have been set up.
+	 *
+	 * <p>The copy is fully built before being assigned to the volatile {@link #entryMap}, so any thread reading it
+	 * afterwards sees the frozen entries.
+	 */
+	public void freeze() {
+		Map<String, List<Entry>> frozen = new HashMap<>(entryMap.size() * 2);
+
+		for (Map.Entry<String, List<Entry>> e : entryMap.entrySet()) {
+			frozen.put(e.getKey(), Collections.unmodifiableList(new ArrayList<>(e.getValue())));
+		}
+
+		entryMap = Collections.unmodifiableMap(frozen);
+	}
+
 	public void addDeprecated(ModContainerImpl modContainer, String adapter, String value) throws ClassNotFoundException, LanguageAdapterException {
 		Log.debug(LogCategory.ENTRYPOINT, "Registering 0.3.x old-style initializer %s for mod %s", value, modContainer.getMetadata().getId());
-		OldEntry oe = new OldEntry(modContainer, adapter, value);
+		OldEntry oe = new OldEntry(modContainer, adapter, value, profiler);
 		getOrCreateEntries("main").add(oe);
 		getOrCreateEntries("client").add(oe);
 		getOrCreateEntries("server").add(oe);
@@ -173,10 +263,62 @@ public final class EntrypointStorage {
 
 		Log.debug(LogCategory.ENTRYPOINT, "Registering new-style initializer %s for mod %s (key %s)", metadata.getValue(), modContainer.getMetadata().getId(), key);
 		getOrCreateEntries(key).add(new NewEntry(
-				modContainer, adapterMap.get(metadata.getAdapter()), metadata.getValue()
+				modContainer, key, adapterMap.get(metadata.getAdapter()), metadata.getValue(), metadata.isThreadSafe(), profiler
 				));
 	}
 
+	/**
+	 * Start loading the declared entrypoint classes on a background pool without initializing them.
+	 *
+	 * <p>This moves loading and transforming them and their super types off the thread that later creates the
+	 * entrypoints. Only entrypoints using the default language adapter are considered since only its value format is
+	 * known. Failures are ignored here, they surface when the entrypoint is created.
+	 *
+	 * @param keys the entrypoint keys to load the classes for, others may never be used in this environment
+	 */
+	public void startWarmup(ClassLoader classLoader, Collection<String> keys) {
+		Set<String> classNames = new LinkedHashSet<>();
+
+		for (String key : keys) {
+			List<Entry> entries = entryMap.get(key);
+			if (entries == null) continue;
+
+			for (Entry entry : entries) {
+				if (!(entry instanceof NewEntry) || !(((NewEntry) entry).adapter instanceof DefaultLanguageAdapter)) continue;
+
+				String value = entry.getDefinition();
+				int pos = value.indexOf("::");
+				classNames.add(pos >= 0 ? value.substring(0, pos) : value);
+			}
+		}
+
+		if (classNames.isEmpty()) return;
+
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+		AtomicInteger remaining = new AtomicInteger(classNames.size());
+		long startTime = System.nanoTime();
+
+		for (String name : classNames) {
+			pool.execute(() -> {
+				try {
+					Class.forName(name, false, classLoader);
+				} catch (Throwable t) {
+					Log.debug(LogCategory.ENTRYPOINT, "Entrypoint warmup failed to load %s", name, t);
+				}
+
+				if (remaining.decrementAndGet() == 0) {
+					Log.debug(LogCategory.ENTRYPOINT, "Entrypoint warmup loaded %d classes in %d ms", classNames.size(), (System.nanoTime() - startTime) / 1000000);
+				}
+			});
+		}
+
+		pool.shutdown(); // lets the submitted tasks finish, the worker threads are daemons
+	}
+
+	public EntrypointProfiler getProfiler() {
+		return profiler;
+	}
+
 	public boolean hasEntrypoints(String key) {
 		return entryMap.containsKey(key);
 	}
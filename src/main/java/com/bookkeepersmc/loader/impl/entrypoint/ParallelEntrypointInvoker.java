@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.entrypoint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+
+import com.bookkeepersmc.loader.api.ModContainer;
+import com.bookkeepersmc.loader.api.entrypoint.EntrypointContainer;
+import com.bookkeepersmc.loader.api.metadata.ModDependency;
+import com.bookkeepersmc.loader.api.metadata.ModMetadata;
+import com.bookkeepersmc.loader.impl.NotebookLoaderImpl;
+
+/**
+ * Invokes the entrypoints of one stage, running those declared as thread safe on a work-stealing pool.
+ *
+ * <p>Entrypoints without the flag run on the calling thread in list order, as they would with serial invocation. Each
+ * entrypoint only starts after the earlier entrypoints of its own mod and of the mods it positively depends on
+ * have finished. Only earlier list entries are considered, which keeps the schedule acyclic and lets the serial
+ * entrypoints never wait for work that in turn waits for them. Stages without thread safe entrypoints don't start a
+ * pool at all.
+ */
+public final class ParallelEntrypointInvoker {
+	private ParallelEntrypointInvoker() { }
+
+	/**
+	 * Invoke the entrypoints, capturing failures instead of propagating them.
+	 *
+	 * @return the failure for each entrypoint by index, null for those that completed normally
+	 */
+	public static <T> Throwable[] invoke(String key, List<EntrypointContainer<T>> entrypoints, Consumer<? super T> invoker, EntrypointProfiler profiler) {
+		int count = entrypoints.size();
+		Throwable[] failures = new Throwable[count];
+
+		if (!anyThreadSafe(entrypoints)) { // nothing to run concurrently, don't start a pool
+			for (int i = 0; i < count; i++) {
+				try {
+					profiler.invoke(key, entrypoints.get(i), invoker);
+				} catch (Throwable t) {
+					failures[i] = t;
+				}
+			}
+
+			return failures;
+		}
+
+		CompletableFuture<?>[] done = new CompletableFuture<?>[count];
+		List<Set<String>> providedIds = new ArrayList<>(count);
+		Map<ModContainer, Set<String>> dependencyIdCache = new IdentityHashMap<>();
+
+		for (EntrypointContainer<T> container : entrypoints) {
+			ModMetadata metadata = container.getProvider().getMetadata();
+			Set<String> ids = new HashSet<>(metadata.getProvides());
+			ids.add(metadata.getId());
+			providedIds.add(ids);
+		}
+
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setContextClassLoader(contextClassLoader); // mods may rely on it like on the game thread
+
+			return thread;
+		}, null, false);
+
+		try {
+			for (int i = 0; i < count; i++) {
+				EntrypointContainer<T> container = entrypoints.get(i);
+				CompletableFuture<Void> dependencies = CompletableFuture.allOf(getDependencies(i, entrypoints, providedIds, done, dependencyIdCache));
+				int index = i;
+				Runnable task = () -> {
+					try {
+						profiler.invoke(key, container, invoker);
+					} catch (Throwable t) {
+						failures[index] = t;
+					}
+				};
+
+				if (isThreadSafe(container)) {
+					done[i] = dependencies.thenRunAsync(task, pool);
+				} else {
+					dependencies.join();
+					task.run();
+					done[i] = dependencies;
+				}
+			}
+
+			CompletableFuture.allOf(done).join();
+		} finally {
+			pool.shutdown();
+		}
+
+		return failures;
+	}
+
+	private static boolean anyThreadSafe(List<? extends EntrypointContainer<?>> entrypoints) {
+		for (EntrypointContainer<?> container : entrypoints) {
+			if (isThreadSafe(container)) return true;
+		}
+
+		return false;
+	}
+
+	private static boolean isThreadSafe(EntrypointContainer<?> container) {
+		return container instanceof EntrypointContainerImpl && ((EntrypointContainerImpl<?>) container).isThreadSafe();
+	}
+
+	private static CompletableFuture<?>[] getDependencies(int index, List<? extends EntrypointContainer<?>> entrypoints, List<Set<String>> providedIds, CompletableFuture<?>[] done,
+			Map<ModContainer, Set<String>> dependencyIdCache) {
+		ModContainer mod = entrypoints.get(index).getProvider();
+		Set<String> dependencyIds = dependencyIdCache.computeIfAbsent(mod, ParallelEntrypointInvoker::getDependencyIds);
+		List<CompletableFuture<?>> ret = new ArrayList<>();
+
+		for (int i = 0; i < index; i++) {
+			if (entrypoints.get(i).getProvider() == mod || !Collections.disjoint(providedIds.get(i), dependencyIds)) {
+				ret.add(done[i]);
+			}
+		}
+
+		return ret.toArray(new CompletableFuture<?>[0]);
+	}
+
+	/**
+	 * Collect the transitive positive dependencies, they may be reached through mods without entrypoints for the stage.
+	 */
+	private static Set<String> getDependencyIds(ModContainer mod) {
+		Set<String> ret = new HashSet<>();
+		Deque<ModContainer> queue = new ArrayDeque<>();
+		queue.add(mod);
+
+		while ((mod = queue.poll()) != null) {
+			for (ModDependency dependency : mod.getMetadata().getDependencies()) {
+				if (dependency.getKind().isPositive() && ret.add(dependency.getModId())) {
+					NotebookLoaderImpl.INSTANCE.getModContainer(dependency.getModId()).ifPresent(queue::add);
+				}
+			}
+		}
+
+		return ret;
+	}
+}
@@ -23,12 +23,20 @@
 package com.bookkeepersmc.loader.impl.game;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -38,7 +46,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.jar.JarFile;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
 import java.util.zip.ZipFile;
 
 import com.bookkeepersmc.api.EnvType;
@@ -46,19 +55,23 @@ import com.bookkeepersmc.loader.impl.FormattedException;
 import com.bookkeepersmc.loader.impl.NotebookLoaderImpl;
 import com.bookkeepersmc.loader.impl.launch.MappingConfiguration;
 import com.bookkeepersmc.loader.impl.launch.NotebookLauncher;
+import com.bookkeepersmc.loader.impl.lib.gson.JsonReader;
+import com.bookkeepersmc.loader.impl.lib.gson.JsonToken;
+import com.bookkeepersmc.loader.impl.lib.gson.JsonWriter;
+import com.bookkeepersmc.loader.impl.util.HashUtil;
 import com.bookkeepersmc.loader.impl.util.LoaderUtil;
 import com.bookkeepersmc.loader.impl.util.SystemProperties;
 import com.bookkeepersmc.loader.impl.util.UrlConversionException;
 import com.bookkeepersmc.loader.impl.util.UrlUtil;
 import com.bookkeepersmc.loader.impl.util.log.Log;
 import com.bookkeepersmc.loader.impl.util.log.LogCategory;
+import com.bookkeepersmc.loader.impl.util.mappings.MappingImage;
+import com.bookkeepersmc.loader.impl.util.mappings.RemappedJarOutput;
 import com.bookkeepersmc.loader.impl.util.mappings.TinyRemapperMappingsHelper;
 
-import net.fabricmc.mappingio.tree.MappingTree;
 import net.fabricmc.tinyremapper.InputTag;
-import net.fabricmc.tinyremapper.NonClassCopyMode;
-import net.fabricmc.tinyremapper.OutputConsumerPath;
 import net.fabricmc.tinyremapper.TinyRemapper;
+import org.jetbrains.annotations.Nullable;
 
 public final class GameProviderHelper {
 	private GameProviderHelper() { }
@@ -160,6 +173,11 @@ public final class GameProviderHelper {
 		}
 	}
 
+	private static final int CACHE_FORMAT_VERSION = 1;
+	private static final String CACHE_MANIFEST_NAME = "cache.json";
+	private static final String TMP_DIR_SUFFIX = ".tmp-";
+	private static final long STALE_TMP_DIR_AGE_MS = 3_600_000; // 1 hour, longer than any remap should take
+
 	private static boolean emittedInfo = false;
 
 	public static Map<String, Path> deobfuscate(Map<String, Path> inputFileMap, String gameId, String gameVersion, Path gameDir, NotebookLauncher launcher) {
@@ -170,6 +188,7 @@ public final class GameProviderHelper {
 		}
 
 		MappingConfiguration mappingConfig = launcher.getMappingConfiguration();
+		mappingConfig.setCacheDir(gameDir.resolve(NotebookLoaderImpl.CACHE_DIR_NAME));
 
 		if (!mappingConfig.matches(gameId, gameVersion)) {
 			String mappingsGameId = mappingConfig.getGameId();
@@ -196,44 +215,49 @@ public final class GameProviderHelper {
 			return inputFileMap;
 		}
 
-		Path deobfJarDir = getDeobfJarDir(gameDir, gameId, gameVersion);
-		List<Path> inputFiles = new ArrayList<>(inputFileMap.size());
-		List<Path> outputFiles = new ArrayList<>(inputFileMap.size());
-		List<Path> tmpFiles = new ArrayList<>(inputFileMap.size());
-		Map<String, Path> ret = new HashMap<>(inputFileMap.size());
-		boolean anyMissing = false;
-
-		for (Map.Entry<String, Path> entry : inputFileMap.entrySet()) {
-			String name = entry.getKey();
-			Path inputFile = entry.getValue();
-			// TODO: allow versioning mappings?
-			String deobfJarFilename = String.format("%s-%s.jar", name, targetNamespace);
-			Path outputFile = deobfJarDir.resolve(deobfJarFilename);
-			Path tmpFile = deobfJarDir.resolve(deobfJarFilename + ".tmp");
-
-			if (Files.exists(tmpFile)) { // previous unfinished remap attempt
-				Log.warn(LogCategory.GAME_REMAP, "Incomplete remapped file found! This means that the remapping process failed on the previous launch. If this persists, make sure to let us at Fabric know!");
+		// sort the inputs for a stable cache key
+		List<String> names = new ArrayList<>(inputFileMap.keySet());
+		Collections.sort(names);
+		List<Path> inputFiles = new ArrayList<>(names.size());
+		List<String> inputHashes = new ArrayList<>(names.size());
+		List<BasicFileAttributes> inputAttributes = new ArrayList<>(names.size());
+		Path cacheRoot = getRemappedJarsDir(gameDir);
+		String dirPrefix = getDeobfJarDirName(gameId, gameVersion, "");
+		Map<String, String> knownHashes = readKnownHashes(cacheRoot, dirPrefix);
+		String mappingsKey = mappingConfig.getMappingsKey();
+		MessageDigest digest = HashUtil.newDigest();
+		HashUtil.update(digest, Integer.toString(CACHE_FORMAT_VERSION));
+		HashUtil.update(digest, NotebookLoaderImpl.VERSION);
+		HashUtil.update(digest, targetNamespace);
+		HashUtil.update(digest, String.valueOf(mappingsKey));
 
-				try {
-					Files.deleteIfExists(outputFile);
-					Files.deleteIfExists(tmpFile);
-				} catch (IOException e) {
-					throw new RuntimeException("can't delete incompletely remapped files", e);
-				}
+		try {
+			for (String name : names) {
+				Path inputFile = inputFileMap.get(name);
+				BasicFileAttributes attributes = Files.readAttributes(inputFile, BasicFileAttributes.class);
+				String hash = knownHashes.get(getInputFingerprint(inputFile.toString(), attributes.size(), attributes.lastModifiedTime().toMillis()));
+				if (hash == null) hash = HashUtil.hash(inputFile);
+
+				inputFiles.add(inputFile);
+				inputHashes.add(hash);
+				inputAttributes.add(attributes);
+
+				HashUtil.update(digest, name);
+				HashUtil.update(digest, hash);
 			}
+		} catch (IOException e) {
+			throw new RuntimeException("error hashing game jars "+inputFileMap.values(), e);
+		}
 
-			inputFiles.add(inputFile);
-			outputFiles.add(outputFile);
-			tmpFiles.add(tmpFile);
-			ret.put(name, outputFile);
+		Path deobfJarDir = cacheRoot.resolve(getDeobfJarDirName(gameId, gameVersion, HashUtil.toHex(digest.digest()).substring(0, 16)));
+		Map<String, Path> ret = new HashMap<>(names.size());
 
-			if (!anyMissing && !Files.exists(outputFile)) {
-				anyMissing = true;
-			}
+		for (String name : names) {
+			ret.put(name, deobfJarDir.resolve(getDeobfJarFilename(name, targetNamespace)));
 		}
 
-		if (!anyMissing) {
-			Log.debug(LogCategory.GAME_REMAP, "Remapped files exist already, reusing them");
+		if (Files.exists(deobfJarDir.resolve(CACHE_MANIFEST_NAME))) { // written last, the directory is complete
+			Log.debug(LogCategory.GAME_REMAP, "Remapped files exist already in %s, reusing them", deobfJarDir);
 			return ret;
 		}
 
@@ -244,36 +268,273 @@ public final class GameProviderHelper {
 			emittedInfo = true;
 		}
 
+		// remap into a private directory and move it into place atomically, the cache root may be shared by multiple
+		// concurrently starting game instances
+
+		Path tmpDir = null;
+
 		try {
-			Files.createDirectories(deobfJarDir);
-			deobfuscate0(inputFiles, outputFiles, tmpFiles, mappingConfig.getMappings(), targetNamespace, launcher);
+			Files.createDirectories(cacheRoot);
+			deleteStaleTmpDirs(cacheRoot);
+			tmpDir = Files.createTempDirectory(cacheRoot, deobfJarDir.getFileName().toString() + TMP_DIR_SUFFIX);
+
+			List<Path> outputFiles = new ArrayList<>(names.size());
+			List<Path> tmpFiles = new ArrayList<>(names.size());
+
+			for (String name : names) {
+				String filename = getDeobfJarFilename(name, targetNamespace);
+				outputFiles.add(tmpDir.resolve(filename));
+				tmpFiles.add(tmpDir.resolve(filename + ".tmp"));
+			}
+
+			deobfuscate0(inputFiles, outputFiles, tmpFiles, mappingConfig.getMappingImage(), targetNamespace, launcher);
+			writeCacheManifest(tmpDir.resolve(CACHE_MANIFEST_NAME), gameId, gameVersion, targetNamespace, mappingsKey, names, inputFiles, inputHashes, inputAttributes);
+
+			try {
+				Files.move(tmpDir, deobfJarDir, StandardCopyOption.ATOMIC_MOVE);
+				tmpDir = null;
+			} catch (IOException e) {
+				if (!Files.exists(deobfJarDir.resolve(CACHE_MANIFEST_NAME))) throw e;
+
+				Log.debug(LogCategory.GAME_REMAP, "Remapped files were created concurrently in %s, using them", deobfJarDir);
+			}
+
+			// instances sharing the cache dir may still run from the other directories, e.g. on a different loader version
+			if (System.getProperty(SystemProperties.SHARED_CACHE_DIR) == null) {
+				deleteOutdatedDirs(cacheRoot, dirPrefix, deobfJarDir);
+			}
 		} catch (IOException e) {
 			throw new RuntimeException("error remapping game jars "+inputFiles, e);
+		} finally {
+			if (tmpDir != null) deleteRecursively(tmpDir);
 		}
 
 		return ret;
 	}
 
-	private static Path getDeobfJarDir(Path gameDir, String gameId, String gameVersion) {
-		Path ret = gameDir.resolve(NotebookLoaderImpl.CACHE_DIR_NAME).resolve(NotebookLoaderImpl.REMAPPED_JARS_DIR_NAME);
-		StringBuilder versionDirName = new StringBuilder();
+	private static Path getRemappedJarsDir(Path gameDir) {
+		String sharedCacheDir = System.getProperty(SystemProperties.SHARED_CACHE_DIR);
+		Path cacheDir = sharedCacheDir != null ? Paths.get(sharedCacheDir) : gameDir.resolve(NotebookLoaderImpl.CACHE_DIR_NAME);
+
+		return cacheDir.resolve(NotebookLoaderImpl.REMAPPED_JARS_DIR_NAME);
+	}
+
+	private static String getDeobfJarDirName(String gameId, String gameVersion, String key) {
+		StringBuilder ret = new StringBuilder();
 
 		if (!gameId.isEmpty()) {
-			versionDirName.append(gameId);
+			ret.append(gameId);
 		}
 
 		if (!gameVersion.isEmpty()) {
-			if (versionDirName.length() > 0) versionDirName.append('-');
-			versionDirName.append(gameVersion);
+			if (ret.length() > 0) ret.append('-');
+			ret.append(gameVersion);
+		}
+
+		if (ret.length() > 0) ret.append('-');
+		ret.append(key);
+
+		return ret.toString().replaceAll("[^\\w\\-\\. ]+", "_");
+	}
+
+	private static String getDeobfJarFilename(String name, String targetNamespace) {
+		return String.format("%s-%s.jar", name, targetNamespace);
+	}
+
+	private static void writeCacheManifest(Path file, String gameId, String gameVersion, String targetNamespace, @Nullable String mappingsKey,
+			List<String> names, List<Path> inputFiles, List<String> inputHashes, List<BasicFileAttributes> inputAttributes) throws IOException {
+		try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			writer.setIndent("\t");
+			writer.beginObject();
+			writer.name("formatVersion").value(CACHE_FORMAT_VERSION);
+			writer.name("loaderVersion").value(NotebookLoaderImpl.VERSION);
+			writer.name("gameId").value(gameId);
+			writer.name("gameVersion").value(gameVersion);
+			writer.name("targetNamespace").value(targetNamespace);
+			writer.name("mappings").value(mappingsKey);
+			writer.name("created").value(System.currentTimeMillis());
+			writer.name("inputs").beginArray();
+
+			for (int i = 0; i < names.size(); i++) {
+				writer.beginObject();
+				writer.name("name").value(names.get(i));
+				writer.name("path").value(inputFiles.get(i).toString());
+				writer.name("size").value(inputAttributes.get(i).size());
+				writer.name("lastModified").value(inputAttributes.get(i).lastModifiedTime().toMillis());
+				writer.name("sha256").value(inputHashes.get(i));
+				writer.endObject();
+			}
+
+			writer.endArray();
+			writer.endObject();
+		}
+	}
+
+	/**
+	 * Collect the input hashes recorded in the cache manifests of earlier launches for the same game, keyed by
+	 * {@link #getInputFingerprint}. This avoids rehashing unchanged game jars on every launch.
+	 */
+	private static Map<String, String> readKnownHashes(Path cacheRoot, String dirPrefix) {
+		Map<String, String> ret = new HashMap<>();
+		if (!Files.isDirectory(cacheRoot)) return ret;
+
+		Pattern pattern = getDeobfJarDirPattern(dirPrefix);
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheRoot)) {
+			for (Path dir : stream) {
+				Path manifest = dir.resolve(CACHE_MANIFEST_NAME);
+				if (!pattern.matcher(dir.getFileName().toString()).matches() || !Files.exists(manifest)) continue;
+
+				try (JsonReader reader = new JsonReader(Files.newBufferedReader(manifest, StandardCharsets.UTF_8))) {
+					readKnownHashes(reader, ret);
+				} catch (IOException | IllegalStateException e) {
+					Log.debug(LogCategory.GAME_REMAP, "Error reading cache manifest %s", manifest, e);
+				}
+			}
+		} catch (IOException e) {
+			Log.debug(LogCategory.GAME_REMAP, "Error listing %s", cacheRoot, e);
+		}
+
+		return ret;
+	}
+
+	private static void readKnownHashes(JsonReader reader, Map<String, String> out) throws IOException {
+		reader.beginObject();
+
+		while (reader.hasNext()) {
+			if (!reader.nextName().equals("inputs") || reader.peek() != JsonToken.BEGIN_ARRAY) {
+				reader.skipValue();
+				continue;
+			}
+
+			reader.beginArray();
+
+			while (reader.hasNext()) {
+				String path = null;
+				long size = -1;
+				long lastModified = -1;
+				String hash = null;
+
+				reader.beginObject();
+
+				while (reader.hasNext()) {
+					switch (reader.nextName()) {
+					case "path":
+						path = reader.nextString();
+						break;
+					case "size":
+						size = reader.nextLong();
+						break;
+					case "lastModified":
+						lastModified = reader.nextLong();
+						break;
+					case "sha256":
+						hash = reader.nextString();
+						break;
+					default:
+						reader.skipValue();
+					}
+				}
+
+				reader.endObject();
+
+				// manifests written before size and lastModified were recorded can't be matched
+				if (path != null && size >= 0 && lastModified >= 0 && hash != null) {
+					out.put(getInputFingerprint(path, size, lastModified), hash);
+				}
+			}
+
+			reader.endArray();
+		}
+
+		reader.endObject();
+	}
+
+	private static String getInputFingerprint(String path, long size, long lastModified) {
+		return path+"|"+size+"|"+lastModified;
+	}
+
+	private static Pattern getDeobfJarDirPattern(String dirPrefix) {
+		return Pattern.compile(Pattern.quote(dirPrefix)+"[0-9a-f]{16}");
+	}
+
+	/**
+	 * Remove the remapped files of earlier launches for the same game, they were produced with a different cache key.
+	 *
+	 * <p>Each directory is moved out of the way first, so a directory still in use by another instance is either kept
+	 * complete or not matched anymore. Leftovers of failed deletions are cleaned up like interrupted remapping attempts.
+	 *
+	 * <p>Not used with {@link SystemProperties#SHARED_CACHE_DIR}, other instances may keep using outdated directories.
+	 */
+	private static void deleteOutdatedDirs(Path cacheRoot, String dirPrefix, Path currentDir) {
+		Pattern pattern = getDeobfJarDirPattern(dirPrefix);
+		List<Path> outdatedDirs = new ArrayList<>();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheRoot)) {
+			for (Path dir : stream) {
+				if (!dir.equals(currentDir) && pattern.matcher(dir.getFileName().toString()).matches()) {
+					outdatedDirs.add(dir);
+				}
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.GAME_REMAP, "Error listing %s", cacheRoot, e);
+			return;
+		}
+
+		for (Path dir : outdatedDirs) {
+			Path tmpDir = dir.resolveSibling(dir.getFileName().toString() + TMP_DIR_SUFFIX + "outdated");
+
+			try {
+				Files.move(dir, tmpDir, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				// still in use or concurrently removed
+				Log.debug(LogCategory.GAME_REMAP, "Can't move outdated remapped files in %s", dir, e);
+				continue;
+			}
+
+			Log.debug(LogCategory.GAME_REMAP, "Deleting outdated remapped files in %s", dir);
+			deleteRecursively(tmpDir);
+		}
+	}
+
+	/**
+	 * Remove temporary directories left behind by remapping attempts that were interrupted, e.g. by a crash.
+	 */
+	private static void deleteStaleTmpDirs(Path cacheRoot) throws IOException {
+		long threshold = System.currentTimeMillis() - STALE_TMP_DIR_AGE_MS;
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheRoot)) {
+			for (Path path : stream) {
+				if (path.getFileName().toString().contains(TMP_DIR_SUFFIX)
+						&& Files.getLastModifiedTime(path).toMillis() < threshold) {
+					Log.warn(LogCategory.GAME_REMAP, "Incomplete remapped files found in %s, this means that the remapping process failed on a previous launch.", path);
+					deleteRecursively(path);
+				}
+			}
 		}
+	}
 
-		if (versionDirName.length() > 0) versionDirName.append('-');
-		versionDirName.append(NotebookLoaderImpl.VERSION);
+	private static void deleteRecursively(Path path) {
+		try {
+			Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Files.delete(file);
+					return FileVisitResult.CONTINUE;
+				}
 
-		return ret.resolve(versionDirName.toString().replaceAll("[^\\w\\-\\. ]+", "_"));
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+					Files.delete(dir);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			Log.warn(LogCategory.GAME_REMAP, "Can't delete %s", path, e);
+		}
 	}
 
-	private static void deobfuscate0(List<Path> inputFiles, List<Path> outputFiles, List<Path> tmpFiles, MappingTree mappings, String targetNamespace, NotebookLauncher launcher) throws IOException {
+	private static void deobfuscate0(List<Path> inputFiles, List<Path> outputFiles, List<Path> tmpFiles, MappingImage mappings, String targetNamespace, NotebookLauncher launcher) throws IOException {
 		TinyRemapper remapper = TinyRemapper.newRemapper()
 				.withMappings(TinyRemapperMappingsHelper.create(mappings, "official", targetNamespace))
 				.rebuildSourceFilenames(true)
@@ -292,33 +553,40 @@ public final class GameProviderHelper {
 			}
 		}
 
-		List<OutputConsumerPath> outputConsumers = new ArrayList<>(inputFiles.size());
-		List<InputTag> inputTags = new ArrayList<>(inputFiles.size());
+		List<RemappedJarOutput> outputs = new ArrayList<>(inputFiles.size());
+		ForkJoinPool pool = new ForkJoinPool();
 
 		try {
-			for (int i = 0; i < inputFiles.size(); i++) {
-				Path inputFile = inputFiles.get(i);
-				Path tmpFile = tmpFiles.get(i);
+			List<InputTag> inputTags = new ArrayList<>(inputFiles.size());
 
+			for (int i = 0; i < inputFiles.size(); i++) {
 				InputTag inputTag = remapper.createInputTag();
-				OutputConsumerPath outputConsumer = new OutputConsumerPath.Builder(tmpFile)
-						// force jar despite the .tmp extension
-						.assumeArchive(true)
-						.build();
-
-				outputConsumers.add(outputConsumer);
 				inputTags.add(inputTag);
+				outputs.add(new RemappedJarOutput(inputFiles.get(i), tmpFiles.get(i), remapper));
 
-				outputConsumer.addNonClassFiles(inputFile, NonClassCopyMode.FIX_META_INF, remapper);
-				remapper.readInputsAsync(inputTag, inputFile);
+				remapper.readInputsAsync(inputTag, inputFiles.get(i));
+			}
+
+			// copy the non-class files while tiny remapper processes the classes
+			for (RemappedJarOutput output : outputs) {
+				output.copyNonClassFiles(pool, Collections.emptySet());
 			}
 
 			for (int i = 0; i < inputFiles.size(); i++) {
-				remapper.apply(outputConsumers.get(i), inputTags.get(i));
+				// invoked concurrently from the remapper's threads, so the class files get compressed in parallel
+				remapper.apply(outputs.get(i)::acceptClass, inputTags.get(i));
+			}
+
+			for (RemappedJarOutput output : outputs) {
+				output.finish();
 			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		} finally {
-			for (OutputConsumerPath outputConsumer : outputConsumers) {
-				outputConsumer.close();
+			pool.shutdown();
+
+			for (RemappedJarOutput output : outputs) {
+				output.close();
 			}
 
 			remapper.finish();
@@ -327,8 +595,6 @@ public final class GameProviderHelper {
 		// Minecraft doesn't tend to check if a ZipFileSystem is already present,
 		// so we clean up here.
 
-		depPaths.addAll(tmpFiles);
-
 		for (Path p : depPaths) {
 			try {
 				p.getFileSystem().close();
@@ -350,13 +616,7 @@ public final class GameProviderHelper {
 			Path tmpFile = tmpFiles.get(i);
 			Path outputFile = outputFiles.get(i);
 
-			boolean found;
-
-			try (JarFile jar = new JarFile(tmpFile.toFile())) {
-				found = jar.stream().anyMatch((e) -> e.getName().endsWith(".class"));
-			}
-
-			if (!found) {
+			if (outputs.get(i).getClassCount() == 0) {
 				missing.add(inputFile);
 				Files.delete(tmpFile);
 			} else {
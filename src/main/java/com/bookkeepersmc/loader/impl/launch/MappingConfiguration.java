@@ -24,19 +24,35 @@ package com.bookkeepersmc.loader.impl.launch;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Collections;
 import java.util.List;
 import java.util.jar.Attributes.Name;
+import java.util.jar.JarEntry;
 import java.util.jar.Manifest;
 import java.util.zip.ZipError;
 
+import com.bookkeepersmc.loader.impl.util.FileSystemUtil;
+import com.bookkeepersmc.loader.impl.util.HashUtil;
 import com.bookkeepersmc.loader.impl.util.ManifestUtil;
+import com.bookkeepersmc.loader.impl.util.SystemProperties;
 import com.bookkeepersmc.loader.impl.util.log.Log;
 import com.bookkeepersmc.loader.impl.util.log.LogCategory;
 import com.bookkeepersmc.loader.impl.util.mappings.FilteringMappingVisitor;
+import com.bookkeepersmc.loader.impl.util.mappings.MappingImage;
 
 import net.fabricmc.mappingio.MappingReader;
 import net.fabricmc.mappingio.format.MappingFormat;
@@ -47,8 +63,14 @@ import net.fabricmc.mappingio.tree.MemoryMappingTree;
 import org.jetbrains.annotations.Nullable;
 
 public final class MappingConfiguration {
+	private static final String MAPPINGS_DIR_NAME = "mappings";
+
 	private boolean initializedMetadata;
 	private boolean initializedMappings;
+	private boolean initializedImage;
+
+	@Nullable
+	private Path cacheDir;
 
 	@Nullable
 	private String gameId;
@@ -58,6 +80,10 @@ public final class MappingConfiguration {
 	private List<String> namespaces;
 	@Nullable
 	private MemoryMappingTree mappings;
+	@Nullable
+	private MappingImage mappingImage;
+	@Nullable
+	private String mappingsKey;
 
 	@Nullable
 	public String getGameId() {
@@ -87,12 +113,31 @@ public final class MappingConfiguration {
 				&& (this.gameVersion == null || gameVersion == null || gameVersion.equals(this.gameVersion));
 	}
 
+	/**
+	 * Set the directory for caching the binary mapping image, has no effect once the mappings have been loaded.
+	 *
+	 * <p>{@link SystemProperties#SHARED_CACHE_DIR} takes precedence if set, letting processes for different game
+	 * directories map the same image file.
+	 */
+	public void setCacheDir(Path cacheDir) {
+		if (this.cacheDir == null) this.cacheDir = cacheDir;
+	}
+
 	public MappingTree getMappings() {
 		initializeMappings();
 
 		return mappings;
 	}
 
+	/**
+	 * Get the mappings as a read-only mapping image, which is cheaper to load and query than {@link #getMappings()}.
+	 */
+	public MappingImage getMappingImage() {
+		initializeImage();
+
+		return mappingImage;
+	}
+
 	public String getTargetNamespace() {
 		return NotebookLauncherBase.getLauncher().isDevelopment() ? "named" : "intermediary";
 	}
@@ -143,9 +188,120 @@ public final class MappingConfiguration {
 	private void initializeMappings() {
 		if (initializedMappings) return;
 
+		initializeImage();
+
+		if (mappings == null) { // image loaded from cache, populate the tree from it
+			long time = System.currentTimeMillis();
+			mappings = new MemoryMappingTree();
+
+			try {
+				mappingImage.accept(mappings);
+			} catch (IOException e) {
+				throw new RuntimeException("Error reading mappings", e);
+			}
+
+			Log.debug(LogCategory.MAPPINGS, "Populating mapping tree took %d ms", System.currentTimeMillis() - time);
+		}
+
+		initializedMappings = true;
+	}
+
+	private void initializeImage() {
+		if (initializedImage) return;
+
 		initializeMetadata();
 		final URLConnection connection = openMappings();
+		Path imageFile = connection != null && namespaces != null ? getImageFile(connection) : null;
+
+		if (imageFile != null) {
+			mappingImage = loadImage(imageFile);
+
+			if (mappingImage == null) {
+				mappingImage = produceImage(connection, imageFile);
+			}
+		}
+
+		if (mappingImage == null) {
+			if (mappings == null) readMappings(connection);
+			List<String> imageNamespaces = namespaces != null && connection != null ? namespaces : Collections.emptyList();
+			mappingImage = MappingImage.of(MappingImage.create(mappings, imageNamespaces));
+		}
+
+		initializedImage = true;
+	}
+
+	@Nullable
+	private MappingImage loadImage(Path imageFile) {
+		if (!Files.exists(imageFile)) return null;
+
+		try {
+			MappingImage image = MappingImage.load(imageFile);
+
+			if (image.getNamespaces().equals(namespaces)) {
+				Log.debug(LogCategory.MAPPINGS, "Using cached mapping image %s", imageFile);
+				return image;
+			} else {
+				Log.debug(LogCategory.MAPPINGS, "Cached mapping image %s has mismatched namespaces, ignoring", imageFile);
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.MAPPINGS, "Error reading cached mapping image %s, ignoring", imageFile, e);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Create the mapping image file, coordinating with other processes using the same cache directory.
+	 *
+	 * <p>The image is only produced while holding a file lock next to it, a process waiting for the lock uses the
+	 * image produced in the meantime instead of repeating the work. The file itself is written through an atomic rename,
+	 * so readers never observe a partial image.
+	 */
+	@Nullable
+	private MappingImage produceImage(URLConnection connection, Path imageFile) {
+		Path lockFile = imageFile.resolveSibling(imageFile.getFileName().toString().concat(".lock"));
+
+		try {
+			Files.createDirectories(imageFile.getParent());
+
+			try (FileChannel lockChannel = openLockFile(lockFile);
+					FileLock lock = lockChannel != null ? lockChannel.lock() : null) {
+				MappingImage ret = loadImage(imageFile); // may have been produced while waiting for the lock
+				if (ret != null) return ret;
+
+				readMappings(connection);
+				MappingImage.write(mappings, namespaces, imageFile);
+				mappings = null; // only needed for producing the image, getMappings() can repopulate it
+
+				return MappingImage.load(imageFile); // map the file like other processes do, sharing its pages
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.MAPPINGS, "Error writing mapping image %s", imageFile, e);
+			return null;
+		}
+	}
+
+	@Nullable
+	private static FileChannel openLockFile(Path lockFile) throws IOException {
+		try {
+			FileChannel ret = FileChannel.open(lockFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			// other accounts sharing the cache dir have to be able to lock it as well
+			FileSystemUtil.trySetPosixPermissions(lockFile, "rw-rw-rw-");
+
+			return ret;
+		} catch (FileAlreadyExistsException e) {
+			// created by an earlier or concurrent launch
+		}
 
+		try {
+			return FileChannel.open(lockFile, StandardOpenOption.WRITE);
+		} catch (AccessDeniedException e) {
+			Log.debug(LogCategory.MAPPINGS, "Can't lock %s, producing the mapping image without coordination", lockFile, e);
+			return null;
+		}
+	}
+
+	private void readMappings(@Nullable URLConnection connection) {
 		if (connection != null) {
 			try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
 				long time = System.currentTimeMillis();
@@ -175,8 +331,64 @@ public final class MappingConfiguration {
 			Log.info(LogCategory.MAPPINGS, "Mappings not present!");
 			mappings = new MemoryMappingTree();
 		}
+	}
 
-		initializedMappings = true;
+	/**
+	 * Determine the cache file for the mapping image.
+	 */
+	@Nullable
+	private Path getImageFile(URLConnection connection) {
+		String sharedCacheDir = System.getProperty(SystemProperties.SHARED_CACHE_DIR);
+		Path dir = sharedCacheDir != null ? Paths.get(sharedCacheDir) : cacheDir;
+		if (dir == null) return null;
+
+		String key = getMappingsKey(connection);
+		if (key == null) return null;
+
+		return dir.resolve(MAPPINGS_DIR_NAME).resolve(String.format("mappings-%s.nbmi", key));
+	}
+
+	/**
+	 * Get a key identifying the content of the mappings, suitable for keying caches derived from them.
+	 *
+	 * @return the key or null if there are no mappings
+	 */
+	@Nullable
+	public String getMappingsKey() {
+		if (mappingsKey == null) {
+			URLConnection connection = openMappings();
+			if (connection == null) return null;
+
+			mappingsKey = getMappingsKey(connection);
+		}
+
+		return mappingsKey;
+	}
+
+	@Nullable
+	private String getMappingsKey(URLConnection connection) {
+		if (mappingsKey != null) return mappingsKey;
+
+		try {
+			if (connection instanceof JarURLConnection) { // use the checksum recorded in the jar, cheap to obtain
+				JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+
+				if (entry != null && entry.getCrc() >= 0 && entry.getSize() >= 0) {
+					return mappingsKey = String.format("%08x-%x", entry.getCrc(), entry.getSize());
+				}
+			}
+
+			MessageDigest digest = HashUtil.newDigest();
+
+			try (InputStream is = openMappings().getInputStream()) {
+				HashUtil.update(digest, is);
+			}
+
+			return mappingsKey = HashUtil.toHex(digest.digest()).substring(0, 16);
+		} catch (IOException e) {
+			Log.debug(LogCategory.MAPPINGS, "Can't determine mappings key", e);
+			return null;
+		}
 	}
 
 	@Nullable
@@ -41,9 +41,9 @@ import com.bookkeepersmc.loader.impl.launch.knot.MixinServiceKnot;
 import com.bookkeepersmc.loader.impl.launch.knot.MixinServiceKnotBootstrap;
 import com.bookkeepersmc.loader.impl.util.log.Log;
 import com.bookkeepersmc.loader.impl.util.log.LogCategory;
+import com.bookkeepersmc.loader.impl.util.mappings.MappingImage;
 import com.bookkeepersmc.loader.impl.util.mappings.MixinIntermediaryDevRemapper;
 
-import net.fabricmc.mappingio.tree.MappingTree;
 import org.spongepowered.asm.launch.MixinBootstrap;
 import org.spongepowered.asm.mixin.FabricUtil;
 import org.spongepowered.asm.mixin.MixinEnvironment;
@@ -68,23 +68,19 @@ public final class NotebookMixinBootstrap {
 
 		if (NotebookLauncherBase.getLauncher().isDevelopment()) {
 			MappingConfiguration mappingConfiguration = NotebookLauncherBase.getLauncher().getMappingConfiguration();
-			MappingTree mappings = mappingConfiguration.getMappings();
-
-			if (mappings != null) {
-				List<String> namespaces = new ArrayList<>(mappings.getDstNamespaces());
-				namespaces.add(mappings.getSrcNamespace());
-
-				if (namespaces.contains("intermediary") && namespaces.contains(mappingConfiguration.getTargetNamespace())) {
-					System.setProperty("mixin.env.remapRefMap", "true");
-
-					try {
-						MixinIntermediaryDevRemapper remapper = new MixinIntermediaryDevRemapper(mappings, "intermediary", mappingConfiguration.getTargetNamespace());
-						MixinEnvironment.getDefaultEnvironment().getRemappers().add(remapper);
-						Log.info(LogCategory.MIXIN, "Loaded development mappings for mixin remapper!");
-					} catch (Exception e) {
-						Log.error(LogCategory.MIXIN, "Development environment setup error - the game will probably crash soon!");
-						e.printStackTrace();
-					}
+			MappingImage mappings = mappingConfiguration.getMappingImage();
+			List<String> namespaces = mappings.getNamespaces();
+
+			if (namespaces.contains("intermediary") && namespaces.contains(mappingConfiguration.getTargetNamespace())) {
+				System.setProperty("mixin.env.remapRefMap", "true");
+
+				try {
+					MixinIntermediaryDevRemapper remapper = new MixinIntermediaryDevRemapper(mappings, "intermediary", mappingConfiguration.getTargetNamespace());
+					MixinEnvironment.getDefaultEnvironment().getRemappers().add(remapper);
+					Log.info(LogCategory.MIXIN, "Loaded development mappings for mixin remapper!");
+				} catch (Exception e) {
+					Log.error(LogCategory.MIXIN, "Development environment setup error - the game will probably crash soon!");
+					e.printStackTrace();
 				}
 			}
 		}
@@ -168,6 +168,9 @@ public final class Knot extends NotebookLauncherBase {
 			throw FormattedException.ofLocalized("exception.initializerFailure", e);
 		}
 
+		// all transformers and mixin configs are registered now, loading earlier would bypass them
+		loader.startEntrypointWarmup(cl);
+
 		return cl;
 	}
 
@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2010 Google Inc.
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This file has been modified by the Fabric project (repackage, minor changes).
+ */
+
+package com.bookkeepersmc.loader.impl.lib.gson;
+
+import static com.bookkeepersmc.loader.impl.lib.gson.JsonScope.DANGLING_NAME;
+import static com.bookkeepersmc.loader.impl.lib.gson.JsonScope.EMPTY_ARRAY;
+import static com.bookkeepersmc.loader.impl.lib.gson.JsonScope.EMPTY_DOCUMENT;
+import static com.bookkeepersmc.loader.impl.lib.gson.JsonScope.EMPTY_OBJECT;
+import static com.bookkeepersmc.loader.impl.lib.gson.JsonScope.NONEMPTY_ARRAY;
+import static com.bookkeepersmc.loader.impl.lib.gson.JsonScope.NONEMPTY_DOCUMENT;
+import static com.bookkeepersmc.loader.impl.lib.gson.JsonScope.NONEMPTY_OBJECT;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes a JSON (<a href="http://www.ietf.org/rfc/rfc7159.txt">RFC 7159</a>)
+ * encoded value to a stream, one token at a time. The stream includes both
+ * literal values (strings, numbers, booleans and nulls) as well as the begin
+ * and end delimiters of objects and arrays.
+ *
+ * <p>Within JSON objects, {@link #name(String)} has to be called before each
+ * value. Output is compact unless an indent has been set with
+ * {@link #setIndent(String)}.
+ *
+ * @author Jesse Wilson
+ * @since 1.6
+ */
+public class JsonWriter implements Closeable, Flushable {
+	private static final String[] REPLACEMENT_CHARS;
+
+	static {
+		REPLACEMENT_CHARS = new String[128];
+
+		for (int i = 0; i <= 0x1f; i++) {
+			REPLACEMENT_CHARS[i] = String.format("\\u%04x", i);
+		}
+
+		REPLACEMENT_CHARS['"'] = "\\\"";
+		REPLACEMENT_CHARS['\\'] = "\\\\";
+		REPLACEMENT_CHARS['\t'] = "\\t";
+		REPLACEMENT_CHARS['\b'] = "\\b";
+		REPLACEMENT_CHARS['\n'] = "\\n";
+		REPLACEMENT_CHARS['\r'] = "\\r";
+		REPLACEMENT_CHARS['\f'] = "\\f";
+	}
+
+	/** The output data, containing at most one top-level array or object. */
+	private final Writer out;
+
+	private int[] stack = new int[32];
+	private int stackSize = 0;
+
+	{
+		push(EMPTY_DOCUMENT);
+	}
+
+	/**
+	 * A string containing a full set of spaces for a single level of
+	 * indentation, or null for no pretty printing.
+	 */
+	private String indent;
+
+	/**
+	 * The name/value separator; either ":" or ": ".
+	 */
+	private String separator = ":";
+
+	private String deferredName;
+
+	/**
+	 * Creates a new instance that writes a JSON-encoded stream to {@code out}.
+	 * For best performance, ensure {@link Writer} is buffered; wrapping in
+	 * {@link java.io.BufferedWriter BufferedWriter} if necessary.
+	 */
+	public JsonWriter(Writer out) {
+		if (out == null) {
+			throw new NullPointerException("out == null");
+		}
+
+		this.out = out;
+	}
+
+	/**
+	 * Sets the indentation string to be repeated for each level of indentation
+	 * in the encoded document. If {@code indent.isEmpty()} the encoded document
+	 * will be compact. Otherwise the encoded document will be more
+	 * human-readable.
+	 *
+	 * @param indent a string containing only whitespace.
+	 */
+	public final void setIndent(String indent) {
+		if (indent.length() == 0) {
+			this.indent = null;
+			this.separator = ":";
+		} else {
+			this.indent = indent;
+			this.separator = ": ";
+		}
+	}
+
+	/**
+	 * Begins encoding a new array. Each call to this method must be paired with
+	 * a call to {@link #endArray}.
+	 *
+	 * @return this writer.
+	 */
+	public JsonWriter beginArray() throws IOException {
+		writeDeferredName();
+		return open(EMPTY_ARRAY, '[');
+	}
+
+	/**
+	 * Ends encoding the current array.
+	 *
+	 * @return this writer.
+	 */
+	public JsonWriter endArray() throws IOException {
+		return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+	}
+
+	/**
+	 * Begins encoding a new object. Each call to this method must be paired
+	 * with a call to {@link #endObject}.
+	 *
+	 * @return this writer.
+	 */
+	public JsonWriter beginObject() throws IOException {
+		writeDeferredName();
+		return open(EMPTY_OBJECT, '{');
+	}
+
+	/**
+	 * Ends encoding the current object.
+	 *
+	 * @return this writer.
+	 */
+	public JsonWriter endObject() throws IOException {
+		return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+	}
+
+	/**
+	 * Enters a new scope by appending any necessary whitespace and the given
+	 * bracket.
+	 */
+	private JsonWriter open(int empty, char openBracket) throws IOException {
+		beforeValue();
+		push(empty);
+		out.write(openBracket);
+		return this;
+	}
+
+	/**
+	 * Closes the current scope by appending any necessary whitespace and the
+	 * given bracket.
+	 */
+	private JsonWriter close(int empty, int nonempty, char closeBracket) throws IOException {
+		int context = peek();
+
+		if (context != nonempty && context != empty) {
+			throw new IllegalStateException("Nesting problem.");
+		}
+
+		if (deferredName != null) {
+			throw new IllegalStateException("Dangling name: " + deferredName);
+		}
+
+		stackSize--;
+
+		if (context == nonempty) {
+			newline();
+		}
+
+		out.write(closeBracket);
+		return this;
+	}
+
+	private void push(int newTop) {
+		if (stackSize == stack.length) {
+			stack = Arrays.copyOf(stack, stackSize * 2);
+		}
+
+		stack[stackSize++] = newTop;
+	}
+
+	/**
+	 * Returns the value on the top of the stack.
+	 */
+	private int peek() {
+		if (stackSize == 0) {
+			throw new IllegalStateException("JsonWriter is closed.");
+		}
+
+		return stack[stackSize - 1];
+	}
+
+	/**
+	 * Replace the value on the top of the stack with the given value.
+	 */
+	private void replaceTop(int topOfStack) {
+		stack[stackSize - 1] = topOfStack;
+	}
+
+	/**
+	 * Encodes the property name.
+	 *
+	 * @param name the name of the forthcoming value. May not be null.
+	 * @return this writer.
+	 */
+	public JsonWriter name(String name) throws IOException {
+		if (name == null) {
+			throw new NullPointerException("name == null");
+		}
+
+		if (deferredName != null) {
+			throw new IllegalStateException();
+		}
+
+		if (stackSize == 0) {
+			throw new IllegalStateException("JsonWriter is closed.");
+		}
+
+		deferredName = name;
+		return this;
+	}
+
+	private void writeDeferredName() throws IOException {
+		if (deferredName != null) {
+			beforeName();
+			string(deferredName);
+			deferredName = null;
+		}
+	}
+
+	/**
+	 * Encodes {@code value}.
+	 *
+	 * @param value the literal string value, or null to encode a null literal.
+	 * @return this writer.
+	 */
+	public JsonWriter value(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+
+		writeDeferredName();
+		beforeValue();
+		string(value);
+		return this;
+	}
+
+	/**
+	 * Encodes {@code null}.
+	 *
+	 * @return this writer.
+	 */
+	public JsonWriter nullValue() throws IOException {
+		writeDeferredName();
+		beforeValue();
+		out.write("null");
+		return this;
+	}
+
+	/**
+	 * Encodes {@code value}.
+	 *
+	 * @return this writer.
+	 */
+	public JsonWriter value(boolean value) throws IOException {
+		writeDeferredName();
+		beforeValue();
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Encodes {@code value}.
+	 *
+	 * @return this writer.
+	 */
+	public JsonWriter value(long value) throws IOException {
+		writeDeferredName();
+		beforeValue();
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	/**
+	 * Encodes {@code value}.
+	 *
+	 * @param value a finite value. May not be {@link Double#isNaN() NaNs} or
+	 *     {@link Double#isInfinite() infinities}.
+	 * @return this writer.
+	 */
+	public JsonWriter value(double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+		}
+
+		writeDeferredName();
+		beforeValue();
+		out.append(Double.toString(value));
+		return this;
+	}
+
+	/**
+	 * Ensures all buffered data is written to the underlying {@link Writer}
+	 * and flushes that writer.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (stackSize == 0) {
+			throw new IllegalStateException("JsonWriter is closed.");
+		}
+
+		out.flush();
+	}
+
+	/**
+	 * Flushes and closes this writer and the underlying {@link Writer}.
+	 *
+	 * @throws IOException if the JSON document is incomplete.
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+
+		int size = stackSize;
+
+		if (size > 1 || size == 1 && stack[size - 1] != NONEMPTY_DOCUMENT) {
+			throw new IOException("Incomplete document");
+		}
+
+		stackSize = 0;
+	}
+
+	private void string(String value) throws IOException {
+		out.write('\"');
+		int last = 0;
+		int length = value.length();
+
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			String replacement;
+
+			if (c < 128) {
+				replacement = REPLACEMENT_CHARS[c];
+
+				if (replacement == null) {
+					continue;
+				}
+			} else if (c == '\u2028') {
+				replacement = "\\u2028";
+			} else if (c == '\u2029') {
+				replacement = "\\u2029";
+			} else {
+				continue;
+			}
+
+			if (last < i) {
+				out.write(value, last, i - last);
+			}
+
+			out.write(replacement);
+			last = i + 1;
+		}
+
+		if (last < length) {
+			out.write(value, last, length - last);
+		}
+
+		out.write('\"');
+	}
+
+	private void newline() throws IOException {
+		if (indent == null) {
+			return;
+		}
+
+		out.write('\n');
+
+		for (int i = 1, size = stackSize; i < size; i++) {
+			out.write(indent);
+		}
+	}
+
+	/**
+	 * Inserts any necessary separators and whitespace before a name. Also
+	 * adjusts the stack to expect the name's value.
+	 */
+	private void beforeName() throws IOException {
+		int context = peek();
+
+		if (context == NONEMPTY_OBJECT) { // first in object
+			out.write(',');
+		} else if (context != EMPTY_OBJECT) { // not in an object!
+			throw new IllegalStateException("Nesting problem.");
+		}
+
+		newline();
+		replaceTop(DANGLING_NAME);
+	}
+
+	/**
+	 * Inserts any necessary separators and whitespace before a literal value,
+	 * inline array, or inline object. Also adjusts the stack to expect either a
+	 * closing bracket or another element.
+	 */
+	private void beforeValue() throws IOException {
+		switch (peek()) {
+		case NONEMPTY_DOCUMENT:
+			throw new IllegalStateException("JSON must have only one top-level value.");
+		case EMPTY_DOCUMENT: // first in document
+			replaceTop(NONEMPTY_DOCUMENT);
+			break;
+		case EMPTY_ARRAY: // first in array
+			replaceTop(NONEMPTY_ARRAY);
+			newline();
+			break;
+		case NONEMPTY_ARRAY: // another in array
+			out.append(',');
+			newline();
+			break;
+		case DANGLING_NAME: // value for name
+			out.append(separator);
+			replaceTop(NONEMPTY_OBJECT);
+			break;
+		default:
+			throw new IllegalStateException("Nesting problem.");
+		}
+	}
+}
@@ -28,4 +28,11 @@ public interface EntrypointMetadata extends net.fabricmc.loader.metadata.Entrypo
 	String getAdapter();
 	@Override
 	String getValue();
+
+	/**
+	 * Whether the entrypoint declared that it may be invoked concurrently with other thread safe entrypoints.
+	 */
+	default boolean isThreadSafe() {
+		return false;
+	}
 }
@@ -289,10 +289,12 @@ final class V1ModMetadata extends AbstractModMetadata implements LoaderModMetada
 	static final class EntrypointMetadataImpl implements EntrypointMetadata {
 		private final String adapter;
 		private final String value;
+		private final boolean threadSafe;
 
-		EntrypointMetadataImpl(String adapter, String value) {
+		EntrypointMetadataImpl(String adapter, String value, boolean threadSafe) {
 			this.adapter = adapter;
 			this.value = value;
+			this.threadSafe = threadSafe;
 		}
 
 		@Override
@@ -304,6 +306,11 @@ final class V1ModMetadata extends AbstractModMetadata implements LoaderModMetada
 		public String getValue() {
 			return this.value;
 		}
+
+		@Override
+		public boolean isThreadSafe() {
+			return this.threadSafe;
+		}
 	}
 
 	static final class JarEntry implements NestedJarEntry {
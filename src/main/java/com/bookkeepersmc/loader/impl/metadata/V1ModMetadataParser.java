@@ -288,6 +288,7 @@ final class V1ModMetadataParser {
 			while (reader.hasNext()) {
 				String adapter = "default";
 				String value = null;
+				boolean threadSafe = false;
 
 				// Entrypoints may be specified directly as a string or as an object to allow specification of the language adapter to use.
 				switch (reader.peek()) {
@@ -306,6 +307,13 @@ final class V1ModMetadataParser {
 						case "value":
 							value = reader.nextString();
 							break;
+						case "threadSafe":
+							if (reader.peek() != JsonToken.BOOLEAN) {
+								throw new ParseMetadataException("Entrypoint threadSafe must be a boolean", reader);
+							}
+
+							threadSafe = reader.nextBoolean();
+							break;
 						default:
 							warnings.add(new ParseWarning(reader.getLineNumber(), reader.getColumn(), entryKey, "Invalid entry in entrypoint metadata"));
 							reader.skipValue();
@@ -323,7 +331,7 @@ final class V1ModMetadataParser {
 					throw new ParseMetadataException.MissingField("Entrypoint value must be present");
 				}
 
-				metadata.add(new V1ModMetadata.EntrypointMetadataImpl(adapter, value));
+				metadata.add(new V1ModMetadata.EntrypointMetadataImpl(adapter, value, threadSafe));
 			}
 
 			reader.endArray();
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.transformer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.bookkeepersmc.loader.impl.ModContainerImpl;
+import com.bookkeepersmc.loader.impl.NotebookLoaderImpl;
+import com.bookkeepersmc.loader.impl.util.ExceptionUtil;
+import com.bookkeepersmc.loader.impl.util.HashUtil;
+import com.bookkeepersmc.loader.impl.util.log.Log;
+import com.bookkeepersmc.loader.impl.util.log.LogCategory;
+
+import net.fabricmc.accesswidener.AccessWidener;
+import net.fabricmc.accesswidener.AccessWidenerReader;
+import net.fabricmc.accesswidener.AccessWidenerVisitor;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Loads the access wideners of all mods, caching the merged result in a compact binary form.
+ *
+ * <p>The cache file is keyed by a fingerprint of the mods providing access wideners, their code source files and the
+ * target namespace. On a mismatch the access widener files are read and parsed in parallel, each into its own binary
+ * buffer, which are then concatenated in mod order.
+ */
+public final class AccessWidenerCache {
+	private static final int MAGIC = 0x4e424157; // NBAW
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte KIND_CLASS = 0;
+	private static final byte KIND_METHOD = 1;
+	private static final byte KIND_FIELD = 2;
+
+	private static final AccessWidenerReader.AccessType[] ACCESS_TYPES = AccessWidenerReader.AccessType.values();
+
+	private AccessWidenerCache() { }
+
+	/**
+	 * Load the access wideners of the supplied mods into {@code accessWidener}.
+	 *
+	 * @param cacheFile file to read and write the cached result, null to disable caching
+	 */
+	public static void load(List<ModContainerImpl> mods, String namespace, @Nullable Path cacheFile, AccessWidener accessWidener) {
+		List<ModContainerImpl> awMods = new ArrayList<>();
+
+		for (ModContainerImpl mod : mods) {
+			if (mod.getMetadata().getAccessWidener() != null) awMods.add(mod);
+		}
+
+		if (awMods.isEmpty()) return;
+
+		String fingerprint = cacheFile != null ? getFingerprint(awMods, namespace) : null;
+		byte[] data = fingerprint != null ? readCache(cacheFile, fingerprint) : null;
+
+		if (data == null) {
+			long time = System.currentTimeMillis();
+			data = parse(awMods, namespace);
+			Log.debug(LogCategory.GENERAL, "Parsing %d access wideners took %d ms", awMods.size(), System.currentTimeMillis() - time);
+
+			if (fingerprint != null) writeCache(cacheFile, fingerprint, data);
+		}
+
+		try {
+			replay(data, namespace, accessWidener);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // data is in memory at this point
+		}
+	}
+
+	private static byte[] parse(List<ModContainerImpl> mods, String namespace) {
+		ForkJoinPool pool = new ForkJoinPool();
+		List<Future<byte[]>> futures = new ArrayList<>(mods.size());
+
+		try {
+			for (ModContainerImpl mod : mods) {
+				futures.add(pool.submit(() -> parse(mod, namespace)));
+			}
+
+			ByteArrayOutputStream ret = new ByteArrayOutputStream();
+			RuntimeException exception = null;
+
+			for (Future<byte[]> future : futures) {
+				try {
+					byte[] data = future.get();
+					ret.write(data, 0, data.length);
+				} catch (Throwable t) {
+					exception = ExceptionUtil.gatherExceptions(t, exception, ExceptionUtil::wrap);
+				}
+			}
+
+			if (exception != null) throw exception;
+
+			return ret.toByteArray();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static byte[] parse(ModContainerImpl mod, String namespace) {
+		String accessWidener = mod.getMetadata().getAccessWidener();
+		Path path = mod.findPath(accessWidener).orElse(null);
+		if (path == null) throw new RuntimeException(String.format("Missing accessWidener file %s from mod %s", accessWidener, mod.getMetadata().getId()));
+
+		try {
+			Encoder encoder = new Encoder();
+			new AccessWidenerReader(encoder).read(Files.readAllBytes(path), namespace);
+
+			return encoder.toByteArray();
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to read accessWidener file from mod " + mod.getMetadata().getId(), e);
+		}
+	}
+
+	private static void replay(byte[] data, String namespace, AccessWidenerVisitor visitor) throws IOException {
+		DataInputStream is = new DataInputStream(new ByteArrayInputStream(data));
+		visitor.visitHeader(namespace);
+
+		while (is.available() > 0) {
+			byte kind = is.readByte();
+			AccessWidenerReader.AccessType access = ACCESS_TYPES[is.readByte()];
+			boolean transitive = is.readBoolean();
+			String owner = is.readUTF();
+
+			switch (kind) {
+			case KIND_CLASS:
+				visitor.visitClass(owner, access, transitive);
+				break;
+			case KIND_METHOD:
+				visitor.visitMethod(owner, is.readUTF(), is.readUTF(), access, transitive);
+				break;
+			case KIND_FIELD:
+				visitor.visitField(owner, is.readUTF(), is.readUTF(), access, transitive);
+				break;
+			default:
+				throw new IOException("invalid entry kind "+kind);
+			}
+		}
+	}
+
+	/**
+	 * Compute a fingerprint for the access widener providing mods without opening their jars.
+	 */
+	@Nullable
+	private static String getFingerprint(List<ModContainerImpl> mods, String namespace) {
+		MessageDigest digest = HashUtil.newDigest();
+		HashUtil.update(digest, Integer.toString(FORMAT_VERSION));
+		HashUtil.update(digest, NotebookLoaderImpl.VERSION);
+		HashUtil.update(digest, namespace);
+
+		try {
+			for (ModContainerImpl mod : mods) {
+				String accessWidener = mod.getMetadata().getAccessWidener();
+				HashUtil.update(digest, mod.getMetadata().getId());
+				HashUtil.update(digest, accessWidener);
+
+				for (Path path : mod.getCodeSourcePaths()) {
+					HashUtil.update(digest, path.toAbsolutePath().normalize().toString());
+
+					if (Files.isDirectory(path)) { // the directory itself doesn't change with its content, use the file
+						path = path.resolve(accessWidener);
+						if (!Files.exists(path)) continue;
+					}
+
+					BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+					HashUtil.update(digest, attrs.size()+"-"+attrs.lastModifiedTime().toMillis());
+				}
+			}
+		} catch (IOException e) {
+			Log.debug(LogCategory.GENERAL, "Can't determine access widener fingerprint", e);
+			return null;
+		}
+
+		return HashUtil.toHex(digest.digest());
+	}
+
+	@Nullable
+	private static byte[] readCache(Path file, String fingerprint) {
+		if (!Files.exists(file)) return null;
+
+		try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+			if (is.readInt() != MAGIC || is.readInt() != FORMAT_VERSION || !is.readUTF().equals(fingerprint)) {
+				return null;
+			}
+
+			byte[] ret = new byte[is.readInt()];
+			is.readFully(ret);
+			Log.debug(LogCategory.GENERAL, "Using cached access wideners %s", file);
+
+			return ret;
+		} catch (IOException e) {
+			Log.warn(LogCategory.GENERAL, "Error reading cached access wideners %s, ignoring", file, e);
+			return null;
+		}
+	}
+
+	private static void writeCache(Path file, String fingerprint, byte[] data) {
+		Path tmpFile = null;
+
+		try {
+			Files.createDirectories(file.getParent());
+			// unique name, concurrent launches sharing the game dir may write the cache at the same time
+			tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+			try (DataOutputStream os = new DataOutputStream(Files.newOutputStream(tmpFile))) {
+				os.writeInt(MAGIC);
+				os.writeInt(FORMAT_VERSION);
+				os.writeUTF(fingerprint);
+				os.writeInt(data.length);
+				os.write(data);
+			}
+
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.GENERAL, "Error writing cached access wideners %s", file, e);
+
+			if (tmpFile != null) {
+				try {
+					Files.deleteIfExists(tmpFile);
+				} catch (IOException e2) {
+					e.addSuppressed(e2);
+				}
+			}
+		}
+	}
+
+	private static final class Encoder implements AccessWidenerVisitor {
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private final DataOutputStream os = new DataOutputStream(buffer);
+
+		@Override
+		public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+			try {
+				writeEntry(KIND_CLASS, access, transitive, name);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+			try {
+				writeEntry(KIND_METHOD, access, transitive, owner);
+				os.writeUTF(name);
+				os.writeUTF(descriptor);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+			try {
+				writeEntry(KIND_FIELD, access, transitive, owner);
+				os.writeUTF(name);
+				os.writeUTF(descriptor);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void writeEntry(byte kind, AccessWidenerReader.AccessType access, boolean transitive, String owner) throws IOException {
+			os.writeByte(kind);
+			os.writeByte(access.ordinal());
+			os.writeBoolean(transitive);
+			os.writeUTF(owner);
+		}
+
+		byte[] toByteArray() {
+			return buffer.toByteArray();
+		}
+	}
+}
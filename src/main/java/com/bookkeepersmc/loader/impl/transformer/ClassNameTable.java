@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.transformer;
+
+import java.util.Collection;
+
+import com.bookkeepersmc.loader.impl.util.StringIndexTable;
+
+/**
+ * Immutable set of class names, used for checking every loaded class against the access widener targets.
+ *
+ * <p>Backed by a {@link StringIndexTable}, so lookups don't allocate and most misses don't touch any string.
+ */
+public final class ClassNameTable {
+	public static final ClassNameTable EMPTY = new ClassNameTable(StringIndexTable.EMPTY);
+
+	private final StringIndexTable table;
+
+	private ClassNameTable(StringIndexTable table) {
+		this.table = table;
+	}
+
+	public static ClassNameTable of(Collection<String> names) {
+		if (names.isEmpty()) return EMPTY;
+
+		return new ClassNameTable(StringIndexTable.of(names));
+	}
+
+	public boolean contains(String name) {
+		return table.containsKey(name);
+	}
+}
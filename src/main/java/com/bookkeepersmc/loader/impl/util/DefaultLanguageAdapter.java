@@ -22,23 +22,48 @@
  */
 package com.bookkeepersmc.loader.impl.util;
 
+import java.lang.invoke.LambdaMetafactory;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandleProxies;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import com.bookkeepersmc.loader.api.LanguageAdapter;
 import com.bookkeepersmc.loader.api.LanguageAdapterException;
 import com.bookkeepersmc.loader.api.ModContainer;
 import com.bookkeepersmc.loader.impl.launch.NotebookLauncherBase;
+import com.bookkeepersmc.loader.impl.util.log.Log;
+import com.bookkeepersmc.loader.impl.util.log.LogCategory;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 public final class DefaultLanguageAdapter implements LanguageAdapter {
 	public static final DefaultLanguageAdapter INSTANCE = new DefaultLanguageAdapter();
 
+	private static final ClassValue<ClassInfo> CLASS_INFO = new ClassValue<ClassInfo>() {
+		@Override
+		protected ClassInfo computeValue(Class<?> type) {
+			return new ClassInfo(type);
+		}
+	};
+	private static final int LOOKUP_MODULE = 0x10; // MethodHandles.Lookup.MODULE, Java 9+
+	private static final String LOOKUP_HELPER_SUFFIX = "$$NotebookLookup";
+	private static final String LOOKUP_HELPER_METHOD = "lookup";
+	private static final PrivateLookupFactory PRIVATE_LOOKUP_FACTORY = createPrivateLookupFactory();
+
 	private DefaultLanguageAdapter() { }
 
 	@SuppressWarnings("unchecked")
@@ -69,15 +94,7 @@ public final class DefaultLanguageAdapter implements LanguageAdapter {
 				throw new LanguageAdapterException("Class " + c.getName() + " cannot be cast to " + type.getName() + "!");
 			}
 		} else /* length == 2 */ {
-			List<Method> methodList = new ArrayList<>();
-
-			for (Method m : c.getDeclaredMethods()) {
-				if (!(m.getName().equals(methodSplit[1]))) {
-					continue;
-				}
-
-				methodList.add(m);
-			}
+			List<Method> methodList = CLASS_INFO.get(c).getDeclaredMethods(methodSplit[1]);
 
 			try {
 				Field field = c.getDeclaredField(methodSplit[1]);
@@ -123,6 +140,9 @@ public final class DefaultLanguageAdapter implements LanguageAdapter {
 				}
 			}
 
+			T ret = createLambda(c, targetMethod, object, type);
+			if (ret != null) return ret;
+
 			MethodHandle handle;
 
 			try {
@@ -144,4 +164,188 @@ public final class DefaultLanguageAdapter implements LanguageAdapter {
 			}
 		}
 	}
+
+	/**
+	 * Bind a method reference entrypoint through {@link LambdaMetafactory}, yielding a regular lambda class instead of
+	 * the slow proxy from {@link MethodHandleProxies}.
+	 *
+	 * @return the entrypoint instance or null if the method can't be bound this way
+	 */
+	private static <T> T createLambda(Class<?> owner, Method target, Object receiver, Class<T> type) {
+		Method interfaceMethod = CLASS_INFO.get(type).getFunctionalMethod();
+		if (interfaceMethod == null || PRIVATE_LOOKUP_FACTORY == null) return null;
+
+		Class<?>[] interfaceParams = interfaceMethod.getParameterTypes();
+		Class<?>[] targetParams = target.getParameterTypes();
+		if (interfaceParams.length != targetParams.length) return null;
+
+		// narrow erased generic parameters to what the target accepts, the lambda casts them like javac's would
+		Class<?>[] instantiatedParams = interfaceParams.clone();
+
+		for (int i = 0; i < instantiatedParams.length; i++) {
+			if (!interfaceParams[i].isPrimitive() && interfaceParams[i].isAssignableFrom(targetParams[i])) {
+				instantiatedParams[i] = targetParams[i];
+			}
+		}
+
+		try {
+			MethodHandles.Lookup lookup = CLASS_INFO.get(owner).getPrivateLookup();
+			MethodHandle implementation = lookup.unreflect(target);
+			MethodType factoryType = receiver == null ? MethodType.methodType(type) : MethodType.methodType(type, owner);
+			MethodType interfaceType = MethodType.methodType(interfaceMethod.getReturnType(), interfaceParams);
+			MethodType instantiatedType = MethodType.methodType(interfaceMethod.getReturnType(), instantiatedParams);
+
+			MethodHandle factory = LambdaMetafactory.metafactory(lookup, interfaceMethod.getName(), factoryType, interfaceType, implementation, instantiatedType).getTarget();
+
+			return type.cast(receiver == null ? factory.invoke() : factory.invoke(receiver));
+		} catch (Throwable t) {
+			Log.debug(LogCategory.ENTRYPOINT, "Can't bind %s#%s as lambda, using proxy", owner.getName(), target.getName(), t);
+			return null;
+		}
+	}
+
+	private static PrivateLookupFactory createPrivateLookupFactory() {
+		try { // Java 9+
+			MethodHandle privateLookupIn = MethodHandles.lookup().findStatic(MethodHandles.class, "privateLookupIn",
+					MethodType.methodType(MethodHandles.Lookup.class, Class.class, MethodHandles.Lookup.class));
+			MethodHandle defineClass = MethodHandles.lookup().findVirtual(MethodHandles.Lookup.class, "defineClass",
+					MethodType.methodType(Class.class, byte[].class));
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+			return cls -> {
+				MethodHandles.Lookup ret = (MethodHandles.Lookup) privateLookupIn.invokeExact(cls, lookup);
+				if ((ret.lookupModes() & LOOKUP_MODULE) != 0) return ret;
+
+				// A lookup from a foreign module lacks MODULE access, which LambdaMetafactory requires since Java 16. The
+				// package access it has is enough to define a helper next to the class that looks up from the inside.
+				Class<?> helper = defineLookupHelper(cls, ret, defineClass);
+
+				return (MethodHandles.Lookup) helper.getMethod(LOOKUP_HELPER_METHOD, Class.class).invoke(null, cls);
+			};
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			// Java 8, use the full privilege constructor
+		}
+
+		try {
+			Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class);
+			constructor.setAccessible(true);
+
+			return constructor::newInstance;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			Log.debug(LogCategory.ENTRYPOINT, "Private lookups unavailable, method reference entrypoints will use proxies", e);
+			return null;
+		}
+	}
+
+	private static Class<?> defineLookupHelper(Class<?> cls, MethodHandles.Lookup packageLookup, MethodHandle defineClass) throws Throwable {
+		String name = cls.getName() + LOOKUP_HELPER_SUFFIX;
+
+		try {
+			return (Class<?>) defineClass.invokeExact(packageLookup, createLookupHelper(name.replace('.', '/')));
+		} catch (LinkageError e) { // defined concurrently or by an earlier adapter
+			return Class.forName(name, false, cls.getClassLoader());
+		}
+	}
+
+	/**
+	 * Create a class equivalent to {@code static Lookup lookup(Class<?> c) { return privateLookupIn(c, lookup()); }}.
+	 */
+	private static byte[] createLookupHelper(String internalName) {
+		String lookupDesc = Type.getDescriptor(MethodHandles.Lookup.class);
+		String handlesName = Type.getInternalName(MethodHandles.class);
+
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V9, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, internalName, null, "java/lang/Object", null);
+
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, LOOKUP_HELPER_METHOD, "(Ljava/lang/Class;)" + lookupDesc, null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESTATIC, handlesName, "lookup", "()" + lookupDesc, false);
+		method.visitMethodInsn(Opcodes.INVOKESTATIC, handlesName, "privateLookupIn", "(Ljava/lang/Class;" + lookupDesc + ")" + lookupDesc, false);
+		method.visitInsn(Opcodes.ARETURN);
+		method.visitMaxs(2, 1);
+		method.visitEnd();
+
+		writer.visitEnd();
+
+		return writer.toByteArray();
+	}
+
+	private interface PrivateLookupFactory {
+		MethodHandles.Lookup in(Class<?> cls) throws Throwable;
+	}
+
+	/**
+	 * Reflective data computed once per class.
+	 */
+	private static final class ClassInfo {
+		private final Class<?> cls;
+		private volatile Map<String, List<Method>> declaredMethods;
+		private volatile Optional<Method> functionalMethod;
+		private volatile MethodHandles.Lookup privateLookup;
+
+		ClassInfo(Class<?> cls) {
+			this.cls = cls;
+		}
+
+		List<Method> getDeclaredMethods(String name) {
+			Map<String, List<Method>> methods = declaredMethods;
+
+			if (methods == null) {
+				methods = new HashMap<>();
+
+				for (Method m : cls.getDeclaredMethods()) {
+					methods.computeIfAbsent(m.getName(), ignore -> new ArrayList<>(1)).add(m);
+				}
+
+				declaredMethods = methods;
+			}
+
+			return methods.getOrDefault(name, Collections.emptyList());
+		}
+
+		MethodHandles.Lookup getPrivateLookup() throws Throwable {
+			MethodHandles.Lookup ret = privateLookup;
+			if (ret == null) privateLookup = ret = PRIVATE_LOOKUP_FACTORY.in(cls);
+
+			return ret;
+		}
+
+		/**
+		 * Get the single abstract method if the class is a functional interface.
+		 */
+		Method getFunctionalMethod() {
+			Optional<Method> ret = functionalMethod;
+
+			if (ret == null) {
+				Method found = null;
+
+				if (cls.isInterface()) {
+					for (Method m : cls.getMethods()) {
+						if (!Modifier.isAbstract(m.getModifiers()) || isObjectMethod(m)) continue;
+
+						if (found != null) {
+							found = null;
+							break;
+						}
+
+						found = m;
+					}
+				}
+
+				functionalMethod = ret = Optional.ofNullable(found);
+			}
+
+			return ret.orElse(null);
+		}
+
+		private static boolean isObjectMethod(Method m) {
+			try {
+				Object.class.getMethod(m.getName(), m.getParameterTypes());
+				return true;
+			} catch (NoSuchMethodException e) {
+				return false;
+			}
+		}
+	}
 }
@@ -29,19 +29,40 @@ import java.nio.file.FileSystem;
 import java.nio.file.FileSystemAlreadyExistsException;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.ZipError;
 
+import com.bookkeepersmc.loader.impl.util.log.Log;
+import com.bookkeepersmc.loader.impl.util.log.LogCategory;
+
 public final class FileSystemUtil {
 	public static class FileSystemDelegate implements AutoCloseable {
 		private final FileSystem fileSystem;
 		private final boolean owner;
+		private final PooledFileSystem pooled;
+		private final AtomicBoolean closed = new AtomicBoolean();
 
 		public FileSystemDelegate(FileSystem fileSystem, boolean owner) {
 			this.fileSystem = fileSystem;
 			this.owner = owner;
+			this.pooled = null;
+		}
+
+		private FileSystemDelegate(PooledFileSystem pooled) {
+			this.fileSystem = pooled.fileSystem;
+			this.owner = false;
+			this.pooled = pooled;
 		}
 
 		public FileSystem get() {
@@ -50,22 +71,132 @@ public final class FileSystemUtil {
 
 		@Override
 		public void close() throws IOException {
-			if (owner) {
+			if (pooled != null) {
+				if (closed.compareAndSet(false, true)) release(pooled);
+			} else if (owner) {
 				fileSystem.close();
 			}
 		}
 	}
 
+	/**
+	 * Jar file system shared by all delegates for the same jar, closed once the last delegate is closed.
+	 *
+	 * <p>The holder is installed in the pool before the jar is opened, so opening and closing happen outside of the
+	 * pool's map lock. Other callers for the same jar wait on {@link #opened} or {@link #closed} instead.
+	 */
+	private static final class PooledFileSystem {
+		final Path key;
+		final CompletableFuture<Void> opened = new CompletableFuture<>();
+		final CompletableFuture<Void> closed = new CompletableFuture<>();
+		// written before opened completes
+		FileSystem fileSystem;
+		boolean owned; // opened by the pool as opposed to found already open
+		long size;
+		// guarded by the pool's map entry
+		int refCount;
+		boolean closing;
+
+		PooledFileSystem(Path key) {
+			this.key = key;
+		}
+
+		boolean isDefunct() {
+			if (!opened.isDone()) return false;
+
+			return opened.isCompletedExceptionally() || !fileSystem.isOpen(); // failed or closed behind our back
+		}
+	}
+
 	private FileSystemUtil() { }
 
 	private static final Map<String, String> jfsArgsCreate = Collections.singletonMap("create", "true");
 	private static final Map<String, String> jfsArgsEmpty = Collections.emptyMap();
 
+	private static final Map<Path, PooledFileSystem> jarFileSystems = new ConcurrentHashMap<>();
+	private static final AtomicInteger openJarFileSystems = new AtomicInteger();
+	private static final AtomicLong openJarFileSystemBytes = new AtomicLong();
+
+	/**
+	 * Obtain a file system for the contents of a jar, sharing one per jar between all callers.
+	 *
+	 * <p>The returned delegate holds a reference on the file system, closing the delegate releases it. The file system
+	 * is closed with the last reference unless it had been opened outside of this class.
+	 */
 	public static FileSystemDelegate getJarFileSystem(Path path, boolean create) throws IOException {
-		return getJarFileSystem(path.toUri(), create);
+		Path key = path.toAbsolutePath().normalize();
+
+		for (;;) {
+			PooledFileSystem[] created = new PooledFileSystem[1];
+			boolean[] closing = new boolean[1];
+
+			PooledFileSystem ret = jarFileSystems.compute(key, (k, pooled) -> {
+				if (pooled != null && pooled.closing) {
+					closing[0] = true;
+					return pooled;
+				}
+
+				if (pooled != null && pooled.isDefunct()) {
+					if (pooled.owned) onClosed(pooled);
+					pooled = null;
+				}
+
+				if (pooled == null) {
+					pooled = new PooledFileSystem(k);
+					created[0] = pooled;
+				}
+
+				pooled.refCount++;
+
+				return pooled;
+			});
+
+			if (closing[0]) { // the last reference was just released, reopen once the file system is closed
+				ret.closed.join();
+				continue;
+			}
+
+			if (ret == created[0]) {
+				boolean success = false;
+
+				try {
+					open(ret, create);
+					success = true;
+				} finally {
+					if (!success) {
+						jarFileSystems.remove(key, ret);
+						ret.opened.completeExceptionally(new IOException("Error accessing "+key));
+					}
+				}
+
+				ret.opened.complete(null);
+			} else {
+				try {
+					ret.opened.join();
+				} catch (CompletionException e) {
+					continue; // the opening caller reports its failure, try again with our own arguments
+				}
+			}
+
+			return new FileSystemDelegate(ret);
+		}
 	}
 
 	public static FileSystemDelegate getJarFileSystem(URI uri, boolean create) throws IOException {
+		Path path;
+
+		try {
+			path = Paths.get(uri);
+		} catch (IllegalArgumentException | FileSystemNotFoundException e) {
+			throw new IOException("Error accessing "+uri+": "+e, e);
+		}
+
+		return getJarFileSystem(path, create);
+	}
+
+	private static void open(PooledFileSystem pooled, boolean create) throws IOException {
+		Path path = pooled.key;
+		URI uri = path.toUri();
 		URI jarUri;
 
 		try {
@@ -75,21 +206,93 @@ public final class FileSystemUtil {
 		}
 
 		boolean opened = false;
-		FileSystem ret = null;
+		FileSystem fs;
 
 		try {
-			ret = FileSystems.getFileSystem(jarUri);
-		} catch (FileSystemNotFoundException ignore) {
+			fs = FileSystems.newFileSystem(jarUri, create ? jfsArgsCreate : jfsArgsEmpty);
+			opened = true;
+		} catch (FileSystemAlreadyExistsException ignore) {
+			fs = FileSystems.getFileSystem(jarUri);
+		} catch (IOException | ZipError e) {
+			throw new IOException("Error accessing "+uri+": "+e, e);
+		}
+
+		long size = 0;
+
+		if (opened) {
 			try {
-				ret = FileSystems.newFileSystem(jarUri, create ? jfsArgsCreate : jfsArgsEmpty);
-				opened = true;
-			} catch (FileSystemAlreadyExistsException ignore2) {
-				ret = FileSystems.getFileSystem(jarUri);
-			} catch (IOException | ZipError e) {
-				throw new IOException("Error accessing "+uri+": "+e, e);
+				size = Files.size(path);
+			} catch (IOException e) {
+				// freshly created jar
 			}
+
+			int count = openJarFileSystems.incrementAndGet();
+			long bytes = openJarFileSystemBytes.addAndGet(size);
+			Log.debug(LogCategory.GENERAL, "Opened jar file system for %s (%d open, %d bytes)", path, count, bytes);
 		}
 
-		return new FileSystemDelegate(ret, opened);
+		pooled.fileSystem = fs;
+		pooled.owned = opened;
+		pooled.size = size;
+	}
+
+	private static void release(PooledFileSystem pooled) throws IOException {
+		boolean[] close = new boolean[1];
+
+		jarFileSystems.computeIfPresent(pooled.key, (k, cur) -> {
+			if (cur != pooled) return cur; // replaced after being closed externally, nothing left to release
+			if (--pooled.refCount > 0) return pooled;
+			if (!pooled.owned) return null;
+
+			// keep the entry until the file system is closed, reopening the jar earlier would find the closing one
+			pooled.closing = true;
+			close[0] = true;
+
+			return pooled;
+		});
+
+		if (!close[0]) return;
+
+		try {
+			pooled.fileSystem.close();
+		} finally {
+			onClosed(pooled);
+			jarFileSystems.remove(pooled.key, pooled);
+			pooled.closed.complete(null);
+		}
+	}
+
+	private static void onClosed(PooledFileSystem pooled) {
+		int count = openJarFileSystems.decrementAndGet();
+		long bytes = openJarFileSystemBytes.addAndGet(-pooled.size);
+		Log.debug(LogCategory.GENERAL, "Closed jar file system for %s (%d open, %d bytes)", pooled.key, count, bytes);
+	}
+
+	/**
+	 * Apply POSIX permissions to a file, e.g. {@code rw-r--r--} for a cache file shared between accounts.
+	 *
+	 * @return whether the permissions were applied, false for non-POSIX file systems or files owned by another account
+	 */
+	public static boolean trySetPosixPermissions(Path file, String permissions) {
+		try {
+			Files.setPosixFilePermissions(file, PosixFilePermissions.fromString(permissions));
+			return true;
+		} catch (UnsupportedOperationException | IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Get the number of jar file systems currently opened by {@link #getJarFileSystem}.
+	 */
+	public static int getOpenJarFileSystemCount() {
+		return openJarFileSystems.get();
+	}
+
+	/**
+	 * Get the combined size of the jars backing the file systems counted by {@link #getOpenJarFileSystemCount}.
+	 */
+	public static long getOpenJarFileSystemBytes() {
+		return openJarFileSystemBytes.get();
 	}
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers for content keyed caches.
+ */
+public final class HashUtil {
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private HashUtil() { }
+
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e); // guaranteed to exist
+		}
+	}
+
+	public static void update(MessageDigest digest, String str) {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array()); // length prefix to avoid ambiguous concatenation
+		digest.update(bytes);
+	}
+
+	public static void update(MessageDigest digest, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+	}
+
+	public static void update(MessageDigest digest, InputStream is) throws IOException {
+		byte[] buffer = new byte[1 << 14];
+		int len;
+
+		while ((len = is.read(buffer)) >= 0) {
+			digest.update(buffer, 0, len);
+		}
+	}
+
+	public static String hash(Path file) throws IOException {
+		MessageDigest digest = newDigest();
+		update(digest, file);
+
+		return toHex(digest.digest());
+	}
+
+	public static String toHex(byte[] bytes) {
+		char[] ret = new char[bytes.length * 2];
+
+		for (int i = 0; i < bytes.length; i++) {
+			ret[i * 2] = HEX_DIGITS[(bytes[i] >>> 4) & 0xf];
+			ret[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+
+		return new String(ret);
+	}
+}
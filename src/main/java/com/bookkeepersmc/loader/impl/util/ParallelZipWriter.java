@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Zip writer accepting entries from multiple threads concurrently.
+ *
+ * <p>Entries are compressed on the calling thread with a pooled {@link Deflater}, so callers running on a thread pool
+ * compress in parallel. Only appending the finished entry to the file is serialized. Entries are written in the order
+ * they complete, duplicate names are ignored. Zip64 records are written once the entry count or the file size exceed the
+ * plain zip limits.
+ */
+public final class ParallelZipWriter implements Closeable {
+	private static final int LOCAL_HEADER_SIG = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+	private static final int END_SIG = 0x06054b50;
+	private static final int ZIP64_END_SIG = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	private static final int FLAG_UTF8 = 0x800;
+	private static final int DOS_TIME = 0;
+	private static final int DOS_DATE = (1 << 5) | 1; // 1980-01-01, fixed for reproducible output
+	private static final long ZIP64_MAGIC_OFFSET = 0xffffffffL;
+	private static final int ZIP64_MAGIC_COUNT = 0xffff;
+
+	private final OutputStream out;
+	private final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+	private final Set<String> names = new HashSet<>();
+	private final List<Entry> entries = new ArrayList<>();
+	private long offset;
+	private int classCount;
+	private boolean closed;
+
+	public ParallelZipWriter(Path file) throws IOException {
+		this.out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+	}
+
+	/**
+	 * Add an entry, may be called concurrently.
+	 *
+	 * @param name entry name, ending with '/' for directories
+	 * @return false if an entry with the same name already exists
+	 */
+	public boolean add(String name, byte[] data) throws IOException {
+		return add(name, data, 0, data.length);
+	}
+
+	public boolean add(String name, byte[] data, int off, int len) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(data, off, len);
+
+		byte[] compressed = null;
+		int compressedLen = 0;
+
+		if (len > 0) {
+			Deflater deflater = deflaters.poll();
+			if (deflater == null) deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+			try {
+				deflater.setInput(data, off, len);
+				deflater.finish();
+				compressed = new byte[len + len / 1000 + 64];
+
+				while (!deflater.finished() && compressedLen < compressed.length) {
+					compressedLen += deflater.deflate(compressed, compressedLen, compressed.length - compressedLen);
+				}
+
+				if (!deflater.finished() || compressedLen >= len) { // incompressible, store instead
+					compressed = null;
+				}
+			} finally {
+				deflater.reset();
+
+				synchronized (this) {
+					if (!closed) {
+						deflaters.add(deflater);
+						deflater = null;
+					}
+				}
+
+				if (deflater != null) deflater.end(); // close already drained the pool
+			}
+		}
+
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		Entry entry = new Entry(nameBytes,
+				compressed != null ? 8 : 0,
+				(int) crc.getValue(),
+				compressed != null ? compressedLen : len,
+				len);
+
+		synchronized (this) {
+			if (closed) throw new IOException("writer closed");
+			if (!names.add(name)) return false;
+
+			entry.offset = offset;
+			writeLocalHeader(entry);
+
+			if (compressed != null) {
+				out.write(compressed, 0, compressedLen);
+			} else {
+				out.write(data, off, len);
+			}
+
+			offset += entry.compressedSize;
+
+			entries.add(entry);
+			if (name.endsWith(".class")) classCount++;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the number of class file entries written so far
+	 */
+	public synchronized int getClassCount() {
+		return classCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+		}
+
+		Deflater deflater;
+
+		while ((deflater = deflaters.poll()) != null) {
+			deflater.end();
+		}
+
+		try (OutputStream out = this.out) {
+			long start = offset;
+
+			for (Entry entry : entries) {
+				writeCentralHeader(entry);
+			}
+
+			long size = offset - start;
+			boolean zip64 = entries.size() >= ZIP64_MAGIC_COUNT || start >= ZIP64_MAGIC_OFFSET || size >= ZIP64_MAGIC_OFFSET;
+			ByteArrayOutputStream end = new ByteArrayOutputStream(98);
+
+			if (zip64) {
+				long zip64EndOffset = offset;
+
+				writeInt(end, ZIP64_END_SIG);
+				writeLong(end, 44); // record size excluding signature and this field
+				writeShort(end, 45); // version made by
+				writeShort(end, 45); // version needed
+				writeInt(end, 0); // disk
+				writeInt(end, 0); // central directory disk
+				writeLong(end, entries.size());
+				writeLong(end, entries.size());
+				writeLong(end, size);
+				writeLong(end, start);
+
+				writeInt(end, ZIP64_LOCATOR_SIG);
+				writeInt(end, 0); // zip64 end record disk
+				writeLong(end, zip64EndOffset);
+				writeInt(end, 1); // disk count
+			}
+
+			writeInt(end, END_SIG);
+			writeShort(end, 0); // disk
+			writeShort(end, 0); // central directory disk
+			writeShort(end, Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+			writeShort(end, Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+			writeInt(end, (int) Math.min(size, ZIP64_MAGIC_OFFSET));
+			writeInt(end, (int) Math.min(start, ZIP64_MAGIC_OFFSET));
+			writeShort(end, 0); // comment length
+			end.writeTo(out);
+		}
+	}
+
+	private void writeLocalHeader(Entry entry) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream(30 + entry.name.length);
+		writeInt(header, LOCAL_HEADER_SIG);
+		writeShort(header, entry.method == 8 ? 20 : 10); // version needed
+		writeShort(header, FLAG_UTF8);
+		writeShort(header, entry.method);
+		writeShort(header, DOS_TIME);
+		writeShort(header, DOS_DATE);
+		writeInt(header, entry.crc);
+		writeInt(header, entry.compressedSize);
+		writeInt(header, entry.size);
+		writeShort(header, entry.name.length);
+		writeShort(header, 0); // extra length
+		header.write(entry.name);
+		header.writeTo(out);
+		offset += header.size();
+	}
+
+	private void writeCentralHeader(Entry entry) throws IOException {
+		// entries are buffered in memory, so only the offset can exceed the plain zip limits
+		boolean zip64 = entry.offset >= ZIP64_MAGIC_OFFSET;
+		ByteArrayOutputStream header = new ByteArrayOutputStream(46 + entry.name.length + (zip64 ? 12 : 0));
+		writeInt(header, CENTRAL_HEADER_SIG);
+		writeShort(header, zip64 ? 45 : 20); // version made by
+		writeShort(header, zip64 ? 45 : entry.method == 8 ? 20 : 10); // version needed
+		writeShort(header, FLAG_UTF8);
+		writeShort(header, entry.method);
+		writeShort(header, DOS_TIME);
+		writeShort(header, DOS_DATE);
+		writeInt(header, entry.crc);
+		writeInt(header, entry.compressedSize);
+		writeInt(header, entry.size);
+		writeShort(header, entry.name.length);
+		writeShort(header, zip64 ? 12 : 0); // extra length
+		writeShort(header, 0); // comment length
+		writeShort(header, 0); // disk
+		writeShort(header, 0); // internal attributes
+		writeInt(header, 0); // external attributes
+		writeInt(header, (int) Math.min(entry.offset, ZIP64_MAGIC_OFFSET));
+		header.write(entry.name);
+
+		if (zip64) {
+			writeShort(header, ZIP64_EXTRA_ID);
+			writeShort(header, 8);
+			writeLong(header, entry.offset);
+		}
+		header.writeTo(out);
+		offset += header.size();
+	}
+
+	private static void writeShort(ByteArrayOutputStream out, int value) {
+		out.write(value);
+		out.write(value >>> 8);
+	}
+
+	private static void writeInt(ByteArrayOutputStream out, int value) {
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+
+	private static void writeLong(ByteArrayOutputStream out, long value) {
+		writeInt(out, (int) value);
+		writeInt(out, (int) (value >>> 32));
+	}
+
+	private static final class Entry {
+		final byte[] name;
+		final int method;
+		final int crc;
+		final int compressedSize;
+		final int size;
+		long offset;
+
+		Entry(byte[] name, int method, int crc, int compressedSize, int size) {
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+		}
+	}
+}
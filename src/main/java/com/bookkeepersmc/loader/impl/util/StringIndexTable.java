@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Immutable map from strings to non-negative ints compiled into an open addressing table.
+ *
+ * <p>Lookups only use the key's cached {@link String#hashCode()} and a final equality check, so they don't allocate.
+ * The table is at most half full, most misses terminate on the first probe without touching any string.
+ */
+public final class StringIndexTable {
+	public static final StringIndexTable EMPTY = new StringIndexTable(0);
+
+	private final String[] keys;
+	private final int[] hashes;
+	private final int[] values;
+	private final int mask;
+
+	private StringIndexTable(int size) {
+		int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+
+		this.keys = new String[capacity];
+		this.hashes = new int[capacity];
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Create a table mapping each distinct key to its position in iteration order.
+	 */
+	public static StringIndexTable of(Collection<String> keys) {
+		if (keys.isEmpty()) return EMPTY;
+
+		StringIndexTable ret = new StringIndexTable(keys.size());
+		int value = 0;
+
+		for (String key : keys) {
+			if (ret.put(key, value)) value++;
+		}
+
+		return ret;
+	}
+
+	public static StringIndexTable of(Map<String, Integer> entries) {
+		if (entries.isEmpty()) return EMPTY;
+
+		StringIndexTable ret = new StringIndexTable(entries.size());
+
+		for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+			int value = entry.getValue();
+			if (value < 0) throw new IllegalArgumentException("negative value for "+entry.getKey());
+
+			ret.put(entry.getKey(), value);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Only used while creating the table.
+	 *
+	 * @return whether the key was new, existing keys keep their value
+	 */
+	private boolean put(String key, int value) {
+		int hash = key.hashCode();
+		int idx = mix(hash) & mask;
+		String entry;
+
+		while ((entry = keys[idx]) != null) {
+			if (hashes[idx] == hash && entry.equals(key)) return false;
+			idx = (idx + 1) & mask;
+		}
+
+		keys[idx] = key;
+		hashes[idx] = hash;
+		values[idx] = value;
+
+		return true;
+	}
+
+	/**
+	 * @return the value for the key or -1 if absent
+	 */
+	public int get(String key) {
+		int hash = key.hashCode();
+		int idx = mix(hash) & mask;
+		String entry;
+
+		while ((entry = keys[idx]) != null) {
+			if (hashes[idx] == hash && entry.equals(key)) return values[idx];
+			idx = (idx + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	public boolean containsKey(String key) {
+		return get(key) >= 0;
+	}
+
+	private static int mix(int hash) {
+		hash *= 0x9e3779b9;
+
+		return hash ^ (hash >>> 16);
+	}
+}
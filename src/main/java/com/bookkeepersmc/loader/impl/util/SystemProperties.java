@@ -46,6 +46,10 @@ public final class SystemProperties {
 	public static final String DISABLE_MOD_IDS = "notebook.debug.disableModIds";
 	// file containing the class path for in-dev runtime mod remapping
 	public static final String REMAP_CLASSPATH_FILE = "notebook.remapClasspathFile";
+	// invoke entrypoints declared as thread safe concurrently, ordered after the entrypoints of the mods they depend on
+	public static final String PARALLEL_ENTRYPOINTS = "notebook.parallelEntrypoints";
+	// directory for caches that may be shared by multiple game directories on one host, e.g. remapped game jars and mapping images (defaults to .notebook in the game dir)
+	public static final String SHARED_CACHE_DIR = "notebook.sharedCacheDir";
 	// class path groups to map multiple class path entries to a mod (paths separated by path separator, groups by double path separator)
 	public static final String PATH_GROUPS = "notebook.classPathGroups";
 	// system level libraries, matching code sources will not be assumed to be part of the game or mods and remain on the system class path (paths separated by path separator)
@@ -60,16 +64,28 @@ public final class SystemProperties {
 	public static final String DEBUG_LOG_CLASS_LOAD_ERRORS = "notebook.debug.logClassLoadErrors";
 	// logs class transformation errors to uncover caught exceptions without adequate logging
 	public static final String DEBUG_LOG_TRANSFORM_ERRORS = "notebook.debug.logTransformErrors";
+	// measure entrypoint creation and invocation, logging the slowest mods per stage and writing .notebook/entrypointProfile.json
+	public static final String DEBUG_PROFILE_ENTRYPOINTS = "notebook.debug.profileEntrypoints";
 	// disables system class path isolation, allowing bogus lib accesses (too early, transient jars)
 	public static final String DEBUG_DISABLE_CLASS_PATH_ISOLATION = "notebook.debug.disableClassPathIsolation";
 	// disables mod load order shuffling to be the same in-dev as in production
 	public static final String DEBUG_DISABLE_MOD_SHUFFLE = "notebook.debug.disableModShuffle";
+	// disable loading entrypoint classes in the background ahead of their use
+	public static final String DEBUG_DISABLE_ENTRYPOINT_WARMUP = "notebook.debug.disableEntrypointWarmup";
+	// resolve ModContainer.findPath for jar mods against the file system instead of the entry index snapshot
+	public static final String DEBUG_DISABLE_MOD_ENTRY_INDEX = "notebook.debug.disableModEntryIndex";
 	// workaround for bad load order dependencies
 	public static final String DEBUG_LOAD_LATE = "notebook.debug.loadLate";
 	// override the mod discovery timeout, unit in seconds, <= 0 to disable
 	public static final String DEBUG_DISCOVERY_TIMEOUT = "notebook.debug.discoveryTimeout";
 	// override the mod resolution timeout, unit in seconds, <= 0 to disable
 	public static final String DEBUG_RESOLUTION_TIMEOUT = "notebook.debug.resolutionTimeout";
+	// limit the number of dependency issues listed in resolution errors/warnings (default 100), <= 0 to disable
+	public static final String DEBUG_RESOLUTION_MAX_DETAILS = "notebook.debug.resolutionMaxDetails";
+	// limit the number of versions per mod id the resolution fix search tries to add (default 16), <= 0 to disable
+	public static final String DEBUG_RESOLUTION_MAX_FIX_ALTERNATIVES = "notebook.debug.resolutionMaxFixAlternatives";
+	// write the resolution errors or warnings as json to the given file
+	public static final String DEBUG_RESOLUTION_REPORT = "notebook.debug.resolutionReport";
 	// replace mod versions (modA:versionA,modB:versionB,...)
 	public static final String DEBUG_REPLACE_VERSION = "notebook.debug.replaceVersion";
 	// deobfuscate the game jar with the classpath
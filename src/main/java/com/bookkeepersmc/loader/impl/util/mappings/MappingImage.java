@@ -0,0 +1,673 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util.mappings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.bookkeepersmc.loader.impl.util.FileSystemUtil;
+
+import net.fabricmc.mappingio.MappedElementKind;
+import net.fabricmc.mappingio.MappingVisitor;
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compact binary form of the game mappings, accessed in place through a (usually memory mapped) buffer.
+ *
+ * <p>The image consists of a string table, a class table sorted by source name with an additional sorted index per
+ * destination namespace and field/method tables grouped by owner, each sorted by source name and descriptor. Every row
+ * holds one string id column per namespace, member rows additionally one descriptor column per namespace. Method args,
+ * vars and comments are omitted just like {@link FilteringMappingVisitor} does.
+ *
+ * <p>Namespaces are addressed by column index, 0 is the source namespace and 1..n the destination namespaces. This is
+ * offset by one from mapping-io's namespace ids. Strings are decoded on first access and cached.
+ */
+public final class MappingImage {
+	private static final int MAGIC = 0x4E424D49; // NBMI
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 8 * 4;
+	private static final int NULL = -1;
+
+	private final ByteBuffer buffer;
+	private final int nsCount;
+	private final int classCount;
+	private final List<String> namespaces;
+	private final int stringOffsetsPos;
+	private final int stringDataPos;
+	private final int classesPos;
+	private final int classRangesPos; // field start, method start per class + terminating entry
+	private final int classIndexPos; // per dst namespace: class rows sorted by name in that namespace
+	private final Members fields;
+	private final Members methods;
+	private final String[] strings;
+
+	private MappingImage(ByteBuffer buffer) {
+		if (buffer.remaining() < HEADER_SIZE
+				|| buffer.getInt(0) != MAGIC
+				|| buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("not a mapping image or unsupported version");
+		}
+
+		int length = buffer.getInt(8);
+
+		if (length != buffer.limit()) {
+			throw new IllegalArgumentException("truncated mapping image, expected "+length+" bytes, got "+buffer.limit());
+		}
+
+		this.buffer = buffer;
+		this.nsCount = buffer.getInt(12);
+		int stringCount = buffer.getInt(16);
+		this.classCount = buffer.getInt(20);
+		int fieldCount = buffer.getInt(24);
+		int methodCount = buffer.getInt(28);
+
+		if ((nsCount | stringCount | classCount | fieldCount | methodCount) < 0) {
+			throw new IllegalArgumentException("negative table size");
+		}
+
+		// sections follow each other, so only the last end has to be checked against the limit
+		long pos = HEADER_SIZE;
+		int nsPos = (int) pos;
+		pos += nsCount * 4L;
+		stringOffsetsPos = (int) pos;
+		pos += (stringCount + 1L) * 4;
+		classesPos = checkPos(pos);
+		pos += (long) classCount * nsCount * 4;
+		classRangesPos = checkPos(pos);
+		pos += (classCount + 1L) * 2 * 4;
+		classIndexPos = checkPos(pos);
+		pos += Math.max(0L, nsCount - 1L) * classCount * 4;
+		fields = new Members(checkPos(pos), fieldCount, 0);
+		pos += (long) fieldCount * nsCount * 2 * 4;
+		methods = new Members(checkPos(pos), methodCount, 1);
+		pos += (long) methodCount * nsCount * 2 * 4;
+		stringDataPos = checkPos(pos);
+
+		validate(nsPos, stringCount, fieldCount, methodCount);
+
+		strings = new String[stringCount];
+		String[] namespaces = new String[nsCount];
+
+		for (int i = 0; i < nsCount; i++) {
+			namespaces[i] = getString(buffer.getInt(nsPos + i * 4));
+		}
+
+		this.namespaces = Collections.unmodifiableList(Arrays.asList(namespaces));
+	}
+
+	private int checkPos(long pos) {
+		if (pos > buffer.limit()) throw new IllegalArgumentException("mapping image section exceeds the data");
+
+		return (int) pos;
+	}
+
+	/**
+	 * Check every offset, index and string id in the tables, lookups rely on them being in bounds.
+	 */
+	private void validate(int nsPos, int stringCount, int fieldCount, int methodCount) {
+		int last = 0;
+
+		for (int i = 0; i <= stringCount; i++) {
+			int offset = buffer.getInt(stringOffsetsPos + i * 4);
+			if (offset < last || i == 0 && offset != 0) throw new IllegalArgumentException("invalid string offset");
+			last = offset;
+		}
+
+		if (stringDataPos + (long) last != buffer.limit()) throw new IllegalArgumentException("string data size mismatch");
+
+		checkStringIds(nsPos, nsCount, stringCount);
+		checkStringIds(classesPos, classCount * nsCount, stringCount);
+		checkStringIds(fields.pos, fieldCount * nsCount * 2, stringCount);
+		checkStringIds(methods.pos, methodCount * nsCount * 2, stringCount);
+
+		int lastField = 0;
+		int lastMethod = 0;
+
+		for (int i = 0; i <= classCount; i++) {
+			int fieldStart = buffer.getInt(classRangesPos + i * 8);
+			int methodStart = buffer.getInt(classRangesPos + i * 8 + 4);
+
+			if (fieldStart < lastField || methodStart < lastMethod
+					|| i == classCount && (fieldStart != fieldCount || methodStart != methodCount)) {
+				throw new IllegalArgumentException("invalid member range");
+			}
+
+			lastField = fieldStart;
+			lastMethod = methodStart;
+		}
+
+		for (int i = 0, max = Math.max(0, nsCount - 1) * classCount; i < max; i++) {
+			int cls = buffer.getInt(classIndexPos + i * 4);
+			if (cls < 0 || cls >= classCount) throw new IllegalArgumentException("invalid class index");
+		}
+	}
+
+	private void checkStringIds(int pos, int count, int stringCount) {
+		for (int i = 0; i < count; i++) {
+			int id = buffer.getInt(pos + i * 4);
+			if (id < NULL || id >= stringCount) throw new IllegalArgumentException("invalid string id");
+		}
+	}
+
+	/**
+	 * Map the image file into memory.
+	 *
+	 * @throws IOException if the file can't be read or isn't a valid mapping image
+	 */
+	public static MappingImage load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new MappingImage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("invalid mapping image "+file, e);
+		}
+	}
+
+	public static MappingImage of(ByteBuffer buffer) {
+		return new MappingImage(buffer);
+	}
+
+	public List<String> getNamespaces() {
+		return namespaces;
+	}
+
+	/**
+	 * @return the namespace column index or -1 if the namespace doesn't exist
+	 */
+	public int getNamespaceId(String namespace) {
+		return namespaces.indexOf(namespace);
+	}
+
+	public int getClassCount() {
+		return classCount;
+	}
+
+	@Nullable
+	public String getClassName(int cls, int namespace) {
+		return getString(buffer.getInt(classesPos + (cls * nsCount + namespace) * 4));
+	}
+
+	/**
+	 * Find a class by its name in the given namespace.
+	 *
+	 * @return the class index or -1 if there is no such class
+	 */
+	public int getClass(String name, int namespace) {
+		int low = 0;
+		int high = classCount - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cls = namespace == 0 ? mid : buffer.getInt(classIndexPos + ((namespace - 1) * classCount + mid) * 4);
+			int cmp = compare(getClassName(cls, namespace), name);
+
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return cls;
+			}
+		}
+
+		return NULL;
+	}
+
+	public Members getFields() {
+		return fields;
+	}
+
+	public Members getMethods() {
+		return methods;
+	}
+
+	/**
+	 * Map a class name in internal form between namespaces, returning the input name if there is no mapping.
+	 */
+	public String mapClassName(String name, int srcNamespace, int dstNamespace) {
+		int cls = getClass(name, srcNamespace);
+		if (cls < 0) return name;
+
+		String ret = getClassName(cls, dstNamespace);
+
+		return ret != null ? ret : name;
+	}
+
+	/**
+	 * Map all class names in a field or method descriptor between namespaces.
+	 *
+	 * @return the mapped descriptor, the same instance if nothing changed
+	 */
+	public String mapDesc(String desc, int srcNamespace, int dstNamespace) {
+		if (srcNamespace == dstNamespace) return desc;
+
+		StringBuilder ret = null;
+		int last = 0;
+		int len = desc.length();
+
+		for (int i = 0; i < len; i++) {
+			if (desc.charAt(i) != 'L') continue;
+
+			int end = desc.indexOf(';', i + 1);
+			if (end < 0) break;
+
+			String cls = desc.substring(i + 1, end);
+			String mapped = mapClassName(cls, srcNamespace, dstNamespace);
+
+			if (!mapped.equals(cls)) {
+				if (ret == null) ret = new StringBuilder(len + 16);
+				ret.append(desc, last, i + 1).append(mapped);
+				last = end;
+			}
+
+			i = end;
+		}
+
+		if (ret == null) return desc;
+
+		return ret.append(desc, last, len).toString();
+	}
+
+	/**
+	 * Field or method table, member indices are global across all classes.
+	 */
+	public final class Members {
+		private final int pos;
+		private final int count;
+		private final int rangeOffset;
+
+		Members(int pos, int count, int rangeOffset) {
+			this.pos = pos;
+			this.count = count;
+			this.rangeOffset = rangeOffset;
+		}
+
+		public int size() {
+			return count;
+		}
+
+		/**
+		 * @return the index of the first member of the class
+		 */
+		public int getStart(int cls) {
+			return buffer.getInt(classRangesPos + (cls * 2 + rangeOffset) * 4);
+		}
+
+		/**
+		 * @return the index after the last member of the class
+		 */
+		public int getEnd(int cls) {
+			return buffer.getInt(classRangesPos + ((cls + 1) * 2 + rangeOffset) * 4);
+		}
+
+		@Nullable
+		public String getName(int member, int namespace) {
+			return getString(buffer.getInt(pos + (member * nsCount * 2 + namespace) * 4));
+		}
+
+		@Nullable
+		public String getDesc(int member, int namespace) {
+			return getString(buffer.getInt(pos + (member * nsCount * 2 + nsCount + namespace) * 4));
+		}
+
+		/**
+		 * Find a member of a class by name and descriptor in the given namespace.
+		 *
+		 * @param desc member descriptor, null to match by name only
+		 * @return the member index or -1 if there is no such member
+		 */
+		public int find(int cls, String name, @Nullable String desc, int namespace) {
+			int start = getStart(cls);
+			int end = getEnd(cls);
+
+			if (namespace == 0 && desc != null) { // sorted by src name+desc
+				int low = start;
+				int high = end - 1;
+
+				while (low <= high) {
+					int mid = (low + high) >>> 1;
+					int cmp = compare(getName(mid, 0), name);
+					if (cmp == 0) cmp = compare(getDesc(mid, 0), desc);
+
+					if (cmp < 0) {
+						low = mid + 1;
+					} else if (cmp > 0) {
+						high = mid - 1;
+					} else {
+						return mid;
+					}
+				}
+			} else {
+				for (int i = start; i < end; i++) {
+					if (name.equals(getName(i, namespace))
+							&& (desc == null || desc.equals(getDesc(i, namespace)))) {
+						return i;
+					}
+				}
+			}
+
+			return NULL;
+		}
+	}
+
+	/**
+	 * Replay the mappings into a mapping-io visitor, e.g. to populate a {@link net.fabricmc.mappingio.tree.MemoryMappingTree}.
+	 */
+	public void accept(MappingVisitor visitor) throws IOException {
+		if (nsCount == 0) return;
+
+		do {
+			if (visitor.visitHeader()) {
+				visitor.visitNamespaces(namespaces.get(0), namespaces.subList(1, nsCount));
+			}
+
+			if (visitor.visitContent()) {
+				for (int cls = 0; cls < classCount; cls++) {
+					if (!visitor.visitClass(getClassName(cls, 0))) continue;
+
+					for (int ns = 1; ns < nsCount; ns++) {
+						String name = getClassName(cls, ns);
+						if (name != null) visitor.visitDstName(MappedElementKind.CLASS, ns - 1, name);
+					}
+
+					if (!visitor.visitElementContent(MappedElementKind.CLASS)) continue;
+
+					for (int field = fields.getStart(cls), end = fields.getEnd(cls); field < end; field++) {
+						if (!visitor.visitField(fields.getName(field, 0), fields.getDesc(field, 0))) continue;
+
+						for (int ns = 1; ns < nsCount; ns++) {
+							String name = fields.getName(field, ns);
+							if (name != null) visitor.visitDstName(MappedElementKind.FIELD, ns - 1, name);
+						}
+
+						visitor.visitElementContent(MappedElementKind.FIELD);
+					}
+
+					for (int method = methods.getStart(cls), end = methods.getEnd(cls); method < end; method++) {
+						if (!visitor.visitMethod(methods.getName(method, 0), methods.getDesc(method, 0))) continue;
+
+						for (int ns = 1; ns < nsCount; ns++) {
+							String name = methods.getName(method, ns);
+							if (name != null) visitor.visitDstName(MappedElementKind.METHOD, ns - 1, name);
+						}
+
+						visitor.visitElementContent(MappedElementKind.METHOD);
+					}
+				}
+			}
+		} while (!visitor.visitEnd());
+	}
+
+	@Nullable
+	private String getString(int id) {
+		if (id == NULL) return null;
+
+		String ret = strings[id];
+		if (ret != null) return ret; // racy but benign, strings are immutable
+
+		int start = buffer.getInt(stringOffsetsPos + id * 4);
+		int end = buffer.getInt(stringOffsetsPos + (id + 1) * 4);
+		byte[] bytes = new byte[end - start];
+		ByteBuffer view = buffer.duplicate();
+		view.position(stringDataPos + start);
+		view.get(bytes);
+
+		ret = new String(bytes, StandardCharsets.UTF_8);
+		strings[id] = ret;
+
+		return ret;
+	}
+
+	private static int compare(@Nullable String a, @Nullable String b) { // nulls last
+		if (a == null) return b == null ? 0 : 1;
+		if (b == null) return -1;
+
+		return a.compareTo(b);
+	}
+
+	/**
+	 * Convert a mapping tree into a mapping image.
+	 *
+	 * @param namespaces all namespaces to include, starting with the source namespace
+	 */
+	public static ByteBuffer create(MappingTreeView tree, List<String> namespaces) {
+		int nsCount = namespaces.size();
+		int[] nsIds = new int[nsCount]; // mapping-io namespace ids
+
+		for (int i = 0; i < nsCount; i++) {
+			nsIds[i] = tree.getNamespaceId(namespaces.get(i));
+
+			if (nsIds[i] == MappingTreeView.NULL_NAMESPACE_ID) {
+				throw new IllegalArgumentException("missing namespace "+namespaces.get(i));
+			}
+		}
+
+		StringTable stringTable = new StringTable();
+		int[] nsStrings = new int[nsCount];
+
+		for (int i = 0; i < nsCount; i++) {
+			nsStrings[i] = stringTable.add(namespaces.get(i));
+		}
+
+		// sort classes and members by their source name
+
+		List<MappingTreeView.ClassMappingView> classes = nsCount > 0 ? new ArrayList<>(tree.getClasses()) : new ArrayList<>();
+		classes.sort(Comparator.comparing(MappingTreeView.ElementMappingView::getSrcName));
+		Comparator<MappingTreeView.MemberMappingView> memberComparator = (a, b) -> {
+			int cmp = a.getSrcName().compareTo(b.getSrcName());
+
+			return cmp != 0 ? cmp : compare(a.getSrcDesc(), b.getSrcDesc());
+		};
+
+		int classCount = classes.size();
+		int memberRowSize = Math.max(1, nsCount * 2);
+		int[] classNames = new int[classCount * nsCount];
+		int[] classRanges = new int[(classCount + 1) * 2];
+		IntList fieldData = new IntList();
+		IntList methodData = new IntList();
+
+		for (int cls = 0; cls < classCount; cls++) {
+			MappingTreeView.ClassMappingView classDef = classes.get(cls);
+
+			for (int ns = 0; ns < nsCount; ns++) {
+				classNames[cls * nsCount + ns] = stringTable.add(classDef.getName(nsIds[ns]));
+			}
+
+			classRanges[cls * 2] = fieldData.size / memberRowSize;
+			classRanges[cls * 2 + 1] = methodData.size / memberRowSize;
+
+			List<MappingTreeView.MemberMappingView> members = new ArrayList<>(classDef.getFields());
+			members.sort(memberComparator);
+			addMembers(members, nsIds, stringTable, fieldData);
+
+			members = new ArrayList<>(classDef.getMethods());
+			members.sort(memberComparator);
+			addMembers(members, nsIds, stringTable, methodData);
+		}
+
+		classRanges[classCount * 2] = fieldData.size / memberRowSize;
+		classRanges[classCount * 2 + 1] = methodData.size / memberRowSize;
+
+		// per dst namespace class index sorted by name in that namespace
+
+		int[] classIndex = new int[Math.max(0, nsCount - 1) * classCount];
+		Integer[] order = new Integer[classCount];
+
+		for (int ns = 1; ns < nsCount; ns++) {
+			final int column = ns;
+
+			for (int i = 0; i < classCount; i++) {
+				order[i] = i;
+			}
+
+			Arrays.sort(order, (a, b) -> compare(stringTable.get(classNames[a * nsCount + column]), stringTable.get(classNames[b * nsCount + column])));
+
+			for (int i = 0; i < classCount; i++) {
+				classIndex[(ns - 1) * classCount + i] = order[i];
+			}
+		}
+
+		// serialize
+
+		byte[][] stringBytes = new byte[stringTable.strings.size()][];
+		int stringDataSize = 0;
+
+		for (int i = 0; i < stringBytes.length; i++) {
+			stringBytes[i] = stringTable.strings.get(i).getBytes(StandardCharsets.UTF_8);
+			stringDataSize += stringBytes[i].length;
+		}
+
+		int size = HEADER_SIZE
+				+ (nsCount + stringBytes.length + 1 + classNames.length + classRanges.length + classIndex.length + fieldData.size + methodData.size) * 4
+				+ stringDataSize;
+		ByteBuffer ret = ByteBuffer.allocate(size);
+
+		ret.putInt(MAGIC);
+		ret.putInt(VERSION);
+		ret.putInt(size);
+		ret.putInt(nsCount);
+		ret.putInt(stringBytes.length);
+		ret.putInt(classCount);
+		ret.putInt(fieldData.size / memberRowSize);
+		ret.putInt(methodData.size / memberRowSize);
+		putInts(ret, nsStrings, nsStrings.length);
+
+		int offset = 0;
+
+		for (byte[] bytes : stringBytes) {
+			ret.putInt(offset);
+			offset += bytes.length;
+		}
+
+		ret.putInt(offset);
+		putInts(ret, classNames, classNames.length);
+		putInts(ret, classRanges, classRanges.length);
+		putInts(ret, classIndex, classIndex.length);
+		putInts(ret, fieldData.data, fieldData.size);
+		putInts(ret, methodData.data, methodData.size);
+
+		for (byte[] bytes : stringBytes) {
+			ret.put(bytes);
+		}
+
+		ret.flip();
+
+		return ret;
+	}
+
+	/**
+	 * Convert a mapping tree into a mapping image and write it to a file, replacing it atomically if possible.
+	 */
+	public static MappingImage write(MappingTreeView tree, List<String> namespaces, Path file) throws IOException {
+		ByteBuffer data = create(tree, namespaces);
+		Path tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+		try {
+			try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+			}
+
+			// temp files are private to the owner, other accounts sharing the cache dir have to be able to read it
+			FileSystemUtil.trySetPosixPermissions(tmpFile, "rw-r--r--");
+
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+
+		data.rewind();
+
+		return new MappingImage(data);
+	}
+
+	private static void addMembers(List<MappingTreeView.MemberMappingView> members, int[] nsIds, StringTable stringTable, IntList out) {
+		for (MappingTreeView.MemberMappingView member : members) {
+			for (int nsId : nsIds) {
+				out.add(stringTable.add(member.getName(nsId)));
+			}
+
+			for (int nsId : nsIds) {
+				out.add(stringTable.add(member.getDesc(nsId)));
+			}
+		}
+	}
+
+	private static void putInts(ByteBuffer buffer, int[] values, int count) {
+		for (int i = 0; i < count; i++) {
+			buffer.putInt(values[i]);
+		}
+	}
+
+	private static final class StringTable {
+		final List<String> strings = new ArrayList<>();
+		final Map<String, Integer> ids = new HashMap<>();
+
+		int add(@Nullable String str) {
+			if (str == null) return NULL;
+
+			Integer ret = ids.get(str);
+
+			if (ret == null) {
+				ret = strings.size();
+				strings.add(str);
+				ids.put(str, ret);
+			}
+
+			return ret;
+		}
+
+		@Nullable
+		String get(int id) {
+			return id == NULL ? null : strings.get(id);
+		}
+	}
+
+	private static final class IntList {
+		int[] data = new int[64];
+		int size;
+
+		void add(int value) {
+			if (size == data.length) data = Arrays.copyOf(data, size * 2);
+			data[size++] = value;
+		}
+	}
+}
@@ -23,56 +23,56 @@
 package com.bookkeepersmc.loader.impl.util.mappings;
 
 import java.util.ArrayDeque;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Queue;
-import java.util.Set;
 
-import net.fabricmc.mappingio.tree.MappingTree;
 import org.spongepowered.asm.mixin.transformer.ClassInfo;
 
 public class MixinIntermediaryDevRemapper extends MixinRemapper {
 	private static final String ambiguousName = "<ambiguous>"; // dummy value for ambiguous mappings - needs querying with additional owner and/or desc info
 
-	private final Set<String> allPossibleClassNames = new HashSet<>();
-	private final Map<String, String> nameFieldLookup = new HashMap<>();
-	private final Map<String, String> nameMethodLookup = new HashMap<>();
-	private final Map<String, String> nameDescFieldLookup = new HashMap<>();
-	private final Map<String, String> nameDescMethodLookup = new HashMap<>();
+	// owner-less member lookups, built on first use
+	private volatile MemberLookup nameMethodLookup;
+	private volatile MemberLookup nameDescFieldLookup;
+	private volatile MemberLookup nameDescMethodLookup;
 
-	public MixinIntermediaryDevRemapper(MappingTree mappings, String from, String to) {
+	public MixinIntermediaryDevRemapper(MappingImage mappings, String from, String to) {
 		super(mappings, mappings.getNamespaceId(from), mappings.getNamespaceId(to));
+	}
 
-		for (MappingTree.ClassMapping classDef : mappings.getClasses()) {
-			allPossibleClassNames.add(classDef.getName(from));
-			allPossibleClassNames.add(classDef.getName(to));
-
-			putMemberInLookup(fromId, toId, classDef.getFields(), nameFieldLookup, nameDescFieldLookup);
-			putMemberInLookup(fromId, toId, classDef.getMethods(), nameMethodLookup, nameDescMethodLookup);
-		}
+	private boolean isKnownClass(String name) {
+		return mappings.getClass(name, fromId) >= 0 || mappings.getClass(name, toId) >= 0;
 	}
 
-	private <T extends MappingTree.MemberMapping> void putMemberInLookup(int from, int to, Collection<T> descriptored, Map<String, String> nameMap, Map<String, String> nameDescMap) {
-		for (T field : descriptored) {
-			String nameFrom = field.getName(from);
-			String descFrom = field.getDesc(from);
-			String nameTo = field.getName(to);
+	private MemberLookup getMethodLookup(boolean byDesc) {
+		MemberLookup ret = byDesc ? nameDescMethodLookup : nameMethodLookup;
+		if (ret != null) return ret;
 
-			String prev = nameMap.putIfAbsent(nameFrom, nameTo);
+		synchronized (this) {
+			ret = byDesc ? nameDescMethodLookup : nameMethodLookup;
+			if (ret != null) return ret;
 
-			if (prev != null && prev != ambiguousName && !prev.equals(nameTo)) {
-				nameDescMap.put(nameFrom, ambiguousName);
+			ret = new MemberLookup(mappings.getMethods(), byDesc);
+
+			if (byDesc) {
+				nameDescMethodLookup = ret;
+			} else {
+				nameMethodLookup = ret;
 			}
+		}
 
-			String key = getNameDescKey(nameFrom, descFrom);
-			prev = nameDescMap.putIfAbsent(key, nameTo);
+		return ret;
+	}
 
-			if (prev != null && prev != ambiguousName && !prev.equals(nameTo)) {
-				nameDescMap.put(key, ambiguousName);
-			}
+	private MemberLookup getFieldLookup() {
+		MemberLookup ret = nameDescFieldLookup;
+		if (ret != null) return ret;
+
+		synchronized (this) {
+			ret = nameDescFieldLookup;
+			if (ret == null) nameDescFieldLookup = ret = new MemberLookup(mappings.getFields(), true);
 		}
+
+		return ret;
 	}
 
 	private void throwAmbiguousLookup(String type, String name, String desc) {
@@ -104,14 +104,8 @@ public class MixinIntermediaryDevRemapper extends MixinRemapper {
 	@Override
 	public String mapMethodName(String owner, String name, String desc) {
 		// handle unambiguous values early
-		if (owner == null || allPossibleClassNames.contains(owner)) {
-			String newName;
-
-			if (desc == null) {
-				newName = nameMethodLookup.get(name);
-			} else {
-				newName = nameDescMethodLookup.get(getNameDescKey(name, desc));
-			}
+		if (owner == null || isKnownClass(owner)) {
+			String newName = getMethodLookup(desc != null).get(name, desc);
 
 			if (newName != null) {
 				if (newName == ambiguousName) {
@@ -183,8 +177,8 @@ public class MixinIntermediaryDevRemapper extends MixinRemapper {
 	@Override
 	public String mapFieldName(String owner, String name, String desc) {
 		// handle unambiguous values early
-		if (owner == null || allPossibleClassNames.contains(owner)) {
-			String newName = nameDescFieldLookup.get(getNameDescKey(name, desc));
+		if (owner == null || isKnownClass(owner)) {
+			String newName = desc != null ? getFieldLookup().get(name, desc) : null;
 
 			if (newName != null) {
 				if (newName == ambiguousName) {
@@ -233,7 +227,98 @@ public class MixinIntermediaryDevRemapper extends MixinRemapper {
 		return name;
 	}
 
-	private static String getNameDescKey(String name, String descriptor) {
-		return name+ ";;" + descriptor;
+	/**
+	 * Index of all members by their name and optionally descriptor, ignoring the owner.
+	 *
+	 * <p>The open addressing table references the mapping image's member rows directly instead of concatenating
+	 * string keys. Whether a name+desc key is ambiguous is determined on first query and remembered.
+	 */
+	private final class MemberLookup {
+		private static final byte UNRESOLVED = 0;
+		private static final byte UNIQUE = 1;
+		private static final byte AMBIGUOUS = 2;
+
+		final MappingImage.Members members;
+		final boolean byDesc;
+		/** member index + 1, 0 for empty slots. */
+		final int[] table;
+		/** ambiguity state for the first member of each key. */
+		final byte[] states;
+
+		MemberLookup(MappingImage.Members members, boolean byDesc) {
+			this.members = members;
+			this.byDesc = byDesc;
+			this.table = new int[Integer.highestOneBit(Math.max(members.size(), 1) * 2 - 1) << 1];
+			this.states = new byte[members.size()];
+			int mask = table.length - 1;
+
+			for (int member = 0; member < members.size(); member++) {
+				String name = members.getName(member, fromId);
+				if (name == null || members.getName(member, toId) == null) continue;
+
+				int slot = hash(name, members.getDesc(member, fromId)) & mask;
+
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+
+				table[slot] = member + 1;
+			}
+		}
+
+		/**
+		 * @return the target name, {@link #ambiguousName} if not unique or null if there's no such member
+		 */
+		String get(String name, String desc) {
+			int mask = table.length - 1;
+			int slot = hash(name, desc) & mask;
+			int first = -1;
+			int member;
+
+			while ((member = table[slot]) != 0) {
+				slot = (slot + 1) & mask;
+
+				if (matches(member - 1, name, desc)) {
+					first = member - 1;
+					break;
+				}
+			}
+
+			if (first < 0) return null;
+
+			String ret = members.getName(first, toId);
+			if (!byDesc) return ret; // first match wins for name only lookups
+
+			byte state = states[first];
+
+			if (state == UNRESOLVED) { // check the remaining entries with the same key, they are all further along the probe sequence
+				state = UNIQUE;
+
+				while ((member = table[slot]) != 0) {
+					if (matches(member - 1, name, desc) && !ret.equals(members.getName(member - 1, toId))) {
+						state = AMBIGUOUS;
+						break;
+					}
+
+					slot = (slot + 1) & mask;
+				}
+
+				states[first] = state; // racy but benign, the result is always the same
+			}
+
+			return state == AMBIGUOUS ? ambiguousName : ret;
+		}
+
+		private boolean matches(int member, String name, String desc) {
+			return name.equals(members.getName(member, fromId))
+					&& (!byDesc || desc.equals(members.getDesc(member, fromId)));
+		}
+
+		private int hash(String name, String desc) {
+			int ret = name.hashCode();
+			if (byDesc) ret = ret * 31 + desc.hashCode();
+
+			return ret ^ ret >>> 16;
+		}
 	}
 }
@@ -22,15 +22,14 @@
  */
 package com.bookkeepersmc.loader.impl.util.mappings;
 
-import net.fabricmc.mappingio.tree.MappingTree;
 import org.spongepowered.asm.mixin.extensibility.IRemapper;
 
 public class MixinRemapper implements IRemapper {
-	protected final MappingTree mappings;
+	protected final MappingImage mappings;
 	protected final int fromId;
 	protected final int toId;
 
-	public MixinRemapper(MappingTree mappings, int fromId, int toId) {
+	public MixinRemapper(MappingImage mappings, int fromId, int toId) {
 		this.mappings = mappings;
 		this.fromId = fromId;
 		this.toId = toId;
@@ -38,14 +37,26 @@ public class MixinRemapper implements IRemapper {
 
 	@Override
 	public String mapMethodName(String owner, String name, String desc) {
-		final MappingTree.MethodMapping method = mappings.getMethod(owner, name, desc, fromId);
-		return method == null ? name : method.getName(toId);
+		return mapMemberName(mappings.getMethods(), owner, name, desc);
 	}
 
 	@Override
 	public String mapFieldName(String owner, String name, String desc) {
-		final MappingTree.FieldMapping field = mappings.getField(owner, name, desc, fromId);
-		return field == null ? name : field.getName(toId);
+		return mapMemberName(mappings.getFields(), owner, name, desc);
+	}
+
+	private String mapMemberName(MappingImage.Members members, String owner, String name, String desc) {
+		if (owner == null) return name;
+
+		int cls = mappings.getClass(owner, fromId);
+		if (cls < 0) return name;
+
+		int member = members.find(cls, name, desc, fromId);
+		if (member < 0) return name;
+
+		String ret = members.getName(member, toId);
+
+		return ret != null ? ret : name;
 	}
 
 	@Override
@@ -60,11 +71,11 @@ public class MixinRemapper implements IRemapper {
 
 	@Override
 	public String mapDesc(String desc) {
-		return mappings.mapDesc(desc, fromId, toId);
+		return desc == null ? null : mappings.mapDesc(desc, fromId, toId);
 	}
 
 	@Override
 	public String unmapDesc(String desc) {
-		return mappings.mapDesc(desc, toId, fromId);
+		return desc == null ? null : mappings.mapDesc(desc, toId, fromId);
 	}
 }
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util.mappings;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.bookkeepersmc.loader.impl.util.ParallelZipWriter;
+
+import net.fabricmc.tinyremapper.TinyRemapper;
+
+/**
+ * Streaming output for remapping a jar with tiny remapper, replacing {@code OutputConsumerPath}.
+ *
+ * <p>The input jar is opened once for reading the non-class files, the output is written in a single pass through a
+ * {@link ParallelZipWriter}. Signature files are dropped, the manifest and service files are remapped like tiny
+ * remapper's meta-inf fixing does.
+ *
+ * <p>The manifest has to be the first entry for {@link java.util.jar.JarInputStream} to find it, but remapping it
+ * needs the remapper's mappings. It is therefore written before the first class, once {@link TinyRemapper#apply} is
+ * running, and only then the other non-class files start copying.
+ *
+ * <p>Usage: {@link #copyNonClassFiles}, pass {@link #acceptClass} to
+ * {@link TinyRemapper#apply}, optionally {@link #read}/{@link #add} entries needing custom processing, then
+ * {@link #finish} before finishing the remapper and {@link #close}.
+ */
+public final class RemappedJarOutput implements Closeable {
+	private static final String META_INF_DIR = "META-INF/";
+	private static final String SERVICES_DIR = "META-INF/services/";
+	private static final Attributes.Name[] MANIFEST_CLASS_ATTRIBUTES = { Attributes.Name.MAIN_CLASS, new Attributes.Name("Launcher-Agent-Class") };
+
+	private final ZipFile input;
+	private final ParallelZipWriter writer;
+	private final TinyRemapper remapper;
+	private final List<ZipEntry> copiedEntries = new ArrayList<>();
+	private final List<ZipEntry> deferredEntries = new ArrayList<>();
+	private final List<Future<?>> futures = new ArrayList<>();
+	private ExecutorService executor;
+	private ZipEntry manifestEntry;
+	private volatile boolean started;
+
+	public RemappedJarOutput(Path inputFile, Path outputFile, TinyRemapper remapper) throws IOException {
+		this.input = new ZipFile(inputFile.toFile());
+
+		try {
+			this.writer = new ParallelZipWriter(outputFile);
+		} catch (IOException e) {
+			input.close();
+			throw e;
+		}
+
+		this.remapper = remapper;
+	}
+
+	/**
+	 * Copy the non-class files on the executor, starting with the first written class.
+	 *
+	 * @param excluded entry names to skip, the caller is responsible for adding them if desired
+	 */
+	public void copyNonClassFiles(ExecutorService executor, Collection<String> excluded) {
+		this.executor = executor;
+
+		for (Enumeration<? extends ZipEntry> e = input.entries(); e.hasMoreElements(); ) {
+			ZipEntry entry = e.nextElement();
+			String name = entry.getName();
+
+			if (name.endsWith(".class") || isSignatureFile(name) || excluded.contains(name)) continue;
+
+			if (name.equals(JarFile.MANIFEST_NAME)) {
+				manifestEntry = entry;
+			} else if (name.startsWith(SERVICES_DIR)) { // needs the remapper's results
+				deferredEntries.add(entry);
+			} else {
+				copiedEntries.add(entry);
+			}
+		}
+	}
+
+	/**
+	 * Write the manifest and start copying the non-class files, once the remapper has its mappings.
+	 */
+	private void start() throws IOException {
+		if (started) return;
+
+		synchronized (this) {
+			if (started) return;
+
+			if (manifestEntry != null) {
+				writer.add(JarFile.MANIFEST_NAME, fixManifest(readEntry(manifestEntry)));
+			}
+
+			for (ZipEntry entry : copiedEntries) {
+				futures.add(executor.submit(() -> {
+					writer.add(entry.getName(), readEntry(entry));
+					return null;
+				}));
+			}
+
+			started = true;
+		}
+	}
+
+	/**
+	 * Class output consumer for {@link TinyRemapper#apply}, thread safe.
+	 */
+	public void acceptClass(String name, byte[] data) {
+		try {
+			start();
+			writer.add(name.concat(".class"), data);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Read an entry from the input jar.
+	 */
+	public byte[] read(String name) throws IOException {
+		ZipEntry entry = input.getEntry(name);
+		if (entry == null) throw new NoSuchFileException(name);
+
+		return readEntry(entry);
+	}
+
+	/**
+	 * Add an entry to the output jar, thread safe.
+	 */
+	public void add(String name, byte[] data) throws IOException {
+		start();
+		writer.add(name, data);
+	}
+
+	/**
+	 * Wait for the non-class files and write the remapped service files, must be called after
+	 * {@link TinyRemapper#apply} and before {@link TinyRemapper#finish}.
+	 */
+	public void finish() throws IOException {
+		start(); // no classes
+
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				throw new IOException("error copying "+input.getName(), e.getCause());
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		for (ZipEntry entry : deferredEntries) {
+			fixService(entry.getName(), readEntry(entry));
+		}
+	}
+
+	/**
+	 * @return the number of class files written so far
+	 */
+	public int getClassCount() {
+		return writer.getClassCount();
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			for (Future<?> future : futures) {
+				future.cancel(false);
+			}
+		}
+
+		try {
+			writer.close();
+		} finally {
+			input.close();
+		}
+	}
+
+	private static boolean isSignatureFile(String name) {
+		if (!name.startsWith(META_INF_DIR) || name.indexOf('/', META_INF_DIR.length()) >= 0) return false;
+
+		return name.endsWith(".SF")
+				|| name.endsWith(".DSA")
+				|| name.endsWith(".RSA")
+				|| name.endsWith(".EC")
+				|| name.startsWith("SIG-", META_INF_DIR.length());
+	}
+
+	private byte[] readEntry(ZipEntry entry) throws IOException {
+		long size = entry.getSize();
+		byte[] ret = new byte[size >= 0 ? (int) size : 8192];
+		int offset = 0;
+		int len;
+
+		try (InputStream is = input.getInputStream(entry)) {
+			while ((len = is.read(ret, offset, ret.length - offset)) >= 0) {
+				offset += len;
+				if (offset == ret.length && size < 0) ret = Arrays.copyOf(ret, ret.length * 2);
+				if (offset == ret.length) break;
+			}
+		}
+
+		return offset == ret.length ? ret : Arrays.copyOf(ret, offset);
+	}
+
+	/**
+	 * Remap the main class names and drop the signing digests.
+	 */
+	private byte[] fixManifest(byte[] data) throws IOException {
+		Manifest manifest = new Manifest(new ByteArrayInputStream(data));
+		Attributes mainAttributes = manifest.getMainAttributes();
+
+		for (Attributes.Name attribute : MANIFEST_CLASS_ATTRIBUTES) {
+			String cls = mainAttributes.getValue(attribute);
+			if (cls != null) mainAttributes.put(attribute, mapDotClassName(cls));
+		}
+
+		for (Iterator<Attributes> it = manifest.getEntries().values().iterator(); it.hasNext(); ) {
+			Attributes attributes = it.next();
+			attributes.keySet().removeIf(key -> key.toString().endsWith("-Digest"));
+			if (attributes.isEmpty()) it.remove();
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+		manifest.write(out);
+
+		return out.toByteArray();
+	}
+
+	private void fixService(String name, byte[] data) throws IOException {
+		if (name.endsWith("/")) {
+			writer.add(name, data);
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder(data.length);
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				int end = line.indexOf('#');
+				if (end < 0) end = line.length();
+				String cls = line.substring(0, end).trim();
+
+				if (!cls.isEmpty()) {
+					sb.append(mapDotClassName(cls)).append(line, end, line.length());
+				} else {
+					sb.append(line);
+				}
+
+				sb.append('\n');
+			}
+		}
+
+		String service = name.substring(SERVICES_DIR.length());
+		writer.add(SERVICES_DIR.concat(mapDotClassName(service)), sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String mapDotClassName(String name) {
+		return remapper.getRemapper().map(name.replace('.', '/')).replace('/', '.');
+	}
+}
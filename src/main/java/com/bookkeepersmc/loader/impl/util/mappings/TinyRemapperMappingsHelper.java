@@ -58,4 +58,33 @@ public class TinyRemapperMappingsHelper {
 			}
 		};
 	}
+
+	public static IMappingProvider create(MappingImage mappings, String from, String to) {
+		return (acceptor) -> {
+			final int fromId = mappings.getNamespaceId(from);
+			final int toId = mappings.getNamespaceId(to);
+			final MappingImage.Members fields = mappings.getFields();
+			final MappingImage.Members methods = mappings.getMethods();
+
+			for (int cls = 0, count = mappings.getClassCount(); cls < count; cls++) {
+				final String className = mappings.getClassName(cls, fromId);
+				String dstName = mappings.getClassName(cls, toId);
+
+				if (dstName == null) {
+					dstName = className;
+				}
+
+				acceptor.acceptClass(className, dstName);
+
+				for (int field = fields.getStart(cls), end = fields.getEnd(cls); field < end; field++) {
+					acceptor.acceptField(memberOf(className, fields.getName(field, fromId), fields.getDesc(field, fromId)), fields.getName(field, toId));
+				}
+
+				for (int method = methods.getStart(cls), end = methods.getEnd(cls); method < end; method++) {
+					IMappingProvider.Member methodIdentifier = memberOf(className, methods.getName(method, fromId), methods.getDesc(method, fromId));
+					acceptor.acceptMethod(methodIdentifier, methods.getName(method, toId));
+				}
+			}
+		};
+	}
 }
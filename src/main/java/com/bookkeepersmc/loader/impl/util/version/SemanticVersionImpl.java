@@ -26,7 +26,6 @@ import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.StringTokenizer;
-import java.util.regex.Pattern;
 
 import com.bookkeepersmc.loader.api.SemanticVersion;
 import com.bookkeepersmc.loader.api.Version;
@@ -43,8 +42,6 @@ import com.bookkeepersmc.loader.api.VersionParsingException;
  */
 @SuppressWarnings("deprecation")
 public class SemanticVersionImpl extends net.fabricmc.loader.util.version.SemanticVersionImpl implements SemanticVersion {
-	private static final Pattern DOT_SEPARATED_ID = Pattern.compile("|[-0-9A-Za-z]+(\\.[-0-9A-Za-z]+)*");
-	private static final Pattern UNSIGNED_INTEGER = Pattern.compile("0|[1-9][0-9]*");
 	private final int[] components;
 	private final String prerelease;
 	private final String build;
@@ -69,7 +66,7 @@ public class SemanticVersionImpl extends net.fabricmc.loader.util.version.Semant
 			prerelease = null;
 		}
 
-		if (prerelease != null && !DOT_SEPARATED_ID.matcher(prerelease).matches()) {
+		if (prerelease != null && !isDotSeparatedId(prerelease)) {
 			throw new VersionParsingException("Invalid prerelease string '" + prerelease + "'!");
 		}
 
@@ -288,15 +285,15 @@ public class SemanticVersionImpl extends net.fabricmc.loader.util.version.Semant
 						String partA = prereleaseATokenizer.nextToken();
 						String partB = prereleaseBTokenizer.nextToken();
 
-						if (UNSIGNED_INTEGER.matcher(partA).matches()) {
-							if (UNSIGNED_INTEGER.matcher(partB).matches()) {
+						if (isUnsignedInteger(partA)) {
+							if (isUnsignedInteger(partB)) {
 								int compare = Integer.compare(partA.length(), partB.length());
 								if (compare != 0) return compare;
 							} else {
 								return -1;
 							}
 						} else {
-							if (UNSIGNED_INTEGER.matcher(partB).matches()) {
+							if (isUnsignedInteger(partB)) {
 								return 1;
 							}
 						}
@@ -318,4 +315,46 @@ public class SemanticVersionImpl extends net.fabricmc.loader.util.version.Semant
 			return 0;
 		}
 	}
+
+	/**
+	 * Checks whether the string matches {@code |[-0-9A-Za-z]+(\.[-0-9A-Za-z]+)*}, i.e. it is empty or consists of
+	 * non-empty dot separated identifiers.
+	 */
+	private static boolean isDotSeparatedId(String s) {
+		boolean idStart = true;
+
+		for (int i = 0, max = s.length(); i < max; i++) {
+			char c = s.charAt(i);
+
+			if (c == '.') {
+				if (idStart) return false;
+				idStart = true;
+			} else if (c == '-'
+					|| c >= '0' && c <= '9'
+					|| c >= 'A' && c <= 'Z'
+					|| c >= 'a' && c <= 'z') {
+				idStart = false;
+			} else {
+				return false;
+			}
+		}
+
+		return s.isEmpty() || !idStart;
+	}
+
+	/**
+	 * Checks whether the string matches {@code 0|[1-9][0-9]*}.
+	 */
+	private static boolean isUnsignedInteger(String s) {
+		int len = s.length();
+		if (len == 0) return false;
+		if (s.charAt(0) == '0') return len == 1;
+
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') return false;
+		}
+
+		return true;
+	}
 }
@@ -22,17 +22,31 @@
  */
 package com.bookkeepersmc.loader.impl.util.version;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.bookkeepersmc.loader.api.SemanticVersion;
 import com.bookkeepersmc.loader.api.Version;
 import com.bookkeepersmc.loader.api.VersionParsingException;
 
+/**
+ * Parses version strings, caching the results process-wide.
+ *
+ * <p>The same version strings show up many times during mod resolution (e.g. nested library copies shipped by several
+ * mods), and parsed versions are immutable, so parsing each distinct string once is sufficient.
+ */
 public final class VersionParser {
+	private static final Map<String, Version> CACHE = new ConcurrentHashMap<>();
+	private static final Map<String, Version> CACHE_STORE_X = new ConcurrentHashMap<>();
+
 	public static Version parse(String s, boolean storeX) throws VersionParsingException {
 		if (s == null || s.isEmpty()) {
 			throw new VersionParsingException("Version must be a non-empty string!");
 		}
 
-		Version version;
+		Map<String, Version> cache = storeX ? CACHE_STORE_X : CACHE;
+		Version version = cache.get(s);
+		if (version != null) return version;
 
 		try {
 			version = new SemanticVersionImpl(s, storeX);
@@ -40,7 +54,9 @@ public final class VersionParser {
 			version = new StringVersion(s);
 		}
 
-		return version;
+		Version prev = cache.putIfAbsent(s, version);
+
+		return prev != null ? prev : version;
 	}
 
 	public static SemanticVersion parseSemantic(String s) throws VersionParsingException {
@@ -48,6 +64,13 @@ public final class VersionParser {
 			throw new VersionParsingException("Version must be a non-empty string!");
 		}
 
-		return new SemanticVersionImpl(s, false);
+		Version version = CACHE.get(s);
+		if (version instanceof SemanticVersion) return (SemanticVersion) version;
+
+		// not cached or not semantic, the latter will throw with the appropriate message
+		SemanticVersion ret = new SemanticVersionImpl(s, false);
+		CACHE.putIfAbsent(s, ret);
+
+		return ret;
 	}
 }
@@ -27,8 +27,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.bookkeepersmc.loader.api.SemanticVersion;
 import com.bookkeepersmc.loader.api.Version;
@@ -40,8 +42,22 @@ import com.bookkeepersmc.loader.api.metadata.version.VersionPredicate.PredicateT
 
 public final class VersionPredicateParser {
 	private static final VersionComparisonOperator[] OPERATORS = VersionComparisonOperator.values();
+	/**
+	 * Process-wide cache of parsed predicates, dependency declarations repeat a lot across mods and nested jars.
+	 */
+	private static final Map<String, VersionPredicate> CACHE = new ConcurrentHashMap<>();
 
 	public static VersionPredicate parse(String predicate) throws VersionParsingException {
+		VersionPredicate ret = CACHE.get(predicate);
+		if (ret != null) return ret;
+
+		ret = parse0(predicate);
+		VersionPredicate prev = CACHE.putIfAbsent(predicate, ret);
+
+		return prev != null ? prev : ret;
+	}
+
+	private static VersionPredicate parse0(String predicate) throws VersionParsingException {
 		List<SingleVersionPredicate> predicateList = new ArrayList<>();
 
 		for (String s : predicate.split(" ")) {
@@ -52,12 +68,15 @@ public final class VersionPredicateParser {
 			}
 
 			VersionComparisonOperator operator = VersionComparisonOperator.EQUAL;
-
-			for (VersionComparisonOperator op : OPERATORS) {
-				if (s.startsWith(op.getSerialized())) {
-					operator = op;
-					s = s.substring(op.getSerialized().length());
-					break;
+			char first = s.charAt(0);
+
+			if (first < '0' || first > '9') { // all operators are non-numeric, skip the search for plain versions
+				for (VersionComparisonOperator op : OPERATORS) {
+					if (s.startsWith(op.getSerialized())) {
+						operator = op;
+						s = s.substring(op.getSerialized().length());
+						break;
+					}
 				}
 			}
 
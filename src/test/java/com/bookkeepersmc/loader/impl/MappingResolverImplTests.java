@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import com.bookkeepersmc.loader.impl.util.mappings.MappingImage;
+import com.bookkeepersmc.loader.impl.util.mappings.RandomMappings;
+
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential test comparing {@link MappingResolverImpl} against a brute force scan of the {@link MemoryMappingTree}
+ * its mapping image was created from.
+ */
+final class MappingResolverImplTests {
+	private static final List<String> NAMESPACES = RandomMappings.NAMESPACES;
+
+	@Test
+	public void matchesMappingTree() throws IOException {
+		for (long seed = 0; seed < 20; seed++) {
+			MemoryMappingTree tree = RandomMappings.generate(new Random(seed), 100);
+			MappingImage image = MappingImage.of(MappingImage.create(tree, NAMESPACES));
+
+			for (String target : NAMESPACES) {
+				MappingResolverImpl resolver = new MappingResolverImpl(image, target);
+
+				// twice to cover the cached results
+				for (int pass = 0; pass < 2; pass++) {
+					assertMatches(tree, resolver, target, "seed "+seed+", target "+target+", pass "+pass);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void passesThroughUnknownNames() throws IOException {
+		MappingImage image = MappingImage.of(MappingImage.create(RandomMappings.generate(new Random(1), 100), NAMESPACES));
+		MappingResolverImpl resolver = new MappingResolverImpl(image, "named");
+
+		assertEquals("a.b.Unknown", resolver.mapClassName("intermediary", "a.b.Unknown"));
+		assertEquals("a.b.Unknown", resolver.unmapClassName("intermediary", "a.b.Unknown"));
+		assertEquals("a.b.Unknown", resolver.mapClassName("unknown", "a.b.Unknown"));
+		assertEquals("field", resolver.mapFieldName("intermediary", "a.b.Unknown", "field", "I"));
+		assertEquals("method", resolver.mapMethodName("intermediary", "net.minecraft.class_0", "method", "()V"));
+		assertThrows(IllegalArgumentException.class, () -> resolver.mapClassName("intermediary", "net/minecraft/class_0"));
+		assertThrows(IllegalArgumentException.class, () -> resolver.mapFieldName("intermediary", "net/minecraft/class_0", "f", "I"));
+	}
+
+	private static void assertMatches(MappingTreeView tree, MappingResolverImpl resolver, String target, String context) {
+		int targetId = getTreeNamespaceId(tree, target);
+
+		for (String namespace : NAMESPACES) {
+			int nsId = getTreeNamespaceId(tree, namespace);
+
+			for (MappingTreeView.ClassMappingView cls : tree.getClasses()) {
+				String name = cls.getName(nsId);
+				String targetName = cls.getName(targetId);
+
+				if (name != null) {
+					assertEquals(toDotName(targetName != null ? targetName : name), resolver.mapClassName(namespace, toDotName(name)), context);
+				}
+
+				if (targetName != null) {
+					assertEquals(toDotName(name != null ? name : targetName), resolver.unmapClassName(namespace, toDotName(targetName)), context);
+				}
+
+				if (name == null) continue;
+
+				String owner = toDotName(name);
+
+				for (MappingTreeView.FieldMappingView field : cls.getFields()) {
+					String fieldName = field.getName(nsId);
+					if (fieldName == null) continue;
+
+					String expected = field.getName(targetId) != null ? field.getName(targetId) : fieldName;
+					assertEquals(expected, resolver.mapFieldName(namespace, owner, fieldName, field.getDesc(nsId)), context);
+				}
+
+				for (MappingTreeView.MethodMappingView method : cls.getMethods()) {
+					String methodName = method.getName(nsId);
+					if (methodName == null) continue;
+
+					String expected = method.getName(targetId) != null ? method.getName(targetId) : methodName;
+					assertEquals(expected, resolver.mapMethodName(namespace, owner, methodName, method.getDesc(nsId)), context);
+				}
+			}
+		}
+	}
+
+	private static int getTreeNamespaceId(MappingTreeView tree, String namespace) {
+		return namespace.equals(tree.getSrcNamespace()) ? MappingTreeView.SRC_NAMESPACE_ID : tree.getNamespaceId(namespace);
+	}
+
+	private static String toDotName(String name) {
+		return name.replace('/', '.');
+	}
+}
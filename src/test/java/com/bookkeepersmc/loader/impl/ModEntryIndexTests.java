@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link ModEntryIndex} built from a jar central directory and from a walked file tree with the same content.
+ */
+final class ModEntryIndexTests {
+	private static final List<String> FILES = Arrays.asList("notebook.mod.json", "a/b/c.class", "a/b/d.class", "a/b.txt", "assets/mod/icon.png");
+
+	@Test
+	public void indexesJarEntries() throws IOException {
+		Path dir = Files.createTempDirectory("modEntryIndex");
+		Path jar = dir.resolve("mod.jar");
+
+		try {
+			try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+				// parents are implied, leading slashes are tolerated
+				for (String file : FILES) {
+					zos.putNextEntry(new ZipEntry(file.startsWith("a/") ? "/"+file : file));
+				}
+
+				zos.putNextEntry(new ZipEntry("empty/"));
+			}
+
+			assertIndex(ModEntryIndex.create(jar, jar));
+		} finally {
+			deleteRecursively(dir);
+		}
+	}
+
+	@Test
+	public void indexesDirectories() throws IOException {
+		Path dir = Files.createTempDirectory("modEntryIndex");
+
+		try {
+			for (String file : FILES) {
+				Path path = dir.resolve(file);
+				Files.createDirectories(path.getParent());
+				Files.createFile(path);
+			}
+
+			Files.createDirectory(dir.resolve("empty"));
+
+			assertIndex(ModEntryIndex.create(dir, dir));
+		} finally {
+			deleteRecursively(dir);
+		}
+	}
+
+	@Test
+	public void checksIndexableNames() {
+		for (String name : new String[] { "a", "a/b.class", "a.b/c", "...", "a/.b", "a/b..c" }) {
+			assertTrue(ModEntryIndex.isIndexable(name), name);
+		}
+
+		for (String name : new String[] { "", "/", "/a", "a/", "a//b", ".", "..", "a/.", "a/../b", "./a", "a\\b" }) {
+			assertFalse(ModEntryIndex.isIndexable(name), name);
+		}
+	}
+
+	private static void assertIndex(ModEntryIndex index) {
+		for (String name : new String[] { "notebook.mod.json", "a", "a/b", "a/b/c.class", "a/b.txt", "assets", "assets/mod", "empty" }) {
+			assertTrue(index.contains(name), name);
+		}
+
+		for (String name : new String[] { "", "/a", "a/", "b", "a/b/c", "a/b/e.class", "empty/x" }) {
+			assertFalse(index.contains(name), name);
+		}
+
+		assertEquals(Arrays.asList("a/b.txt", "a/b/c.class", "a/b/d.class"), files(index, "a/"));
+		assertEquals(Arrays.asList("a/b.txt", "a/b/c.class", "a/b/d.class"), files(index, "a/b"));
+		assertEquals(Arrays.asList("a/b/c.class", "a/b/d.class"), files(index, "a/b/"));
+		assertEquals(Arrays.asList("a/b.txt", "a/b/c.class", "a/b/d.class", "assets/mod/icon.png", "notebook.mod.json"), files(index, ""));
+		assertEquals(Arrays.asList(), files(index, "empty"));
+		assertEquals(Arrays.asList(), files(index, "z"));
+	}
+
+	private static List<String> files(ModEntryIndex index, String prefix) {
+		List<String> ret = new ArrayList<>();
+		index.forEachFile(prefix, ret::add);
+
+		return ret;
+	}
+
+	private static void deleteRecursively(Path dir) throws IOException {
+		try (Stream<Path> stream = Files.walk(dir)) {
+			for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.bookkeepersmc.loader.api.ObjectShare;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link ObjectShareImpl}, including races between {@code put} and {@code whenAvailable} where every consumer has
+ * to run exactly once.
+ */
+final class ObjectShareImplTests {
+	private static final int THREADS = 4;
+	private static final int ITERATIONS = 20_000;
+
+	@Test
+	public void invokesConsumers() {
+		ObjectShare share = new ObjectShareImpl();
+		List<Object> seen = new ArrayList<>();
+
+		share.whenAvailable("test:a", (key, value) -> seen.add(value));
+		assertEquals(0, seen.size());
+
+		assertNull(share.put("test:a", "x"));
+		share.whenAvailable("test:a", (key, value) -> seen.add(value));
+		assertSame("x", share.put("test:a", "y"));
+		assertSame("y", share.putIfAbsent("test:a", "z"));
+
+		assertEquals(2, seen.size());
+		assertSame("x", seen.get(0));
+		assertSame("x", seen.get(1));
+
+		assertSame("y", share.remove("test:a"));
+		assertNull(share.get("test:a"));
+	}
+
+	@Test
+	public void supportsKeys() {
+		ObjectShare share = new ObjectShareImpl();
+		ObjectShare.Key<String> key = ObjectShare.Key.of("test:key", String.class);
+		AtomicReference<String> seen = new AtomicReference<>();
+
+		share.whenAvailable(key, seen::set);
+		share.put(key, "value");
+
+		assertSame("value", seen.get());
+		assertSame("value", share.get(key));
+		assertSame("value", share.get("test:key"));
+
+		// values of the wrong type are hidden from typed access
+		share.put("test:key", 1);
+		assertNull(share.get(key));
+	}
+
+	@Test
+	public void rejectsInvalidKeys() {
+		ObjectShare share = new ObjectShareImpl();
+
+		for (String key : new String[] { "", "a", ":a", "a:" }) {
+			assertThrows(IllegalArgumentException.class, () -> share.put(key, "x"), key);
+		}
+	}
+
+	@Test
+	public void runsEachConsumerOnceWhenRacingPut() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+		try {
+			for (int i = 0; i < ITERATIONS; i++) {
+				ObjectShare share = new ObjectShareImpl();
+				AtomicInteger invocations = new AtomicInteger();
+				CyclicBarrier barrier = new CyclicBarrier(THREADS);
+				List<Future<?>> futures = new ArrayList<>(THREADS);
+
+				futures.add(executor.submit(() -> {
+					barrier.await();
+					share.put("test:race", "x");
+					return null;
+				}));
+
+				for (int j = 1; j < THREADS; j++) {
+					futures.add(executor.submit(() -> {
+						barrier.await();
+
+						share.whenAvailable("test:race", (key, value) -> {
+							assertSame("x", value);
+							invocations.incrementAndGet();
+						});
+
+						return null;
+					}));
+				}
+
+				for (Future<?> future : futures) {
+					future.get();
+				}
+
+				assertEquals(THREADS - 1, invocations.get(), "iteration "+i);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void runsExecutorConsumersOnce() {
+		ObjectShare share = new ObjectShareImpl();
+		List<Runnable> tasks = new ArrayList<>();
+		AtomicInteger invocations = new AtomicInteger();
+
+		share.whenAvailable("test:executor", tasks::add, (key, value) -> invocations.incrementAndGet());
+		share.put("test:executor", "x");
+		share.whenAvailable("test:executor", tasks::add, (key, value) -> invocations.incrementAndGet());
+
+		assertEquals(0, invocations.get());
+		assertEquals(2, tasks.size());
+
+		for (Runnable task : tasks) {
+			task.run();
+		}
+
+		assertEquals(2, invocations.get());
+	}
+}
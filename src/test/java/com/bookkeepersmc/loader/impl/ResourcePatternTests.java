@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link ResourcePattern} matching, and its use with {@link ModEntryIndex} prefix scans against a brute force scan.
+ */
+final class ResourcePatternTests {
+	private static final List<String> FILES = Arrays.asList(
+			"a.png",
+			"a/b.png",
+			"a/b.txt",
+			"a/bc.png",
+			"a/c/d.png",
+			"a/c/e/f.png",
+			"a.b/c.png",
+			"ab/c.png",
+			"assets/mod/lang/en_us.json",
+			"assets/mod/lang/de_de.json",
+			"assets/mod/textures/block/x.png",
+			"assets/other/lang/en_us.json",
+			"data/mod/recipes/r1.json");
+
+	@Test
+	public void singleStarStaysInSegment() {
+		assertMatches("a/*.png", "a/b.png", "a/bc.png");
+		assertMatches("assets/*/lang/en_us.json", "assets/mod/lang/en_us.json", "assets/other/lang/en_us.json");
+		assertMatches("*.png", "a.png");
+		assertMatches("a/*", "a/b.png", "a/b.txt", "a/bc.png");
+	}
+
+	@Test
+	public void questionMarkMatchesOneCharacter() {
+		assertMatches("a/?.png", "a/b.png");
+		assertMatches("a/??.png", "a/bc.png");
+		assertMatches("a?b/c.png", "a.b/c.png");
+		assertMatches("a?c.png");
+	}
+
+	@Test
+	public void doubleStarCrossesSegments() {
+		assertMatches("a/**.png", "a/b.png", "a/bc.png", "a/c/d.png", "a/c/e/f.png");
+		assertMatches("a/**/*.png", "a/c/d.png", "a/c/e/f.png");
+		assertMatches("assets/**", "assets/mod/lang/en_us.json", "assets/mod/lang/de_de.json", "assets/mod/textures/block/x.png", "assets/other/lang/en_us.json");
+		assertMatches("**/en_us.json", "assets/mod/lang/en_us.json", "assets/other/lang/en_us.json");
+		assertMatches("**.png", "a.png", "a/b.png", "a/bc.png", "a/c/d.png", "a/c/e/f.png", "a.b/c.png", "ab/c.png", "assets/mod/textures/block/x.png");
+	}
+
+	@Test
+	public void literalPatterns() {
+		ResourcePattern pattern = ResourcePattern.parse("a.b/c.png");
+		assertEquals("a.b/c.png", pattern.getPrefix());
+
+		// regex metacharacters are taken literally
+		assertMatches("a.b/c.png", "a.b/c.png");
+		assertMatches("a.png", "a.png");
+		assertMatches("a/c");
+		assertFalse(ResourcePattern.parse("a(b)+").matches("ab"));
+		assertTrue(ResourcePattern.parse("a(b)+").matches("a(b)+"));
+		assertTrue(ResourcePattern.parse("a[b]/*").matches("a[b]/c"));
+	}
+
+	@Test
+	public void prefixEndsAtFirstWildcard() {
+		assertEquals("assets/", ResourcePattern.parse("assets/*/lang/en_us.json").getPrefix());
+		assertEquals("a/b", ResourcePattern.parse("a/b?.png").getPrefix());
+		assertEquals("", ResourcePattern.parse("**.png").getPrefix());
+	}
+
+	@Test
+	public void rejectsInvalidPatterns() {
+		for (String glob : new String[] { "", "/a.png", "a//b.png", "a/", "../a.png", "a/../b.png", "a/..", "./a.png", "a/./b", "a\\b.png", "\\a.png" }) {
+			assertThrows(IllegalArgumentException.class, () -> ResourcePattern.parse(glob), glob);
+		}
+	}
+
+	@Test
+	public void indexVisitsMatchingFilesOnly() throws IOException {
+		Path dir = Files.createTempDirectory("resourcePattern");
+		Path jar = dir.resolve("mod.jar");
+
+		try {
+			try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+				zos.putNextEntry(new ZipEntry("a/")); // explicit directory entry
+				zos.putNextEntry(new ZipEntry("a/empty/"));
+
+				for (String file : FILES) {
+					zos.putNextEntry(new ZipEntry(file));
+				}
+			}
+
+			ModEntryIndex index = ModEntryIndex.create(jar, jar);
+
+			for (String glob : new String[] { "a/*", "a/**", "**", "a/c", "a/empty", "a/**.png", "assets/*/lang/*.json" }) {
+				ResourcePattern pattern = ResourcePattern.parse(glob);
+				List<String> found = new ArrayList<>();
+
+				index.forEachFile(pattern.getPrefix(), name -> {
+					if (pattern.matches(name)) found.add(name);
+				});
+
+				List<String> expected = filter(pattern);
+				expected.sort(null);
+				assertEquals(expected, found, glob);
+			}
+		} finally {
+			Files.deleteIfExists(jar);
+			Files.delete(dir);
+		}
+	}
+
+	private static void assertMatches(String glob, String... expected) {
+		assertEquals(Arrays.asList(expected), filter(ResourcePattern.parse(glob)), glob);
+	}
+
+	private static List<String> filter(ResourcePattern pattern) {
+		List<String> ret = new ArrayList<>();
+
+		for (String file : FILES) {
+			if (pattern.matches(file)) ret.add(file);
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.discovery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+
+import com.bookkeepersmc.loader.api.Version;
+import com.bookkeepersmc.loader.impl.metadata.DependencyOverrides;
+import com.bookkeepersmc.loader.impl.metadata.LoaderModMetadata;
+import com.bookkeepersmc.loader.impl.metadata.ModMetadataParser;
+import com.bookkeepersmc.loader.impl.metadata.ParseMetadataException;
+import com.bookkeepersmc.loader.impl.metadata.VersionOverrides;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential test comparing {@link ModPrioSorter} against the original insertion sort based implementation.
+ */
+final class ModPrioSorterTests {
+	private static final VersionOverrides VERSION_OVERRIDES = new VersionOverrides();
+	private static final DependencyOverrides DEP_OVERRIDES = new DependencyOverrides(Paths.get("nonexistent"));
+
+	@Test
+	public void matchesLegacyImplementation() throws ParseMetadataException {
+		for (long seed = 0; seed < 500; seed++) {
+			Random random = new Random(seed);
+			List<ModCandidateImpl> mods = generate(random, 5 + random.nextInt(60));
+			Collections.shuffle(mods, random);
+
+			List<ModCandidateImpl> expected = new ArrayList<>(mods);
+			Map<String, List<ModCandidateImpl>> expectedById = new HashMap<>();
+			LegacyModPrioSorter.sort(expected, expectedById);
+
+			List<ModCandidateImpl> actual = new ArrayList<>(mods);
+			Map<String, List<ModCandidateImpl>> actualById = new HashMap<>();
+			ModPrioSorter.sort(actual, actualById);
+
+			assertEquals(expected, actual, "seed "+seed);
+			assertEquals(expectedById, actualById, "seed "+seed);
+		}
+	}
+
+	/**
+	 * Generate root mods with nested mods, drawing ids and provided ids from a small pool to cause plenty of overlaps.
+	 */
+	private static List<ModCandidateImpl> generate(Random random, int rootCount) throws ParseMetadataException {
+		int idCount = 2 + random.nextInt(8);
+		List<ModCandidateImpl> roots = new ArrayList<>();
+		List<ModCandidateImpl> nestedPool = new ArrayList<>();
+
+		for (int i = 0; i < rootCount; i++) {
+			List<ModCandidateImpl> nested = new ArrayList<>();
+			int nestedCount = random.nextInt(4);
+
+			for (int j = 0; j < nestedCount; j++) {
+				if (!nestedPool.isEmpty() && random.nextInt(3) == 0) { // nested mod shared with another parent
+					ModCandidateImpl mod = nestedPool.get(random.nextInt(nestedPool.size()));
+					if (!nested.contains(mod)) nested.add(mod);
+				} else {
+					LoaderModMetadata metadata = createMetadata(random, idCount);
+					ModCandidateImpl mod = ModCandidateImpl.createNested("META-INF/jars/"+metadata.getId()+".jar", random.nextLong(), metadata, false, Collections.emptyList());
+					nested.add(mod);
+					nestedPool.add(mod);
+				}
+			}
+
+			LoaderModMetadata metadata = createMetadata(random, idCount);
+			roots.add(ModCandidateImpl.createPlain(Collections.singletonList(Paths.get(metadata.getId()+"-"+i+".jar")), metadata, false, nested));
+		}
+
+		// link nested mods to their parents like ModDiscoverer
+
+		Set<ModCandidateImpl> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<ModCandidateImpl> ret = new ArrayList<>();
+		Queue<ModCandidateImpl> queue = new ArrayDeque<>(roots);
+		ModCandidateImpl mod;
+
+		while ((mod = queue.poll()) != null) {
+			if (!seen.add(mod)) continue;
+
+			ret.add(mod);
+
+			for (ModCandidateImpl child : mod.getNestedMods()) {
+				if (child.addParent(mod)) {
+					queue.add(child);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private static LoaderModMetadata createMetadata(Random random, int idCount) throws ParseMetadataException {
+		int id = random.nextInt(idCount);
+		StringBuilder provides = new StringBuilder();
+
+		for (int i = random.nextInt(3); i > 0; i--) {
+			int provId = random.nextInt(idCount);
+			if (provId == id) continue;
+			if (provides.length() > 0) provides.append(", ");
+			provides.append("\"mod").append(provId).append('"');
+		}
+
+		String json = String.format("{\"schemaVersion\": 1, \"id\": \"mod%d\", \"version\": \"1.%d.%d\", \"provides\": [%s]}",
+				id, random.nextInt(4), random.nextInt(3), provides);
+
+		return ModMetadataParser.parseMetadata(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "generated", Collections.emptyList(),
+				VERSION_OVERRIDES, DEP_OVERRIDES, false);
+	}
+
+	/**
+	 * The original quadratic {@link ModPrioSorter} implementation.
+	 */
+	private static final class LegacyModPrioSorter {
+		static void sort(List<ModCandidateImpl> mods, Map<String, List<ModCandidateImpl>> modsById) {
+			// sort all mods by priority
+
+			mods.sort(comparator);
+
+			// group/index all mods by id, gather provided mod ids
+
+			Set<String> providedMods = new HashSet<>();
+
+			for (ModCandidateImpl mod : mods) {
+				modsById.computeIfAbsent(mod.getId(), ignore -> new ArrayList<>()).add(mod);
+
+				for (String provided : mod.getProvides()) {
+					modsById.computeIfAbsent(provided, ignore -> new ArrayList<>()).add(mod);
+					providedMods.add(provided);
+				}
+			}
+
+			// strip any provided mod ids that don't have any effect (only 1 candidate for the id)
+
+			for (Iterator<String> it = providedMods.iterator(); it.hasNext(); ) {
+				if (modsById.get(it.next()).size() <= 1) {
+					it.remove();
+				}
+			}
+
+			// handle overlapping mod ids that need higher priority than the standard comparator handles
+			// this is implemented through insertion sort which allows for skipping over unrelated mods that aren't properly comparable
+
+			if (providedMods.isEmpty()) return; // no overlapping id mods
+
+			// float overlapping ids up as needed
+
+			boolean movedPastRoots = false;
+			int startIdx = 0;
+			Set<String> potentiallyOverlappingIds = new HashSet<>();
+
+			for (int i = 0, size = mods.size(); i < size; i++) {
+				ModCandidateImpl mod = mods.get(i);
+				String id = mod.getId();
+
+
+				if (!movedPastRoots && !mod.isRoot()) { // update start index to avoid mixing root and non-root mods (root always has higher prio)
+					movedPastRoots = true;
+					startIdx = i;
+				}
+
+				// gather ids for mod that might overlap other mods
+
+				if (providedMods.contains(id)) {
+					potentiallyOverlappingIds.add(id);
+				}
+
+				if (!mod.getProvides().isEmpty()) {
+					for (String provId : mod.getProvides()) {
+						if (providedMods.contains(provId)) {
+							potentiallyOverlappingIds.add(provId);
+						}
+					}
+				}
+
+				if (potentiallyOverlappingIds.isEmpty()) continue;
+
+				// search for a suitable mod that overlaps mod but has a lower version
+
+				int earliestIdx = -1;
+
+				for (int j = i - 1; j >= startIdx; j--) {
+					ModCandidateImpl cmpMod = mods.get(j);
+					String cmpId = cmpMod.getId();
+					if (cmpId.equals(id)) break; // can't move mod past another mod with the same id since that mod since that mod would have a higher version due to the previous sorting step and thus always has higher prio
+
+					// quick check if it might match
+					if (!potentiallyOverlappingIds.contains(cmpId)
+							&& (cmpMod.getProvides().isEmpty() || Collections.disjoint(potentiallyOverlappingIds, cmpMod.getProvides()))) {
+						continue;
+					}
+
+					int cmp = compareOverlappingIds(mod, cmpMod, Integer.MAX_VALUE);
+
+					if (cmp < 0) { // mod needs to be after cmpMod, move mod forward
+						earliestIdx = j;
+					} else if (cmp != Integer.MAX_VALUE) { // cmpMod has at least the same prio, don't search past it
+						break;
+					}
+				}
+
+				if (earliestIdx >= 0) {
+					mods.remove(i);
+					mods.add(earliestIdx, mod);
+				}
+
+				potentiallyOverlappingIds.clear();
+			}
+		}
+
+		private static final Comparator<ModCandidateImpl> comparator = new Comparator<ModCandidateImpl>() {
+			@Override
+			public int compare(ModCandidateImpl a, ModCandidateImpl b) {
+				return LegacyModPrioSorter.compare(a, b);
+			}
+		};
+
+		private static int compare(ModCandidateImpl a, ModCandidateImpl b) {
+			// descending sort prio (less/earlier is higher prio):
+			// root mods first, lower id first, higher version first, less nesting first, parent cmp
+
+			if (a.isRoot()) {
+				if (!b.isRoot()) {
+					return -1; // only a is root
+				}
+			} else if (b.isRoot()) {
+				return 1; // only b is root
+			}
+
+			// sort id asc
+
+			int idCmp = a.getId().compareTo(b.getId());
+			if (idCmp != 0) return idCmp;
+
+			// sort version desc (lower version later)
+			int versionCmp = b.getVersion().compareTo(a.getVersion());
+			if (versionCmp != 0) return versionCmp;
+
+			// sort nestLevel asc
+			int nestCmp = a.getMinNestLevel() - b.getMinNestLevel(); // >0 if nest(a) > nest(b)
+			if (nestCmp != 0) return nestCmp;
+
+			if (a.isRoot()) return 0; // both root
+
+			// find highest priority parent, if it is not shared by both a+b the one that has it is deemed higher prio
+			return compareParents(a, b);
+		}
+
+		private static int compareParents(ModCandidateImpl a, ModCandidateImpl b) {
+			assert !a.getParentMods().isEmpty() && !b.getParentMods().isEmpty();
+
+			ModCandidateImpl minParent = null;
+
+			for (ModCandidateImpl mod : a.getParentMods()) {
+				if (minParent == null || mod != minParent && compare(minParent, mod) > 0) {
+					minParent = mod;
+				}
+			}
+
+			assert minParent != null;
+			boolean found = false;
+
+			for (ModCandidateImpl mod : b.getParentMods()) {
+				if (mod == minParent) { // both a and b have minParent
+					found = true;
+				} else if (compare(minParent, mod) > 0) { // b has a higher prio parent than a
+					return 1;
+				}
+			}
+
+			return found ? 0 : -1; // only a has minParent if !found, so only a has the highest prio parent
+		}
+
+		private static int compareOverlappingIds(ModCandidateImpl a, ModCandidateImpl b, int noMatchResult) {
+			assert !a.getId().equals(b.getId()); // should have been handled before
+
+			int ret = 0; // sum of individual normalized pair comparisons, may cancel each other out
+			boolean matched = false; // whether any ids overlap, for falling back to main id comparison as if there were no provides
+
+			for (String provIdA : a.getProvides()) { // a-provides vs b
+				if (provIdA.equals(b.getId())) {
+					Version providedVersionA = a.getVersion();
+					ret += Integer.signum(b.getVersion().compareTo(providedVersionA));
+					matched = true;
+				}
+			}
+
+			for (String provIdB : b.getProvides()) {
+				if (provIdB.equals(a.getId())) { // a vs b-provides
+					Version providedVersionB = b.getVersion();
+					ret += Integer.signum(providedVersionB.compareTo(a.getVersion()));
+					matched = true;
+
+					continue;
+				}
+
+				for (String provIdA : a.getProvides()) { // a-provides vs b-provides
+					if (provIdB.equals(provIdA)) {
+						Version providedVersionA = a.getVersion();
+						Version providedVersionB = b.getVersion();
+
+						ret += Integer.signum(providedVersionB.compareTo(providedVersionA));
+						matched = true;
+
+						break;
+					}
+				}
+			}
+
+			return matched ? ret : noMatchResult;
+		}
+	}
+}
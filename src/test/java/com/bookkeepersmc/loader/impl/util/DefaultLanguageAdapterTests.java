@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.bookkeepersmc.loader.api.LanguageAdapterException;
+import com.bookkeepersmc.loader.impl.launch.NotebookLauncher;
+import com.bookkeepersmc.loader.impl.launch.NotebookLauncherBase;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+final class DefaultLanguageAdapterTests {
+	private static final String ENTRYPOINTS = Entrypoints.class.getName();
+	private static ClassLoader modClassLoader;
+
+	@BeforeAll
+	public static void setupLauncher() {
+		// load the entrypoints in their own class loader and thus unnamed module, like Knot does for mods
+		modClassLoader = new IsolatingClassLoader(DefaultLanguageAdapterTests.class.getClassLoader(), ENTRYPOINTS);
+
+		NotebookLauncher launcher = mock(NotebookLauncher.class);
+		when(launcher.getTargetClassLoader()).thenReturn(modClassLoader);
+		NotebookLauncherBase.setLauncher(launcher);
+	}
+
+	@Test
+	public void loadsEntrypointsSeparately() throws ClassNotFoundException {
+		assertNotSame(Entrypoints.class, Class.forName(ENTRYPOINTS, false, modClassLoader));
+	}
+
+	@Test
+	public void bindsStaticMethodAsLambda() throws LanguageAdapterException {
+		Supplier<?> entry = DefaultLanguageAdapter.INSTANCE.create(null, ENTRYPOINTS + "::staticEntry", Supplier.class);
+
+		assertFalse(Proxy.isProxyClass(entry.getClass()), "method reference entrypoint was bound through a proxy");
+		assertEquals("static", entry.get());
+	}
+
+	@Test
+	public void bindsInstanceMethodAsLambda() throws LanguageAdapterException {
+		Supplier<?> entry = DefaultLanguageAdapter.INSTANCE.create(null, ENTRYPOINTS + "::instanceEntry", Supplier.class);
+
+		assertFalse(Proxy.isProxyClass(entry.getClass()), "method reference entrypoint was bound through a proxy");
+		assertEquals("instance", entry.get());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void bindsPrivateMethodWithNarrowedParameter() throws LanguageAdapterException {
+		Function<Object, Object> entry = DefaultLanguageAdapter.INSTANCE.create(null, ENTRYPOINTS + "::privateEntry", Function.class);
+
+		assertFalse(Proxy.isProxyClass(entry.getClass()), "method reference entrypoint was bound through a proxy");
+		assertEquals("private:arg", entry.apply("arg"));
+	}
+
+	public static final class Entrypoints {
+		public static String staticEntry() {
+			return "static";
+		}
+
+		public String instanceEntry() {
+			return "instance";
+		}
+
+		private static String privateEntry(String arg) {
+			return "private:" + arg;
+		}
+	}
+
+	/**
+	 * Defines the classes with the given name prefix itself instead of delegating to its parent.
+	 */
+	private static final class IsolatingClassLoader extends ClassLoader {
+		private final String prefix;
+
+		IsolatingClassLoader(ClassLoader parent, String prefix) {
+			super(parent);
+
+			this.prefix = prefix;
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.startsWith(prefix)) return super.loadClass(name, resolve);
+
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> ret = findLoadedClass(name);
+
+				if (ret == null) {
+					try (InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+						if (is == null) throw new ClassNotFoundException(name);
+
+						ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+						byte[] buffer = new byte[4096];
+						int len;
+
+						while ((len = is.read(buffer)) > 0) {
+							bytes.write(buffer, 0, len);
+						}
+
+						ret = defineClass(name, bytes.toByteArray(), 0, bytes.size());
+					} catch (IOException e) {
+						throw new ClassNotFoundException(name, e);
+					}
+				}
+
+				if (resolve) resolveClass(ret);
+
+				return ret;
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.Test;
+
+final class ParallelZipWriterTests {
+	@Test
+	public void writesReadableEntries() throws IOException {
+		Path dir = Files.createTempDirectory("parallelZipWriter");
+		Path file = dir.resolve("out.zip");
+		byte[] compressible = new byte[4096];
+
+		try {
+			try (ParallelZipWriter writer = new ParallelZipWriter(file)) {
+				writer.add("dir/", new byte[0]);
+				writer.add("dir/a.class", compressible);
+				writer.add("b.txt", "b".getBytes(StandardCharsets.UTF_8));
+				assertFalse(writer.add("b.txt", new byte[1]));
+				assertEquals(1, writer.getClassCount());
+			}
+
+			try (ZipFile zip = new ZipFile(file.toFile())) {
+				assertEquals(3, zip.size());
+				assertArrayEquals(compressible, read(zip, "dir/a.class"));
+				assertArrayEquals("b".getBytes(StandardCharsets.UTF_8), read(zip, "b.txt"));
+			}
+		} finally {
+			Files.deleteIfExists(file);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void writesZip64ForManyEntries() throws IOException {
+		Path dir = Files.createTempDirectory("parallelZipWriter");
+		Path file = dir.resolve("out.zip");
+		int count = 70_000; // more than a plain zip end record can count
+
+		try {
+			try (ParallelZipWriter writer = new ParallelZipWriter(file)) {
+				IntStream.range(0, count).parallel().forEach(i -> {
+					try {
+						writer.add("e"+i, Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+
+			try (ZipFile zip = new ZipFile(file.toFile())) {
+				assertEquals(count, zip.size());
+				assertArrayEquals("12345".getBytes(StandardCharsets.UTF_8), read(zip, "e12345"));
+				assertArrayEquals(Integer.toString(count - 1).getBytes(StandardCharsets.UTF_8), read(zip, "e"+(count - 1)));
+			}
+		} finally {
+			Files.deleteIfExists(file);
+			Files.delete(dir);
+		}
+	}
+
+	private static byte[] read(ZipFile zip, String name) throws IOException {
+		ZipEntry entry = zip.getEntry(name);
+
+		try (InputStream is = zip.getInputStream(entry)) {
+			byte[] ret = new byte[(int) entry.getSize()];
+			int off = 0;
+			int len;
+
+			while (off < ret.length && (len = is.read(ret, off, ret.length - off)) > 0) {
+				off += len;
+			}
+
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential test comparing {@link StringIndexTable} lookups against a {@link HashMap}.
+ */
+final class StringIndexTableTests {
+	@Test
+	public void matchesHashMap() {
+		for (long seed = 0; seed < 50; seed++) {
+			Random random = new Random(seed);
+			Map<String, Integer> expected = new HashMap<>();
+			int size = random.nextInt(300);
+
+			for (int i = 0; i < size; i++) {
+				expected.put(randomKey(random), random.nextInt(1000));
+			}
+
+			StringIndexTable table = StringIndexTable.of(expected);
+
+			for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+				assertEquals(entry.getValue().intValue(), table.get(entry.getKey()), "seed "+seed);
+			}
+
+			for (int i = 0; i < 1000; i++) {
+				String key = randomKey(random);
+				assertEquals(expected.containsKey(key), table.containsKey(key), "seed "+seed+", key "+key);
+			}
+		}
+	}
+
+	@Test
+	public void handlesHashCollisions() {
+		// "Aa" and "BB" share their hash code, so do all same length combinations of them
+		List<String> keys = new ArrayList<>();
+
+		for (int i = 0; i < 64; i++) {
+			StringBuilder sb = new StringBuilder();
+
+			for (int bit = 0; bit < 6; bit++) {
+				sb.append((i & 1 << bit) != 0 ? "Aa" : "BB");
+			}
+
+			keys.add(sb.toString());
+		}
+
+		StringIndexTable table = StringIndexTable.of(keys);
+
+		for (int i = 0; i < keys.size(); i++) {
+			assertEquals(i, table.get(keys.get(i)), keys.get(i));
+		}
+
+		assertEquals(-1, table.get("AaAaAaAaAaAB"));
+	}
+
+	@Test
+	public void numbersDistinctKeysInOrder() {
+		StringIndexTable table = StringIndexTable.of(Arrays.asList("a", "b", "a", "c"));
+
+		assertEquals(0, table.get("a"));
+		assertEquals(1, table.get("b"));
+		assertEquals(2, table.get("c"));
+		assertEquals(-1, table.get("d"));
+	}
+
+	@Test
+	public void handlesEmptyInput() {
+		assertSame(StringIndexTable.EMPTY, StringIndexTable.of(Collections.<String>emptyList()));
+		assertSame(StringIndexTable.EMPTY, StringIndexTable.of(Collections.<String, Integer>emptyMap()));
+		assertFalse(StringIndexTable.EMPTY.containsKey(""));
+		assertTrue(StringIndexTable.of(Collections.singletonList("")).containsKey(""));
+		assertThrows(IllegalArgumentException.class, () -> StringIndexTable.of(Collections.singletonMap("a", -1)));
+	}
+
+	private static String randomKey(Random random) {
+		return "net/minecraft/class_"+random.nextInt(600);
+	}
+}
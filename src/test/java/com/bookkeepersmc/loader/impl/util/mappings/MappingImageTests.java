@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util.mappings;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential test comparing {@link MappingImage} lookups and replay against the {@link MemoryMappingTree} it was
+ * created from.
+ */
+final class MappingImageTests {
+	private static final List<String> NAMESPACES = RandomMappings.NAMESPACES;
+
+	@Test
+	public void matchesMappingTree() throws IOException {
+		for (long seed = 0; seed < 50; seed++) {
+			MemoryMappingTree tree = RandomMappings.generate(new Random(seed), 200);
+			MappingImage image = MappingImage.of(MappingImage.create(tree, NAMESPACES));
+
+			assertEquals(NAMESPACES, image.getNamespaces());
+			assertEquals(tree.getClasses().size(), image.getClassCount(), "seed "+seed);
+			assertMatches(tree, image, "seed "+seed);
+
+			MemoryMappingTree replayed = new MemoryMappingTree();
+			image.accept(replayed);
+			assertMatches(replayed, image, "replay, seed "+seed);
+			assertEquals(tree.getClasses().size(), replayed.getClasses().size(), "replay, seed "+seed);
+		}
+	}
+
+	@Test
+	public void roundTripsThroughFile() throws IOException {
+		MemoryMappingTree tree = RandomMappings.generate(new Random(42), 200);
+		Path dir = Files.createTempDirectory("mappingImage");
+		Path file = dir.resolve("mappings.nbmi");
+
+		try {
+			MappingImage.write(tree, NAMESPACES, file);
+			assertMatches(tree, MappingImage.load(file), "loaded");
+		} finally {
+			Files.deleteIfExists(file);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void rejectsCorruptImages() throws IOException {
+		ByteBuffer data = MappingImage.create(RandomMappings.generate(new Random(7), 200), NAMESPACES);
+		byte[] bytes = new byte[data.remaining()];
+		data.get(bytes);
+
+		Path dir = Files.createTempDirectory("mappingImage");
+		Path file = dir.resolve("mappings.nbmi");
+
+		try {
+			// truncated at various positions, including inside the header and the string data
+			for (int len : new int[] { 0, 5, 20, bytes.length / 3, bytes.length / 2, bytes.length - 1 }) {
+				Files.write(file, Arrays.copyOf(bytes, len));
+				assertThrows(IOException.class, () -> MappingImage.load(file), "truncated to "+len);
+			}
+
+			// class name string id pointing past the string table, the first row follows the header and string offsets
+			byte[] corrupt = bytes.clone();
+			int stringCount = ByteBuffer.wrap(bytes).getInt(16);
+			int classesPos = 8 * 4 + NAMESPACES.size() * 4 + (stringCount + 1) * 4;
+			ByteBuffer.wrap(corrupt).putInt(classesPos, stringCount);
+			Files.write(file, corrupt);
+			assertThrows(IOException.class, () -> MappingImage.load(file), "bad string id");
+		} finally {
+			Files.deleteIfExists(file);
+			Files.delete(dir);
+		}
+	}
+
+	private static void assertMatches(MappingTreeView tree, MappingImage image, String context) {
+		int[] nsIds = new int[NAMESPACES.size()];
+
+		for (int i = 0; i < nsIds.length; i++) {
+			nsIds[i] = tree.getNamespaceId(NAMESPACES.get(i));
+		}
+
+		for (MappingTreeView.ClassMappingView cls : tree.getClasses()) {
+			int idx = image.getClass(cls.getSrcName(), 0);
+			assertTrue(idx >= 0, context+": missing class "+cls.getSrcName());
+
+			for (int ns = 0; ns < nsIds.length; ns++) {
+				String name = cls.getName(nsIds[ns]);
+				assertEquals(name, image.getClassName(idx, ns), context);
+				if (name != null) assertEquals(idx, image.getClass(name, ns), context+": class "+name+" by namespace "+ns);
+			}
+
+			assertMembers(cls.getFields(), image.getFields(), idx, nsIds, context);
+			assertMembers(cls.getMethods(), image.getMethods(), idx, nsIds, context);
+		}
+	}
+
+	private static void assertMembers(Iterable<? extends MappingTreeView.MemberMappingView> members, MappingImage.Members table, int cls, int[] nsIds, String context) {
+		int count = 0;
+
+		for (MappingTreeView.MemberMappingView member : members) {
+			int idx = table.find(cls, member.getSrcName(), member.getSrcDesc(), 0);
+			assertTrue(idx >= 0, context+": missing member "+member.getSrcName()+member.getSrcDesc());
+
+			for (int ns = 0; ns < nsIds.length; ns++) {
+				assertEquals(member.getName(nsIds[ns]), table.getName(idx, ns), context);
+				assertEquals(member.getDesc(nsIds[ns]), table.getDesc(idx, ns), context);
+			}
+
+			count++;
+		}
+
+		assertEquals(count, table.getEnd(cls) - table.getStart(cls), context);
+	}
+}
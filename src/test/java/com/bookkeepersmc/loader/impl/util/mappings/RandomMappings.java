@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2024 BookkeepersMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.bookkeepersmc.loader.impl.util.mappings;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.fabricmc.mappingio.MappedElementKind;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+
+/**
+ * Random mapping trees for the differential mapping tests.
+ */
+public final class RandomMappings {
+	public static final List<String> NAMESPACES = Collections.unmodifiableList(Arrays.asList("official", "intermediary", "named"));
+
+	private RandomMappings() { }
+
+	/**
+	 * Generate a tree over {@link #NAMESPACES} with up to {@code maxClasses} classes, some of them without a named name.
+	 *
+	 * <p>Class names are distinct in every namespace and ordered differently in each. Members may share their source
+	 * name, e.g. method overloads.
+	 */
+	public static MemoryMappingTree generate(Random random, int maxClasses) throws IOException {
+		MemoryMappingTree tree = new MemoryMappingTree();
+		tree.visitNamespaces(NAMESPACES.get(0), NAMESPACES.subList(1, NAMESPACES.size()));
+
+		int classCount = 1 + random.nextInt(maxClasses);
+
+		for (int i = 0; i < classCount; i++) {
+			tree.visitClass(getOfficialName(i));
+			tree.visitDstName(MappedElementKind.CLASS, 0, "net/minecraft/class_" + i);
+			if (random.nextInt(5) != 0) tree.visitDstName(MappedElementKind.CLASS, 1, "net/minecraft/pkg" + i % 3 + "/Named" + (classCount - i) + "é");
+
+			for (int j = random.nextInt(6); j > 0; j--) {
+				tree.visitField("f" + random.nextInt(4), random.nextBoolean() ? "I" : "L" + getOfficialName(random.nextInt(classCount)) + ";");
+				tree.visitDstName(MappedElementKind.FIELD, 0, "field_" + i + "_" + j);
+				if (random.nextBoolean()) tree.visitDstName(MappedElementKind.FIELD, 1, "namedField" + j);
+			}
+
+			for (int j = random.nextInt(8); j > 0; j--) {
+				tree.visitMethod("m" + random.nextInt(3), "(" + (random.nextBoolean() ? "J" : "L" + getOfficialName(random.nextInt(classCount)) + ";") + ")V");
+				tree.visitDstName(MappedElementKind.METHOD, 0, "method_" + i + "_" + j);
+				if (random.nextBoolean()) tree.visitDstName(MappedElementKind.METHOD, 1, "namedMethod" + j);
+			}
+		}
+
+		tree.visitEnd();
+
+		return tree;
+	}
+
+	private static String getOfficialName(int cls) {
+		return "c" + Integer.toString(cls * 7919 % 10007, 36);
+	}
+}
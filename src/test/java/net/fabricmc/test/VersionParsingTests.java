@@ -24,6 +24,7 @@ package net.fabricmc.test;
 
 import java.util.function.Predicate;
 
+import com.bookkeepersmc.loader.api.SemanticVersion;
 import com.bookkeepersmc.loader.api.Version;
 import com.bookkeepersmc.loader.api.VersionParsingException;
 import com.bookkeepersmc.loader.impl.util.version.SemanticVersionImpl;
@@ -324,5 +325,30 @@ public class VersionParsingTests {
 			testFalse(predicate.test(new SemanticVersionImpl("2.0.0", false)));
 			testFalse(predicate.test(new SemanticVersionImpl("2.0.0-beta.2", false)));
 		}
+
+		// Test: pre-release identifier validation.
+		testTrue(tryParseSemantic("1.0.0-", false));
+		testTrue(tryParseSemantic("1.0.0-a-b.0.c1", false));
+		testFalse(tryParseSemantic("1.0.0-a..b", false));
+		testFalse(tryParseSemantic("1.0.0-.a", false));
+		testFalse(tryParseSemantic("1.0.0-a.", false));
+		testFalse(tryParseSemantic("1.0.0-a_b", false));
+
+		// Test: parsed versions and predicates are cached.
+		testTrue(Version.parse("1.2.3-beta.1") == Version.parse("1.2.3-beta.1"));
+		testTrue(Version.parse("1.2.3-beta.1") == SemanticVersion.parse("1.2.3-beta.1"));
+		testTrue(VersionPredicateParser.parse(">=1.2.3 <2") == VersionPredicateParser.parse(">=1.2.3 <2"));
+		testTrue(VersionPredicateParser.parse(">=1.2.3 <2").equals(VersionPredicateParser.parse(">=1.2.3  <2")));
+		testFalse(tryParseSemanticCached("notsemver"));
+	}
+
+	private static Exception tryParseSemanticCached(String s) {
+		try {
+			Version.parse(s);
+			SemanticVersion.parse(s);
+			return null;
+		} catch (VersionParsingException e) {
+			return e;
+		}
 	}
 }